@@ -0,0 +1,29 @@
+package org.lappsgrid.example;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Benchmarks: run the JMH benchmarks with the GC profiler attached, so every
+ * result also reports the allocation rate and bytes allocated per operation.
+ * Takes the usual JMH command line, e.g.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar StageBenchmark -p stage=ngram -p answers=1000
+ * </pre>
+ *
+ */
+public class Benchmarks {
+
+  public static void main(String[] args) throws Exception {
+      CommandLineOptions commandLine = new CommandLineOptions(args);
+      Options options = new OptionsBuilder()
+              .parent(commandLine)
+              .addProfiler(GCProfiler.class)
+              .build();
+      new Runner(options).run();
+  }
+}
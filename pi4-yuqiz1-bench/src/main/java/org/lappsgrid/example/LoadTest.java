@@ -0,0 +1,472 @@
+package org.lappsgrid.example;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.webapp.WebAppContext;
+import org.lappsgrid.discriminator.Discriminators.Uri;
+import org.lappsgrid.serialization.Data;
+import org.lappsgrid.serialization.DataContainer;
+import org.lappsgrid.serialization.lif.Container;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * LoadTest: measure the throughput and latency of the deployed services under
+ * concurrent load. The services run in the war of pi4-yuqiz1-all, started on
+ * an embedded Jetty, or in a server that is already running. Each stage gets
+ * generated Q/A documents of the size given on the command line, run through
+ * the stages before it locally so every service receives its real input.
+ *
+ * Every endpoint and transport is measured on its own, one after the other:
+ * "jsonrpc" posts JSON-RPC calls of execute() to /jsServices/{service} and
+ * "lif" posts the document to the plain HTTP endpoint /lif/{stage}. A
+ * response is an error if its status is not 200, the JSON-RPC call returns an
+ * error, or the service returns an error document.
+ *
+ * In closed-loop mode (the default) "concurrency" clients each send a request
+ * as soon as their previous one completes, which measures capacity. With a
+ * rate, requests are started on a fixed schedule whatever the response times
+ * (open loop), at most "concurrency" at a time, and a latency is measured from
+ * the time its request was due, so queueing behind slow responses is counted
+ * rather than hidden; if the service falls behind, the run lasts until the
+ * queued requests are served. Requests started during the warm-up are not
+ * measured. Percentiles are exact over every measured request.
+ *
+ * The deployed ElementAnnotation reads one question per document, so
+ * documents of more than one question need a war whose ElementAnnotation.xml
+ * passes constructor-arg true, and -corpus true to say so; the inputs of the
+ * later stages are then prepared in corpus mode as well. Without -corpus,
+ * -questions must be 1.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar org.lappsgrid.example.LoadTest
+ *     [-war ../pi4-yuqiz1-all/target/pi4-yuqiz1-all-0.0.1-SNAPSHOT.war | -url http://localhost:8080]
+ *     [-stages element,token,ngram,score,eval] [-transports jsonrpc,lif]
+ *     [-concurrency 8] [-rate requests/s] [-warmup 5] [-duration 30]
+ *     [-documents 16] [-corpus false] [-questions 1] [-answers 100] [-words 12] [-vocabulary 5000]
+ * </pre>
+ *
+ */
+public class LoadTest {
+  public static final String JSON_RPC = "jsonrpc";
+  public static final String LIF = "lif";
+
+  private static final long NANOS_PER_SECOND = 1000000000L;
+  private static final long NANOS_PER_MILLI = 1000000L;
+
+  private final String base;
+  private final int concurrency;
+  private final double rate;
+  private final long warmup;
+  private final long duration;
+
+  /**
+   * @param base the URL of the web application, without a trailing slash
+   * @param concurrency the number of requests in flight at most
+   * @param rate requests started per second, or 0 for closed loop
+   * @param warmupSeconds how long to run before measuring
+   * @param durationSeconds how long to measure each endpoint
+   */
+  public LoadTest(String base, int concurrency, double rate, double warmupSeconds, double durationSeconds) {
+      if (concurrency < 1) {
+        throw new IllegalArgumentException("concurrency must be at least 1: " + concurrency);
+      }
+      if (rate < 0 || warmupSeconds < 0 || durationSeconds <= 0) {
+        throw new IllegalArgumentException("Invalid rate or duration: " + rate + ", " + durationSeconds);
+      }
+      this.base = base;
+      this.concurrency = concurrency;
+      this.rate = rate;
+      warmup = (long) (warmupSeconds * NANOS_PER_SECOND);
+      duration = (long) (durationSeconds * NANOS_PER_SECOND);
+      // HttpURLConnection keeps only 5 idle connections per host by default.
+      if (System.getProperty("http.maxConnections") == null) {
+        System.setProperty("http.maxConnections", Integer.toString(concurrency));
+      }
+  }
+
+  /**
+   * One endpoint over one transport, with the request bodies to cycle through
+   */
+  static class Target {
+    final String stage;
+    final String transport;
+    final URL url;
+    final List<byte[]> bodies;
+
+    Target(String stage, String transport, URL url, List<byte[]> bodies) {
+        this.stage = stage;
+        this.transport = transport;
+        this.url = url;
+        this.bodies = bodies;
+    }
+  }
+
+  /**
+   * The measured requests of one target
+   */
+  static class Result {
+    final Target target;
+    private long[] latencies = new long[1024];
+    private int count = 0;
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong started = new AtomicLong();
+
+    Result(Target target) {
+        this.target = target;
+    }
+
+    synchronized void record(long latency) {
+        if (count == latencies.length) {
+          latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = latency;
+    }
+
+    void error() {
+        errors.incrementAndGet();
+    }
+
+    /**
+     * @return the latencies of the successful requests, sorted
+     */
+    synchronized long[] sorted() {
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+  }
+
+  /**
+   * Build the targets of some stages
+   * @param stages stage names as in Stages.NAMES
+   * @param transports JSON_RPC and/or LIF
+   * @param documents the texts to send, as generated by QaCorpusGenerator
+   * @param corpusMode whether the server's ElementAnnotation runs in corpus mode, as the local stages then will
+   * @return one target per stage and transport
+   * @throws ProcessingException if a stage fails on a document while preparing the inputs
+   * @throws IOException if a request cannot be encoded
+   */
+  public List<Target> targets(List<String> stages, List<String> transports, List<String> documents,
+          boolean corpusMode) throws ProcessingException, IOException {
+      AbstractProcessingService[] services = Stages.create(corpusMode);
+      // inputs[i] holds the input of stage i for every document
+      List<List<String>> inputs = new ArrayList<>(services.length);
+      for (int i = 0; i < services.length; i++) {
+        inputs.add(new ArrayList<String>(documents.size()));
+      }
+      for (String text : documents) {
+        Container container = new Container();
+        container.setText(text);
+        inputs.get(0).add(new Data<String>(Uri.TEXT, text).asJson());
+        for (int i = 1; i < services.length; i++) {
+          container = services[i - 1].process(container);
+          inputs.get(i).add(new DataContainer(container).asJson());
+        }
+      }
+      List<Target> targets = new ArrayList<>();
+      for (String stage : stages) {
+        int index = Stages.indexOf(stage);
+        for (String transport : transports) {
+          List<byte[]> bodies = new ArrayList<>(documents.size());
+          URL url;
+          if (transport.equals(JSON_RPC)) {
+            url = new URL(base + "/jsServices/" + services[index].getClass().getSimpleName());
+            for (String input : inputs.get(index)) {
+              bodies.add(jsonRpc(input));
+            }
+          }
+          else if (transport.equals(LIF)) {
+            url = new URL(base + "/lif/" + stage);
+            for (String input : inputs.get(index)) {
+              bodies.add(input.getBytes(StandardCharsets.UTF_8));
+            }
+          }
+          else {
+            throw new IllegalArgumentException("Unknown transport: " + transport);
+          }
+          targets.add(new Target(stage, transport, url, bodies));
+        }
+      }
+      return targets;
+  }
+
+  /**
+   * @return a JSON-RPC call of execute() on a document
+   */
+  private static byte[] jsonRpc(String input) throws IOException {
+      Map<String, Object> call = new LinkedHashMap<>();
+      call.put("id", "1");
+      call.put("method", "execute");
+      call.put("params", new Object[] { input });
+      return LifWriter.mapper.writeValueAsBytes(call);
+  }
+
+  /**
+   * Load one target for the warm-up and the duration
+   * @param target the endpoint and its requests
+   * @return the measured requests
+   * @throws InterruptedException if interrupted while waiting for the clients
+   */
+  public Result run(final Target target) throws InterruptedException {
+      final Result result = new Result(target);
+      final long start = System.nanoTime();
+      final long measureFrom = start + warmup;
+      final long end = measureFrom + duration;
+      ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+      try {
+        if (rate > 0) {
+          // Open loop: start each request when it is due and let the pool queue them.
+          long interval = Math.max(1, (long) (NANOS_PER_SECOND / rate));
+          for (long i = 0; ; i++) {
+            final long due = start + i * interval;
+            if (due - end >= 0) {
+              break;
+            }
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+              LockSupport.parkNanos(wait);
+            }
+            final byte[] body = target.bodies.get((int) (i % target.bodies.size()));
+            clients.execute(new Runnable() {
+              @Override
+              public void run() {
+                  request(result, body, due, due - measureFrom >= 0);
+              }
+            });
+          }
+        }
+        else {
+          // Closed loop: each client sends its next request when the previous one completes.
+          for (int c = 0; c < concurrency; c++) {
+            final int client = c;
+            clients.execute(new Runnable() {
+              @Override
+              public void run() {
+                  long sent;
+                  for (int i = client; (sent = System.nanoTime()) - end < 0; i += concurrency) {
+                    request(result, target.bodies.get(i % target.bodies.size()), sent, sent - measureFrom >= 0);
+                  }
+              }
+            });
+          }
+        }
+      } finally {
+        clients.shutdown();
+      }
+      clients.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+      return result;
+  }
+
+  /**
+   * Send one request and record it if it is measured
+   * @param since when the request was sent (closed loop) or due (open loop)
+   */
+  private static void request(Result result, byte[] body, long since, boolean measured) {
+      boolean ok;
+      try {
+        ok = send(result.target, body);
+      } catch (IOException e) {
+        ok = false;
+      }
+      long latency = System.nanoTime() - since;
+      if (!measured) {
+        return;
+      }
+      result.started.incrementAndGet();
+      if (ok) {
+        result.record(latency);
+      }
+      else {
+        result.error();
+      }
+  }
+
+  /**
+   * @return whether the service processed the document without an error
+   */
+  private static boolean send(Target target, byte[] body) throws IOException {
+      HttpURLConnection connection = (HttpURLConnection) target.url.openConnection();
+      connection.setRequestMethod("POST");
+      // Not in streaming mode: the body is buffered and sent with the headers in one write,
+      // so Nagle's algorithm cannot hold it back on a reused connection.
+      connection.setDoOutput(true);
+      connection.setRequestProperty("Content-Type", "application/json; charset=UTF-8");
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(body);
+      }
+      int status = connection.getResponseCode();
+      // Read the whole response, also on errors, so the connection can be reused.
+      InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+      byte[] response = new byte[0];
+      if (in != null) {
+        try {
+          response = readAll(in);
+        } finally {
+          in.close();
+        }
+      }
+      if (status != HttpURLConnection.HTTP_OK) {
+        return false;
+      }
+      String document;
+      if (target.transport.equals(JSON_RPC)) {
+        JsonNode reply = LifWriter.mapper.readTree(response);
+        JsonNode error = reply.get("error");
+        if (error != null && !error.isNull()) {
+          return false;
+        }
+        document = reply.path("result").asText();
+      }
+      else {
+        document = new String(response, StandardCharsets.UTF_8);
+      }
+      return !document.contains(Uri.ERROR);
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int n;
+      while ((n = in.read(buffer)) > 0) {
+        out.write(buffer, 0, n);
+      }
+      return out.toByteArray();
+  }
+
+  /**
+   * @return the header of the lines written by format()
+   */
+  public static String header() {
+      return "stage\ttransport\trequests\terrors\tthroughput/s\tp50 ms\tp99 ms\tp999 ms\tmax ms";
+  }
+
+  /**
+   * @param result the measured requests of a target
+   * @return one tab-separated line; throughput counts successful requests per second of the duration
+   */
+  public String format(Result result) {
+      long[] sorted = result.sorted();
+      double seconds = (double) duration / NANOS_PER_SECOND;
+      return String.format("%s\t%s\t%d\t%d\t%.1f\t%.2f\t%.2f\t%.2f\t%.2f", result.target.stage,
+              result.target.transport, result.started.get(), result.errors.get(), sorted.length / seconds,
+              millis(percentile(sorted, 0.5)), millis(percentile(sorted, 0.99)), millis(percentile(sorted, 0.999)),
+              millis(sorted.length == 0 ? 0 : sorted[sorted.length - 1]));
+  }
+
+  /**
+   * @return the smallest value at or above a fraction p of the sorted values
+   */
+  static long percentile(long[] sorted, double p) {
+      if (sorted.length == 0) {
+        return 0;
+      }
+      int rank = (int) Math.ceil(p * sorted.length);
+      return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+  }
+
+  private static double millis(long nanos) {
+      return (double) nanos / NANOS_PER_MILLI;
+  }
+
+  /**
+   * Start a war on an embedded Jetty on a free port
+   * @param war the war file or exploded directory
+   * @return the started server
+   * @throws Exception if Jetty cannot deploy the war
+   */
+  public static Server start(String war) throws Exception {
+      Server server = new Server(0);
+      WebAppContext context = new WebAppContext();
+      context.setContextPath("/");
+      context.setWar(war);
+      server.setHandler(context);
+      server.start();
+      return server;
+  }
+
+  public static void main(String[] args) throws Exception {
+      Map<String, String> options = new LinkedHashMap<>();
+      options.put("-war", null);
+      options.put("-url", null);
+      options.put("-stages", "element,token,ngram,score,eval");
+      options.put("-transports", JSON_RPC + "," + LIF);
+      options.put("-concurrency", "8");
+      options.put("-rate", "0");
+      options.put("-warmup", "5");
+      options.put("-duration", "30");
+      options.put("-documents", "16");
+      options.put("-corpus", "false");
+      options.put("-questions", "1");
+      options.put("-answers", "100");
+      options.put("-words", "12");
+      options.put("-vocabulary", "5000");
+      for (int i = 0; i < args.length; i += 2) {
+        if (!options.containsKey(args[i]) || i + 1 == args.length) {
+          System.err.println("Usage: LoadTest [-war file | -url base] [-stages element,token,ngram,score,eval]"
+                  + " [-transports jsonrpc,lif] [-concurrency C] [-rate requests/s] [-warmup s] [-duration s]"
+                  + " [-documents D] [-corpus true|false] [-questions Q] [-answers A] [-words W] [-vocabulary V]\n"
+                  + "-questions above 1 needs -corpus true and a server whose ElementAnnotation is in corpus mode");
+          System.exit(1);
+        }
+        options.put(args[i], args[i + 1]);
+      }
+      if ((options.get("-war") == null) == (options.get("-url") == null)) {
+        System.err.println("Give either -war or -url");
+        System.exit(1);
+      }
+      boolean corpusMode = Boolean.parseBoolean(options.get("-corpus"));
+      int questions = Integer.parseInt(options.get("-questions"));
+      if (questions > 1 && !corpusMode) {
+        System.err.println("-questions " + questions + " needs -corpus true: the deployed ElementAnnotation reads one"
+                + " question per document unless its ElementAnnotation.xml passes constructor-arg true");
+        System.exit(1);
+      }
+
+      Server server = null;
+      String base = options.get("-url");
+      if (base == null) {
+        server = start(options.get("-war"));
+        base = "http://localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+      }
+      try {
+        LoadTest test = new LoadTest(base.replaceAll("/+$", ""), Integer.parseInt(options.get("-concurrency")),
+                Double.parseDouble(options.get("-rate")), Double.parseDouble(options.get("-warmup")),
+                Double.parseDouble(options.get("-duration")));
+        List<String> documents = new ArrayList<>();
+        for (int d = 0; d < Integer.parseInt(options.get("-documents")); d++) {
+          documents.add(new QaCorpusGenerator(Integer.parseInt(options.get("-answers")),
+                  Integer.parseInt(options.get("-words")), Integer.parseInt(options.get("-vocabulary")), d)
+                  .generate(questions));
+        }
+        List<Target> targets = test.targets(Arrays.asList(options.get("-stages").split(",")),
+                Arrays.asList(options.get("-transports").split(",")), documents, corpusMode);
+        System.out.println(header());
+        for (Target target : targets) {
+          System.out.println(test.format(test.run(target)));
+        }
+      } finally {
+        if (server != null) {
+          server.stop();
+        }
+      }
+  }
+}
@@ -0,0 +1,78 @@
+package org.lappsgrid.example;
+
+import java.util.concurrent.TimeUnit;
+
+import org.lappsgrid.discriminator.Discriminators.Uri;
+import org.lappsgrid.serialization.Data;
+import org.lappsgrid.serialization.lif.Container;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * PipelineBenchmark: all five services as one chain. chained() passes JSON
+ * from stage to stage as the separate webapps do; pipeline() runs them
+ * in process on one Container; process() leaves out parsing and serialization.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+  @Param({ "1", "20" })
+  public int questions;
+
+  @Param({ "10", "100", "1000" })
+  public int answers;
+
+  @Param({ "12", "48" })
+  public int words;
+
+  @Param({ "5000" })
+  public int vocabulary;
+
+  private AbstractProcessingService[] stages;
+  private Pipeline pipeline;
+  private String text;
+  private String json;
+
+  @Setup
+  public void setup() {
+      stages = Stages.create(questions > 1);
+      pipeline = new Pipeline(stages);
+      text = new QaCorpusGenerator(answers, words, vocabulary, 42).generate(questions);
+      json = new Data<String>(Uri.TEXT, text).asJson();
+  }
+
+  @Benchmark
+  public String chained() {
+      String result = json;
+      for (AbstractProcessingService stage : stages) {
+        result = stage.execute(result);
+      }
+      return result;
+  }
+
+  @Benchmark
+  public String pipeline() {
+      return pipeline.execute(json);
+  }
+
+  @Benchmark
+  public Container process() throws ProcessingException {
+      Container container = new Container();
+      container.setText(text);
+      return pipeline.process(container);
+  }
+}
@@ -0,0 +1,88 @@
+package org.lappsgrid.example;
+
+import java.util.Random;
+
+/**
+ * QaCorpusGenerator: write synthetic "Q question" / "A score answer" corpora
+ * in the format read by ElementAnnotation. Words are drawn from a Zipf-like
+ * distribution over a fixed vocabulary, so a few words are very common, and
+ * correct answers reuse part of their question so scoring has signal.
+ *
+ */
+public class QaCorpusGenerator {
+  private final int answers;
+  private final int words;
+  private final String[] vocabulary;
+  private final long seed;
+
+  /**
+   * @param answers candidate answers per question
+   * @param words words per sentence
+   * @param vocabularySize number of distinct words
+   * @param seed makes the corpus reproducible
+   */
+  public QaCorpusGenerator(int answers, int words, int vocabularySize, long seed) {
+      if (answers < 1 || words < 1 || vocabularySize < 1) {
+        throw new IllegalArgumentException("answers, words and vocabularySize must be positive");
+      }
+      this.answers = answers;
+      this.words = words;
+      this.seed = seed;
+      vocabulary = new String[vocabularySize];
+      Random random = new Random(seed);
+      for (int i = 0; i < vocabularySize; i++) {
+        vocabulary[i] = word(random, 2 + random.nextInt(8));
+      }
+  }
+
+  /**
+   * @param questions number of Q/A blocks; more than one needs ElementAnnotation(true)
+   * @return the corpus text
+   */
+  public String generate(int questions) {
+      Random random = new Random(seed + questions);
+      StringBuilder text = new StringBuilder(questions * (answers + 1) * words * 8);
+      String[] question = new String[words];
+      for (int q = 0; q < questions; q++) {
+        for (int i = 0; i < words; i++) {
+          question[i] = pick(random);
+        }
+        text.append("Q ");
+        sentence(text, question, random, 0);
+        text.append('?').append('\n');
+        for (int a = 0; a < answers; a++) {
+          // The first answer is always correct, then about one in four.
+          boolean correct = a == 0 || random.nextInt(4) == 0;
+          text.append("A ").append(correct ? '1' : '0').append(' ');
+          sentence(text, question, random, correct ? 0.5 : 0.1);
+          text.append('.').append('\n');
+        }
+      }
+      return text.toString();
+  }
+
+  /**
+   * Append a sentence, copying each question word with the given probability
+   */
+  private void sentence(StringBuilder text, String[] question, Random random, double overlap) {
+      for (int i = 0; i < words; i++) {
+        if (i > 0) {
+          text.append(' ');
+        }
+        text.append(overlap > 0 && random.nextDouble() < overlap ? question[i] : pick(random));
+      }
+  }
+
+  private String pick(Random random) {
+      int index = (int) Math.pow(vocabulary.length, random.nextDouble()) - 1;
+      return vocabulary[Math.max(0, Math.min(index, vocabulary.length - 1))];
+  }
+
+  private static String word(Random random, int length) {
+      char[] c = new char[length];
+      for (int i = 0; i < length; i++) {
+        c[i] = (char) ('a' + random.nextInt(26));
+      }
+      return new String(c);
+  }
+}
@@ -0,0 +1,134 @@
+package org.lappsgrid.example;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ScoringSweep: compare a grid of AnswerScoring configurations, every
+ * similarity with every set of order weights, on documents already processed
+ * up to NgramAnnotation, and print one row of metrics per configuration.
+ * Each document is parsed once and each of its questions and answers
+ * vectorized once per n-gram order for the whole grid; see ScoringGrid and
+ * ParameterSweep.
+ *
+ * Weight vectors are separated by '/' and their weights by ',', so
+ * "1/0,1/1,1" sweeps unigrams, bigrams, and both with equal weight. The input
+ * must hold n-grams of the highest order with a positive weight.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar org.lappsgrid.example.ScoringSweep [-depth K] [-threads T]
+ *     [-idf index] [-scorers overlap,cosine,bm25] [-weights 1/0,1/1,1] ngrams.jsonl ...
+ * </pre>
+ *
+ */
+public class ScoringSweep {
+
+  private ScoringSweep() {
+  }
+
+  /**
+   * @param scorers the similarities
+   * @param weights the order weights, weights[i][n - 1] for order n
+   * @param statistics document frequencies for IDF weighting, or null for raw counts
+   * @return one AnswerScoring per scorer and weight vector, weights varying fastest
+   */
+  public static List<AnswerScoring> grid(List<Scorer> scorers, List<double[]> weights,
+          CorpusStatistics statistics) {
+      List<AnswerScoring> grid = new ArrayList<>(scorers.size() * weights.size());
+      for (Scorer scorer : scorers) {
+        for (double[] w : weights) {
+          grid.add(new AnswerScoring(scorer, statistics, w));
+        }
+      }
+      return grid;
+  }
+
+  /**
+   * @param name overlap, cosine or bm25
+   * @return the scorer with its default parameters
+   */
+  static Scorer scorer(String name) {
+      if (name.equals("overlap")) {
+        return new OverlapScorer();
+      }
+      if (name.equals("cosine")) {
+        return new CosineScorer();
+      }
+      if (name.equals("bm25")) {
+        return new Bm25Scorer();
+      }
+      throw new IllegalArgumentException("Unknown scorer: " + name);
+  }
+
+  /**
+   * @param spec weight vectors separated by '/', weights separated by ','
+   * @return the weight vectors
+   */
+  static List<double[]> weights(String spec) {
+      List<double[]> weights = new ArrayList<>();
+      for (String vector : spec.split("/")) {
+        String[] fields = vector.split(",");
+        double[] w = new double[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+          w[i] = Double.parseDouble(fields[i].trim());
+        }
+        weights.add(w);
+      }
+      return weights;
+  }
+
+  public static void main(String[] args) throws Exception {
+      int depth = 0;
+      int threads = Runtime.getRuntime().availableProcessors();
+      String index = null;
+      String scorers = "overlap";
+      String weights = "1";
+      int first = 0;
+      while (first + 1 < args.length && args[first].startsWith("-")) {
+        String value = args[first + 1];
+        switch (args[first]) {
+          case "-depth":
+            depth = Integer.parseInt(value);
+            break;
+          case "-threads":
+            threads = Integer.parseInt(value);
+            break;
+          case "-idf":
+            index = value;
+            break;
+          case "-scorers":
+            scorers = value;
+            break;
+          case "-weights":
+            weights = value;
+            break;
+          default:
+            throw new IllegalArgumentException("Unknown option: " + args[first]);
+        }
+        first += 2;
+      }
+      if (first == args.length) {
+        System.err.println("Usage: ScoringSweep [-depth K] [-threads T] [-idf index] [-scorers overlap,cosine,bm25]"
+                + " [-weights 1/0,1/1,1] <LIF file>...");
+        System.exit(1);
+      }
+      List<Scorer> similarities = new ArrayList<>();
+      for (String name : scorers.split(",")) {
+        similarities.add(scorer(name.trim()));
+      }
+      CorpusStatistics statistics = index == null ? null : CorpusStatistics.open(index);
+      try (ParameterSweep sweep = new ParameterSweep(new ScoringGrid(grid(similarities, weights(weights),
+              statistics)), depth, threads)) {
+        for (int i = first; i < args.length; i++) {
+          try (InputStream in = new BufferedInputStream(new FileInputStream(args[i]))) {
+            sweep.read(in);
+          }
+        }
+        System.out.println("documents=" + sweep.getDocuments());
+        System.out.print(sweep.table());
+      }
+  }
+}
@@ -0,0 +1,146 @@
+package org.lappsgrid.example;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.lappsgrid.discriminator.Discriminators.Uri;
+import org.lappsgrid.serialization.Data;
+import org.lappsgrid.serialization.DataContainer;
+import org.lappsgrid.serialization.Serializer;
+import org.lappsgrid.serialization.lif.Container;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * StageBenchmark: each service on its own, with the input it receives in the
+ * real pipeline. execute() measures the whole JSON round trip; parse, process
+ * and serialize measure its phases separately. parseLazy indexes the views
+ * without decoding their annotations, as execute() does.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StageBenchmark {
+
+  /**
+   * The input of one stage and the stage itself
+   */
+  @State(Scope.Benchmark)
+  public static class Input {
+    @Param({ "element", "token", "ngram", "score", "eval" })
+    public String stage;
+
+    @Param({ "1" })
+    public int questions;
+
+    @Param({ "10", "100", "1000" })
+    public int answers;
+
+    @Param({ "12", "48" })
+    public int words;
+
+    @Param({ "5000" })
+    public int vocabulary;
+
+    AbstractProcessingService service;
+    String json;
+    Container processed;
+
+    @Setup(Level.Trial)
+    public void setup() throws ProcessingException {
+        AbstractProcessingService[] stages = Stages.create(questions > 1);
+        int index = Stages.indexOf(stage);
+        service = stages[index];
+
+        // Run the stages before this one to get its real input.
+        String text = new QaCorpusGenerator(answers, words, vocabulary, 42).generate(questions);
+        Container container = new Container();
+        container.setText(text);
+        for (int i = 0; i < index; i++) {
+          container = stages[i].process(container);
+        }
+        json = index == 0 ? new Data<String>(Uri.TEXT, text).asJson() : new DataContainer(container).asJson();
+        processed = service.process(container);
+    }
+  }
+
+  /**
+   * A freshly parsed container for every invocation, since process() adds a view
+   */
+  @State(Scope.Thread)
+  public static class Fresh {
+    Container container;
+
+    @Setup(Level.Invocation)
+    public void setup(Input input) {
+        container = AbstractProcessingService.toContainer(Serializer.parse(input.json, Data.class));
+    }
+  }
+
+  @Benchmark
+  public String execute(Input input) {
+      return input.service.execute(input.json);
+  }
+
+  @Benchmark
+  public Container parse(Input input) {
+      return AbstractProcessingService.toContainer(Serializer.parse(input.json, Data.class));
+  }
+
+  @Benchmark
+  public Container parseLazy(Input input) throws IOException {
+      return AbstractProcessingService.toContainer(LazyLif.parse(input.json));
+  }
+
+  @Benchmark
+  public Container process(Input input, Fresh fresh) throws ProcessingException {
+      return input.service.process(fresh.container);
+  }
+
+  @Benchmark
+  public String serializePretty(Input input) {
+      return new DataContainer(input.processed).asPrettyJson();
+  }
+
+  @Benchmark
+  public void serializeStream(Input input, Blackhole blackhole) throws IOException {
+      Stages.COMPACT.write(new DataContainer(input.processed), new NullOutputStream(blackhole));
+  }
+
+  /**
+   * Discard the bytes but let the Blackhole see them so the write is not elided
+   */
+  static class NullOutputStream extends OutputStream {
+    private final Blackhole blackhole;
+
+    NullOutputStream(Blackhole blackhole) {
+        this.blackhole = blackhole;
+    }
+
+    @Override
+    public void write(int b) {
+        blackhole.consume(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+        blackhole.consume(b);
+        blackhole.consume(len);
+    }
+  }
+}
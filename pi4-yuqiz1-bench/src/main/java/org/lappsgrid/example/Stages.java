@@ -0,0 +1,36 @@
+package org.lappsgrid.example;
+
+/**
+ * Stages: the five services in pipeline order, shared by the benchmarks
+ *
+ */
+class Stages {
+  static final String[] NAMES = { "element", "token", "ngram", "score", "eval" };
+  static final LifWriter COMPACT = new LifWriter(false);
+
+  private Stages() {
+  }
+
+  /**
+   * @param corpusMode whether the input holds more than one question
+   * @return new instances of every stage in order
+   */
+  static AbstractProcessingService[] create(boolean corpusMode) {
+      return new AbstractProcessingService[] {
+        new ElementAnnotation(corpusMode),
+        new TokenAnnotation(),
+        new NgramAnnotation(),
+        new AnswerScoring(),
+        new Evaluation()
+      };
+  }
+
+  static int indexOf(String name) {
+      for (int i = 0; i < NAMES.length; i++) {
+        if (NAMES[i].equals(name)) {
+          return i;
+        }
+      }
+      throw new IllegalArgumentException("Unknown stage: " + name);
+  }
+}
@@ -0,0 +1,404 @@
+package org.lappsgrid.example;
+
+import java.io.IOException;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+import org.lappsgrid.api.ProcessingService;
+import org.lappsgrid.discriminator.Discriminators.Uri;
+import org.lappsgrid.serialization.Data;
+import org.lappsgrid.serialization.DataContainer;
+import org.lappsgrid.serialization.lif.Container;
+import org.lappsgrid.serialization.lif.View;
+
+/**
+ * AbstractProcessingService: the JSON front end shared by every stage.
+ * execute(String) parses the input, hands the Container to process() and
+ * serializes the result, so remote callers keep the ProcessingService contract
+ * while in-process callers can chain process() calls directly. The stream
+ * variant of execute() writes compact JSON straight to an OutputStream.
+ *
+ * Documents may also arrive in the binary encoding of BinaryLif: base64 in a
+ * Data object with the BinaryLif discriminator over the String API, or raw
+ * through executeBinary(). The result is returned in the same encoding.
+ *
+ * JSON input is parsed by LazyLif: the annotations of a view are decoded only
+ * if process() reads them, and views it does not read are copied to the output
+ * as they arrived.
+ *
+ * In delta mode, executeDelta(), the result is a LifDelta with only the views
+ * this service added; a LifDelta is accepted as input by every front end.
+ *
+ * Both front ends record phase latencies, payload sizes, annotation counts
+ * and errors in the ServiceMetrics of the service class.
+ *
+ */
+public abstract class AbstractProcessingService implements ProcessingService, ContainerProcessor {
+
+  private static final LifWriter compactWriter = new LifWriter(false);
+  private static final LifWriter prettyWriter = new LifWriter(true);
+
+  private final ServiceMetrics metrics = ServiceMetrics.get(getClass().getName());
+
+  @Override
+  /**
+   * Parse the input, run process() on the container and serialize the result.
+   * Kept for remote callers; the output is pretty printed as before.
+   */
+  public String execute(String input) {
+      // Step #1: Parse the input.
+      long start = System.nanoTime();
+      Data data;
+      Data parsed = null;
+      try {
+        data = parsed = LazyLif.parse(input);
+      } catch (IOException e) {
+        data = new Data<String>(Uri.ERROR, "Unable to parse input: " + e.getMessage());
+      }
+      boolean binary = BinaryLif.DISCRIMINATOR.equals(data.getDiscriminator());
+      if (binary) {
+          try {
+            data = BinaryLif.fromBase64(data.getPayload().toString());
+          } catch (IOException e) {
+            data = new Data<String>(Uri.ERROR, "Unable to parse binary input: " + e.getMessage());
+          }
+      }
+      data = LifDelta.resolve(data, DocumentStore.getDefault());
+      metrics.getParse().record(micros(start));
+
+      // Steps #2 - #7
+      Data result = run(data);
+      String json;
+      long serializing = System.nanoTime();
+      if (binary && !Uri.ERROR.equals(result.getDiscriminator())) {
+          json = new Data<String>(BinaryLif.DISCRIMINATOR, toBase64(result)).asJson();
+      }
+      else if (result == parsed && !binary) {
+          // Return the input unchanged.
+          json = input;
+      }
+      // Step #8: Serialize the data object and return the JSON.
+      else if (LazyLif.isLazy(result)) {
+          json = LazyLif.toJson(result, true);
+      }
+      else if (result instanceof DataContainer) {
+          json = result.asPrettyJson();
+      }
+      else {
+          json = result.asJson();
+      }
+      record(start, serializing, ServiceMetrics.utf8Length(input), ServiceMetrics.utf8Length(json), result);
+      return json;
+  }
+
+  /**
+   * Like execute(String), but answer with a LifDelta holding only the views
+   * this service added. The input is kept in the default DocumentStore, so the
+   * delta can in turn be the input of the next service in this JVM.
+   * @param input a TEXT, LAPPS or LifDelta document
+   * @return the compact delta, or an error document
+   */
+  public String executeDelta(String input) {
+      long start = System.nanoTime();
+      String reference = DocumentStore.getDefault().put(input);
+      Data data;
+      try {
+        data = LifDelta.resolve(LazyLif.parse(input), DocumentStore.getDefault());
+      } catch (IOException e) {
+        data = new Data<String>(Uri.ERROR, "Unable to parse input: " + e.getMessage());
+      }
+      metrics.getParse().record(micros(start));
+      int first = viewCount(data);
+      Data result = run(data);
+      long serializing = System.nanoTime();
+      if (!Uri.ERROR.equals(result.getDiscriminator())) {
+          result = LifDelta.delta(reference, (Container) result.getPayload(), first);
+      }
+      String json = result.asJson();
+      record(start, serializing, ServiceMetrics.utf8Length(input), ServiceMetrics.utf8Length(json), result);
+      return json;
+  }
+
+  /**
+   * Run the service on an already parsed document
+   * @param data a TEXT or LAPPS document
+   * @return the result, or an error document
+   */
+  public Data execute(Data data) {
+      return run(data);
+  }
+
+  /**
+   * Run the service on many documents at once; see BatchExecutor
+   * @param inputs JSON documents
+   * @param concurrency the most documents processed at the same time
+   * @return the outputs in input order; a failed document gets an error document
+   * @throws InterruptedException if interrupted while waiting for a result
+   */
+  public List<String> execute(List<String> inputs, int concurrency) throws InterruptedException {
+      try (BatchExecutor batch = new BatchExecutor(concurrency)) {
+        return batch.execute(this, inputs);
+      }
+  }
+
+  /**
+   * @return the ServiceMetrics this service records to
+   */
+  public ServiceMetrics getServiceMetrics() {
+      return metrics;
+  }
+
+  /**
+   * Describe the settings that affect this service's output, for cache keys.
+   * Services with constructor parameters append them to the class name.
+   * @return the class name
+   */
+  public String getConfiguration() {
+      return getClass().getName();
+  }
+
+  /**
+   * Read a document from a stream and write the compact result to another
+   * @param in the JSON input
+   * @param out the destination, flushed but not closed
+   * @throws IOException if either stream fails
+   */
+  public void execute(InputStream in, OutputStream out) throws IOException {
+      execute(in, out, false);
+  }
+
+  /**
+   * Read a document from a stream and write the result to another without
+   * building the response as a String
+   * @param in the JSON input
+   * @param out the destination, flushed but not closed
+   * @param prettyPrint indent the output
+   * @throws IOException if either stream fails
+   */
+  public void execute(InputStream in, OutputStream out, boolean prettyPrint) throws IOException {
+      execute(in, out, prettyPrint, false, false);
+  }
+
+  /**
+   * Read a document from a stream and write the compact LifDelta of the result;
+   * see executeDelta(String)
+   * @param in a TEXT, LAPPS or LifDelta document
+   * @param out the destination, flushed but not closed
+   * @throws IOException if either stream fails
+   */
+  public void executeDelta(InputStream in, OutputStream out) throws IOException {
+      execute(in, out, false, false, true);
+  }
+
+  /**
+   * Read a binary LIF document from a stream and write the binary result to another
+   * @param in the BinaryLif input
+   * @param out the destination, flushed but not closed
+   * @throws IOException if either stream fails
+   */
+  public void executeBinary(InputStream in, OutputStream out) throws IOException {
+      execute(in, out, false, true, false);
+  }
+
+  private void execute(InputStream in, OutputStream out, boolean prettyPrint, boolean binary, boolean delta)
+          throws IOException {
+      long start = System.nanoTime();
+      CountingInputStream countingIn = new CountingInputStream(in);
+      String reference = null;
+      Data data;
+      try {
+        if (binary) {
+          data = BinaryLif.read(countingIn);
+        }
+        else if (delta) {
+          String json = LazyLif.text(countingIn);
+          reference = DocumentStore.getDefault().put(json);
+          data = LazyLif.parse(json);
+        }
+        else {
+          data = LazyLif.read(countingIn);
+        }
+      } catch (IOException e) {
+        data = new Data<String>(Uri.ERROR, "Unable to parse input: " + e.getMessage());
+      }
+      data = LifDelta.resolve(data, DocumentStore.getDefault());
+      metrics.getParse().record(micros(start));
+      int first = viewCount(data);
+      Data result = run(data);
+      long serializing = System.nanoTime();
+      if (delta && !Uri.ERROR.equals(result.getDiscriminator())) {
+        result = LifDelta.delta(reference, (Container) result.getPayload(), first);
+      }
+      CountingOutputStream countingOut = new CountingOutputStream(out);
+      if (binary) {
+        BinaryLif.write(result, countingOut);
+      }
+      else {
+        (prettyPrint ? prettyWriter : compactWriter).write(result, countingOut);
+      }
+      record(start, serializing, countingIn.count, countingOut.count, result);
+  }
+
+  private void record(long start, long serializing, long inputBytes, long outputBytes, Data result) {
+      metrics.getSerialize().record(micros(serializing));
+      metrics.getInputBytes().record(inputBytes);
+      metrics.getOutputBytes().record(outputBytes);
+      metrics.getTotal().record(micros(start));
+      metrics.request(Uri.ERROR.equals(result.getDiscriminator()));
+  }
+
+  /**
+   * Steps #2 - #7 shared by the String and stream front ends
+   * @param data the parsed input
+   * @return the input itself if it is an error, otherwise the result or a new error
+   */
+  private Data run(Data data) {
+      // Step #2: Check the discriminator
+      final String discriminator = data.getDiscriminator();
+      if (discriminator.equals(Uri.ERROR)) {
+          return data;
+      }
+
+      // Step #3: Extract the text.
+      Container container = toContainer(data);
+      if (container == null) {
+          // This is a format we don't accept.
+          String message = String.format("Unsupported discriminator type: %s", discriminator);
+          return new Data<String>(Uri.ERROR, message);
+      }
+
+      // Steps #4 - #6: Let the service add its view.
+      long start = System.nanoTime();
+      try {
+        container = process(container);
+      } catch (ProcessingException e) {
+        return new Data<String>(Uri.ERROR, e.getMessage());
+      } catch (RuntimeException e) {
+        // A bug in process() fails this request only; it is counted as an error like the rest.
+        return new Data<String>(Uri.ERROR, "Unexpected error in " + getClass().getName() + ": " + e);
+      } finally {
+        metrics.getProcess().record(micros(start));
+      }
+      List<View> views = container.getViews();
+      if (!views.isEmpty()) {
+        metrics.getAnnotations().record(views.get(views.size() - 1).getAnnotations().size());
+      }
+
+      // Step #7: Create a DataContainer with the result.
+      return new DataContainer(container);
+  }
+
+  /**
+   * Build a Container from a parsed Data object
+   * @param data a TEXT or LAPPS document; a LAPPS payload may be a Map or,
+   *        from LazyLif, already a Container
+   * @return the container, or null if the discriminator is not supported
+   */
+  public static Container toContainer(Data data) {
+      final String discriminator = data.getDiscriminator();
+      Container container = null;
+      if (discriminator.equals(Uri.TEXT)) {
+          container = new Container();
+          container.setText(data.getPayload().toString());
+      }
+      else if (discriminator.equals(Uri.LAPPS) && data.getPayload() instanceof Container) {
+          container = (Container) data.getPayload();
+      }
+      else if (discriminator.equals(Uri.LAPPS)) {
+          container = new Container((Map) data.getPayload());
+      }
+      return container;
+  }
+
+  /**
+   * @return the number of views the document already has
+   */
+  private static int viewCount(Data data) {
+      if (!Uri.LAPPS.equals(data.getDiscriminator())) {
+        return 0;
+      }
+      Object payload = data.getPayload();
+      if (payload instanceof Container) {
+        return ((Container) payload).getViews().size();
+      }
+      Object views = payload instanceof Map ? ((Map) payload).get("views") : null;
+      return views instanceof List ? ((List) views).size() : 0;
+  }
+
+  private static String toBase64(Data data) {
+      try {
+        return BinaryLif.toBase64(data);
+      } catch (IOException e) {
+        // Only a ByteArrayOutputStream is written.
+        throw new IllegalStateException(e);
+      }
+  }
+
+  private static long micros(long start) {
+      return (System.nanoTime() - start) / 1000;
+  }
+
+  /**
+   * Count the bytes read through a stream
+   */
+  private static class CountingInputStream extends FilterInputStream {
+    private long count = 0;
+
+    CountingInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b >= 0) {
+          count++;
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = super.read(b, off, len);
+        if (n > 0) {
+          count += n;
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count += skipped;
+        return skipped;
+    }
+  }
+
+  /**
+   * Count the bytes written through a stream
+   */
+  private static class CountingOutputStream extends FilterOutputStream {
+    private long count = 0;
+
+    CountingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        // FilterOutputStream would write byte by byte.
+        out.write(b, off, len);
+        count += len;
+    }
+  }
+}
@@ -0,0 +1,176 @@
+package org.lappsgrid.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.lappsgrid.api.ProcessingService;
+import org.lappsgrid.discriminator.Discriminators.Uri;
+import org.lappsgrid.serialization.Data;
+
+/**
+ * BatchExecutor: run many documents through a service concurrently and hand
+ * back the results in input order. At most "concurrency" documents are in
+ * flight at once, which also bounds memory when the input is a stream. A
+ * document that fails yields an error result instead of failing the batch.
+ *
+ * Tasks run on virtual threads when the JVM has them (Java 21 and later) and
+ * on a fixed pool of daemon threads otherwise.
+ *
+ */
+public class BatchExecutor implements Closeable {
+
+  /**
+   * Receives the results in input order
+   */
+  public interface Handler<T> {
+    void result(int index, T result) throws IOException;
+    void failure(int index, Throwable cause) throws IOException;
+  }
+
+  private final int concurrency;
+  private final ExecutorService executor;
+
+  public BatchExecutor(int concurrency) {
+      if (concurrency < 1) {
+        throw new IllegalArgumentException("concurrency must be at least 1: " + concurrency);
+      }
+      this.concurrency = concurrency;
+      executor = newExecutor(concurrency);
+  }
+
+  public int getConcurrency() {
+      return concurrency;
+  }
+
+  /**
+   * Run every task, delivering results in order as soon as they are at the
+   * head of the window
+   * @param tasks the work, consumed lazily
+   * @param handler receives each result or failure
+   * @throws IOException if the handler fails
+   * @throws InterruptedException if interrupted while waiting for a result
+   */
+  public <T> void execute(Iterator<? extends Callable<T>> tasks, Handler<T> handler)
+          throws IOException, InterruptedException {
+      ArrayDeque<Future<T>> pending = new ArrayDeque<>(concurrency);
+      int next = 0;
+      try {
+        while (tasks.hasNext()) {
+          if (pending.size() == concurrency) {
+            deliver(pending.poll(), next++, handler);
+          }
+          pending.add(executor.submit(tasks.next()));
+        }
+        while (!pending.isEmpty()) {
+          deliver(pending.poll(), next++, handler);
+        }
+      } finally {
+        for (Future<T> future : pending) {
+          future.cancel(true);
+        }
+      }
+  }
+
+  private static <T> void deliver(Future<T> future, int index, Handler<T> handler)
+          throws IOException, InterruptedException {
+      T result;
+      try {
+        result = future.get();
+      } catch (ExecutionException e) {
+        handler.failure(index, e.getCause());
+        return;
+      }
+      handler.result(index, result);
+  }
+
+  /**
+   * Run a service on a list of documents
+   * @param service the service
+   * @param inputs JSON documents
+   * @return the outputs in input order; a failed document gets an error document
+   * @throws InterruptedException if interrupted while waiting for a result
+   */
+  public List<String> execute(final ProcessingService service, List<String> inputs) throws InterruptedException {
+      final List<String> results = new ArrayList<>(inputs.size());
+      final Iterator<String> documents = inputs.iterator();
+      Iterator<Callable<String>> tasks = new Iterator<Callable<String>>() {
+        @Override
+        public boolean hasNext() {
+            return documents.hasNext();
+        }
+
+        @Override
+        public Callable<String> next() {
+            final String input = documents.next();
+            return new Callable<String>() {
+              @Override
+              public String call() {
+                  return service.execute(input);
+              }
+            };
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+      };
+      try {
+        execute(tasks, new Handler<String>() {
+          @Override
+          public void result(int index, String result) {
+              results.add(result);
+          }
+
+          @Override
+          public void failure(int index, Throwable cause) {
+              results.add(error(cause).asJson());
+          }
+        });
+      } catch (IOException e) {
+        // The handler above never throws.
+        throw new IllegalStateException(e);
+      }
+      return results;
+  }
+
+  /**
+   * @param cause why a document failed
+   * @return the error document returned in its place
+   */
+  public static Data<String> error(Throwable cause) {
+      return new Data<String>(Uri.ERROR, "Processing failed: " + cause);
+  }
+
+  @Override
+  public void close() {
+      executor.shutdown();
+  }
+
+  private static ExecutorService newExecutor(int concurrency) {
+      try {
+        Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        return (ExecutorService) virtual.invoke(null);
+      } catch (ReflectiveOperationException e) {
+        return Executors.newFixedThreadPool(concurrency, new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable r) {
+              Thread thread = new Thread(r, "batch");
+              thread.setDaemon(true);
+              return thread;
+          }
+        });
+      }
+  }
+}
@@ -0,0 +1,395 @@
+package org.lappsgrid.example;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.lappsgrid.serialization.Data;
+
+import com.fasterxml.jackson.core.Base64Variants;
+
+/**
+ * BinaryLif: a compact binary encoding of LIF documents. The Data envelope is
+ * written as a tree of maps, lists, strings and numbers, the same shape as
+ * the JSON, so Container(Map) reads it back unchanged. Strings of up to
+ * 128 characters are interned: the first occurrence is written once and later
+ * ones as a varint index, which removes most of the cost of repeated feature
+ * names, types and n-gram keys. Integers, offsets and lengths are zigzag varints.
+ *
+ * The decoder does not trust the lengths it reads: a string or collection
+ * longer than the bytes left in a byte array input, or than MAX_LENGTH in a
+ * stream, is rejected with an IOException before anything is allocated, and
+ * so are lists and maps nested more than MAX_DEPTH deep.
+ *
+ * Over the String API a binary document travels base64 encoded as the payload
+ * of a Data object with the discriminator DISCRIMINATOR; over HTTP it is sent
+ * raw with the content type CONTENT_TYPE.
+ *
+ */
+public class BinaryLif {
+  public static final String DISCRIMINATOR = "http://vocab.lappsgrid.org/ns/media/lif#binary";
+  public static final String CONTENT_TYPE = "application/x-lif-binary";
+
+  private static final byte[] MAGIC = { 'L', 'I', 'F', 'B' };
+  private static final int VERSION = 1;
+  private static final int MAX_INTERNED = 128;
+  // The largest string in bytes or collection in elements read from a stream of unknown size
+  private static final int MAX_LENGTH = 1 << 26;
+  // Initial capacity of a decoded list or map; they grow as elements are actually read
+  private static final int MAX_PRESIZE = 1024;
+  // The deepest nesting of lists and maps decoded, well below what overflows the stack
+  private static final int MAX_DEPTH = 512;
+
+  private static final int NULL = 0;
+  private static final int FALSE = 1;
+  private static final int TRUE = 2;
+  private static final int INTEGER = 3;
+  private static final int DOUBLE = 4;
+  private static final int STRING_NEW = 5;
+  private static final int STRING_REF = 6;
+  private static final int STRING_RAW = 7;
+  private static final int LIST = 8;
+  private static final int MAP = 9;
+
+  private BinaryLif() {
+  }
+
+  /**
+   * Encode a document
+   * @param data the document; a Container payload is converted to its JSON shape
+   * @param out the destination, flushed but not closed
+   * @throws IOException if the stream cannot be written
+   */
+  public static void write(Data data, OutputStream out) throws IOException {
+      Encoder encoder = new Encoder(out);
+      encoder.bytes(MAGIC, 0, MAGIC.length);
+      encoder.varint(VERSION);
+      encoder.value(data.getDiscriminator());
+      encoder.value(LifWriter.toTree(data.getPayload()));
+      encoder.flush();
+  }
+
+  /**
+   * Decode a document
+   * @param in the encoded document
+   * @return the document, with a LAPPS payload as a Map
+   * @throws IOException if the stream is not a binary LIF document
+   */
+  public static Data read(InputStream in) throws IOException {
+      Decoder decoder = new Decoder(in);
+      for (byte b : MAGIC) {
+        if (decoder.read() != b) {
+          throw new IOException("Not a binary LIF document");
+        }
+      }
+      int version = (int) decoder.varint();
+      if (version != VERSION) {
+        throw new IOException("Unsupported binary LIF version " + version);
+      }
+      Object discriminator = decoder.value();
+      if (!(discriminator instanceof String)) {
+        throw new IOException("Missing discriminator");
+      }
+      return new Data<Object>((String) discriminator, decoder.value());
+  }
+
+  /**
+   * @param data a document
+   * @return the binary encoding in base64, for the payload of a DISCRIMINATOR document
+   */
+  public static String toBase64(Data data) throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      write(data, out);
+      return Base64Variants.MIME_NO_LINEFEEDS.encode(out.toByteArray());
+  }
+
+  /**
+   * @param base64 the payload of a DISCRIMINATOR document
+   * @return the decoded document
+   */
+  public static Data fromBase64(String base64) throws IOException {
+      byte[] bytes;
+      try {
+        bytes = Base64Variants.MIME_NO_LINEFEEDS.decode(base64);
+      } catch (IllegalArgumentException e) {
+        throw new IOException("Invalid base64 payload", e);
+      }
+      return read(new ByteArrayInputStream(bytes));
+  }
+
+  private static class Encoder {
+    private final OutputStream out;
+    private final byte[] buffer = new byte[8192];
+    private int position = 0;
+    private final Map<String, Integer> strings = new HashMap<>();
+
+    Encoder(OutputStream out) {
+        this.out = out;
+    }
+
+    void value(Object value) throws IOException {
+        if (value == null) {
+          write(NULL);
+        }
+        else if (value instanceof String) {
+          string((String) value);
+        }
+        else if (value instanceof Boolean) {
+          write((Boolean) value ? TRUE : FALSE);
+        }
+        else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+          write(INTEGER);
+          long v = ((Number) value).longValue();
+          varint((v << 1) ^ (v >> 63));
+        }
+        else if (value instanceof Number) {
+          write(DOUBLE);
+          long bits = Double.doubleToLongBits(((Number) value).doubleValue());
+          for (int shift = 56; shift >= 0; shift -= 8) {
+            write((int) (bits >>> shift));
+          }
+        }
+        else if (value instanceof Map) {
+          Map<?, ?> map = (Map<?, ?>) value;
+          write(MAP);
+          varint(map.size());
+          for (Map.Entry<?, ?> entry : map.entrySet()) {
+            string(String.valueOf(entry.getKey()));
+            value(entry.getValue());
+          }
+        }
+        else if (value instanceof List) {
+          List<?> list = (List<?>) value;
+          write(LIST);
+          varint(list.size());
+          for (Object item : list) {
+            value(item);
+          }
+        }
+        else {
+          Object tree = LifWriter.toTree(value);
+          if (tree != null && tree.getClass() == value.getClass()) {
+            // Not convertible to a JSON tree; keep its text.
+            string(value.toString());
+          }
+          else {
+            value(tree);
+          }
+        }
+    }
+
+    private void string(String s) throws IOException {
+        if (s.length() <= MAX_INTERNED) {
+          Integer index = strings.get(s);
+          if (index != null) {
+            write(STRING_REF);
+            varint(index);
+            return;
+          }
+          strings.put(s, strings.size());
+          write(STRING_NEW);
+        }
+        else {
+          write(STRING_RAW);
+        }
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        varint(utf8.length);
+        bytes(utf8, 0, utf8.length);
+    }
+
+    void varint(long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+          write((int) ((v & 0x7F) | 0x80));
+          v >>>= 7;
+        }
+        write((int) v);
+    }
+
+    private void write(int b) throws IOException {
+        if (position == buffer.length) {
+          flushBuffer();
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    void bytes(byte[] b, int offset, int length) throws IOException {
+        if (length > buffer.length - position) {
+          flushBuffer();
+          if (length > buffer.length) {
+            out.write(b, offset, length);
+            return;
+          }
+        }
+        System.arraycopy(b, offset, buffer, position, length);
+        position += length;
+    }
+
+    private void flushBuffer() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+    }
+
+    void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+  }
+
+  private static class Decoder {
+    private final InputStream in;
+    private final List<String> strings = new ArrayList<>();
+    // The size of a byte array input, or -1 for a stream
+    private final long limit;
+    private long position = 0;
+    private int depth = 0;
+
+    Decoder(InputStream in) {
+        limit = in instanceof ByteArrayInputStream ? ((ByteArrayInputStream) in).available() : -1;
+        this.in = in instanceof BufferedInputStream || in instanceof ByteArrayInputStream
+                ? in : new BufferedInputStream(in);
+    }
+
+    Object value() throws IOException {
+        int tag = read();
+        switch (tag) {
+          case NULL:
+            return null;
+          case FALSE:
+            return Boolean.FALSE;
+          case TRUE:
+            return Boolean.TRUE;
+          case INTEGER: {
+            long z = varint();
+            long v = (z >>> 1) ^ -(z & 1);
+            // Small values come back as Integer, as Jackson parses them.
+            if (v == (int) v) {
+              return Integer.valueOf((int) v);
+            }
+            return Long.valueOf(v);
+          }
+          case DOUBLE: {
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+              bits = (bits << 8) | read();
+            }
+            return Double.longBitsToDouble(bits);
+          }
+          case STRING_NEW:
+          case STRING_REF:
+          case STRING_RAW:
+            return string(tag);
+          case LIST: {
+            int n = size();
+            enter();
+            List<Object> list = new ArrayList<>(Math.min(n, MAX_PRESIZE));
+            for (int i = 0; i < n; i++) {
+              list.add(value());
+            }
+            depth--;
+            return list;
+          }
+          case MAP: {
+            int n = size();
+            enter();
+            Map<String, Object> map = new LinkedHashMap<>(Math.max(4, Math.min(n, MAX_PRESIZE) * 4 / 3 + 1));
+            for (int i = 0; i < n; i++) {
+              Object key = value();
+              if (!(key instanceof String)) {
+                throw new IOException("Map key is not a string");
+              }
+              map.put((String) key, value());
+            }
+            depth--;
+            return map;
+          }
+          default:
+            throw new IOException("Unknown tag " + tag);
+        }
+    }
+
+    private void enter() throws IOException {
+        if (++depth > MAX_DEPTH) {
+          throw new IOException("Lists and maps nested more than " + MAX_DEPTH + " deep");
+        }
+    }
+
+    private String string(int tag) throws IOException {
+        if (tag == STRING_REF) {
+          int index = length();
+          if (index >= strings.size()) {
+            throw new IOException("Invalid string reference " + index);
+          }
+          return strings.get(index);
+        }
+        byte[] utf8 = new byte[size()];
+        int offset = 0;
+        while (offset < utf8.length) {
+          int n = in.read(utf8, offset, utf8.length - offset);
+          if (n < 0) {
+            throw new EOFException();
+          }
+          offset += n;
+          position += n;
+        }
+        String s = new String(utf8, StandardCharsets.UTF_8);
+        if (tag == STRING_NEW) {
+          strings.add(s);
+        }
+        return s;
+    }
+
+    /**
+     * Read the length of a string or collection; every byte or element of it
+     * takes at least one more byte of input
+     */
+    private int size() throws IOException {
+        int n = length();
+        if (limit >= 0 && n > limit - position) {
+          throw new IOException("Length " + n + " exceeds the " + (limit - position) + " bytes left");
+        }
+        if (limit < 0 && n > MAX_LENGTH) {
+          throw new IOException("Length " + n + " exceeds the limit of " + MAX_LENGTH);
+        }
+        return n;
+    }
+
+    private int length() throws IOException {
+        long v = varint();
+        if (v > Integer.MAX_VALUE) {
+          throw new IOException("Length out of range: " + v);
+        }
+        return (int) v;
+    }
+
+    long varint() throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+          int b = read();
+          v |= (long) (b & 0x7F) << shift;
+          if ((b & 0x80) == 0) {
+            return v;
+          }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    int read() throws IOException {
+        int b = in.read();
+        if (b < 0) {
+          throw new EOFException();
+        }
+        position++;
+        return b;
+    }
+  }
+}
@@ -0,0 +1,219 @@
+package org.lappsgrid.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.lappsgrid.api.ProcessingService;
+
+/**
+ * CachingService: put a result cache in front of any ProcessingService. The key
+ * is the SHA-256 of the service configuration and the input, so the same
+ * document sent to the same stage is only processed once.
+ *
+ * Results live in an in-memory LRU tier bounded by an estimate of their size
+ * in bytes. With a directory, every result is also written to a disk tier that
+ * survives restarts and refills the memory tier on a hit.
+ *
+ * <pre>
+ * ProcessingService ngrams = new CachingService(new NgramAnnotation(), 64L &lt;&lt; 20);
+ * </pre>
+ *
+ */
+public class CachingService implements ProcessingService {
+  private final ProcessingService service;
+  private final String configuration;
+  private final long maxBytes;
+  private final File directory;
+
+  // Guarded by this.
+  private final LinkedHashMap<String, String> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long bytes = 0;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong diskHits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  /**
+   * A memory-only cache
+   * @param service the service to cache
+   * @param maxBytes the memory budget
+   */
+  public CachingService(ProcessingService service, long maxBytes) {
+      this(service, maxBytes, null);
+  }
+
+  /**
+   * @param service the service to cache; an AbstractProcessingService contributes its configuration to the key
+   * @param maxBytes the memory budget
+   * @param directory the disk tier, created if missing, or null for none
+   */
+  public CachingService(ProcessingService service, long maxBytes, File directory) {
+      this(service, configurationOf(service), maxBytes, directory);
+  }
+
+  /**
+   * @param service the service to cache
+   * @param configuration identifies the settings of the service; results are only shared by equal configurations
+   * @param maxBytes the memory budget
+   * @param directory the disk tier, created if missing, or null for none
+   */
+  public CachingService(ProcessingService service, String configuration, long maxBytes, File directory) {
+      if (maxBytes < 0) {
+        throw new IllegalArgumentException("maxBytes must not be negative: " + maxBytes);
+      }
+      if (directory != null && !directory.isDirectory() && !directory.mkdirs()) {
+        throw new IllegalArgumentException("Unable to create cache directory " + directory);
+      }
+      this.service = service;
+      this.configuration = configuration;
+      this.maxBytes = maxBytes;
+      this.directory = directory;
+  }
+
+  private static String configurationOf(ProcessingService service) {
+      if (service instanceof AbstractProcessingService) {
+        return ((AbstractProcessingService) service).getConfiguration();
+      }
+      return service.getClass().getName();
+  }
+
+  @Override
+  public String getMetadata() {
+      return service.getMetadata();
+  }
+
+  @Override
+  /**
+   * Return the cached result for this input, running the service on a miss
+   */
+  public String execute(String input) {
+      String key = key(input);
+      String result;
+      synchronized (this) {
+        result = entries.get(key);
+      }
+      if (result != null) {
+        hits.incrementAndGet();
+        return result;
+      }
+      result = readDisk(key);
+      if (result != null) {
+        diskHits.incrementAndGet();
+        put(key, result);
+        return result;
+      }
+      misses.incrementAndGet();
+      result = service.execute(input);
+      put(key, result);
+      writeDisk(key, result);
+      return result;
+  }
+
+  /**
+   * Drop every entry of the memory tier; the disk tier is kept
+   */
+  public synchronized void clear() {
+      entries.clear();
+      bytes = 0;
+  }
+
+  public long getHits() {
+      return hits.get();
+  }
+
+  public long getDiskHits() {
+      return diskHits.get();
+  }
+
+  public long getMisses() {
+      return misses.get();
+  }
+
+  public long getEvictions() {
+      return evictions.get();
+  }
+
+  /**
+   * @return the estimated size of the memory tier in bytes
+   */
+  public synchronized long getBytes() {
+      return bytes;
+  }
+
+  public synchronized int size() {
+      return entries.size();
+  }
+
+  private synchronized void put(String key, String result) {
+      long size = sizeOf(key, result);
+      if (size > maxBytes) {
+        return;
+      }
+      String old = entries.put(key, result);
+      if (old != null) {
+        bytes -= sizeOf(key, old);
+      }
+      bytes += size;
+      Iterator<Map.Entry<String, String>> eldest = entries.entrySet().iterator();
+      while (bytes > maxBytes) {
+        Map.Entry<String, String> entry = eldest.next();
+        bytes -= sizeOf(entry.getKey(), entry.getValue());
+        eldest.remove();
+        evictions.incrementAndGet();
+      }
+  }
+
+  /**
+   * Two bytes per char plus a rough allowance for the entry and String headers
+   */
+  private static long sizeOf(String key, String value) {
+      return 2L * (key.length() + value.length()) + 128;
+  }
+
+  private String readDisk(String key) {
+      if (directory == null) {
+        return null;
+      }
+      File file = new File(directory, key);
+      if (!file.isFile()) {
+        return null;
+      }
+      try {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+      } catch (IOException e) {
+        // Treat an unreadable entry as a miss; it is rewritten below.
+        return null;
+      }
+  }
+
+  private void writeDisk(String key, String result) {
+      if (directory == null) {
+        return;
+      }
+      File tmp = null;
+      try {
+        // Write to a temporary file and rename so readers never see a partial entry.
+        tmp = File.createTempFile(key, ".tmp", directory);
+        Files.write(tmp.toPath(), result.getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp.toPath(), new File(directory, key).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        // The disk tier is best effort; the result is still cached in memory.
+        if (tmp != null) {
+          tmp.delete();
+        }
+      }
+  }
+
+  private String key(String input) {
+      return Hashes.sha256(configuration, input);
+  }
+}
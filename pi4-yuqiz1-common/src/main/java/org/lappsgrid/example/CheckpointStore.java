@@ -0,0 +1,136 @@
+package org.lappsgrid.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.lappsgrid.discriminator.Discriminators.Uri;
+import org.lappsgrid.serialization.Data;
+import org.lappsgrid.serialization.lif.Container;
+
+/**
+ * CheckpointStore: keep the output of every stage of a Pipeline on disk, so a
+ * later run can resume after the deepest stage whose input and configuration
+ * are unchanged. Re-running the last stages with new parameters then skips
+ * the stages before them.
+ *
+ * Checkpoints are keyed by a chain of hashes. The key of the input is the
+ * SHA-256 of its JSON, and the key of stage i is the SHA-256 of the key of
+ * stage i - 1 and the configuration of stage i. A checkpoint is therefore only
+ * found again for the same input and the same configuration of its stage and
+ * of every stage before it.
+ *
+ * Checkpoints are never evicted; delete the directory to reclaim the space.
+ *
+ */
+public class CheckpointStore {
+  private final File directory;
+  private final LifWriter writer = new LifWriter();
+
+  private final AtomicLong loads = new AtomicLong();
+  private final AtomicLong saves = new AtomicLong();
+
+  /**
+   * @param directory where checkpoints are written, created if missing
+   */
+  public CheckpointStore(File directory) {
+      if (!directory.isDirectory() && !directory.mkdirs()) {
+        throw new IllegalArgumentException("Unable to create checkpoint directory " + directory);
+      }
+      this.directory = directory;
+  }
+
+  /**
+   * @param container a document
+   * @return the key of the document as the input of a pipeline
+   */
+  public String inputKey(Container container) {
+      return DocumentStore.reference(toJson(container));
+  }
+
+  /**
+   * @param previous the key of the input or of the previous stage
+   * @param configuration the configuration of the stage
+   * @return the key of the stage's output
+   */
+  public static String key(String previous, String configuration) {
+      return Hashes.sha256(previous, configuration);
+  }
+
+  /**
+   * Load a checkpoint; its views are parsed lazily
+   * @param key the key of a stage's output
+   * @return the document, or null if there is none or it cannot be read
+   */
+  public Container get(String key) {
+      File file = new File(directory, key);
+      if (!file.isFile()) {
+        return null;
+      }
+      try {
+        Container container = AbstractProcessingService.toContainer(
+                LazyLif.parse(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8)));
+        if (container != null) {
+          loads.incrementAndGet();
+        }
+        return container;
+      } catch (IOException e) {
+        // Treat an unreadable checkpoint as missing; it is rewritten when its stage runs again.
+        return null;
+      }
+  }
+
+  /**
+   * Save a checkpoint. Saving is best effort: a run without its checkpoints
+   * is still correct, only slower to resume.
+   * @param key the key of a stage's output
+   * @param container the output
+   * @return true if the checkpoint was written
+   */
+  public boolean put(String key, Container container) {
+      File tmp = null;
+      try {
+        // Write to a temporary file and rename so readers never see a partial checkpoint.
+        tmp = File.createTempFile(key, ".tmp", directory);
+        Files.write(tmp.toPath(), toJson(container).getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp.toPath(), new File(directory, key).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        if (tmp != null) {
+          tmp.delete();
+        }
+        return false;
+      }
+      saves.incrementAndGet();
+      return true;
+  }
+
+  /**
+   * @return the number of checkpoints loaded
+   */
+  public long getLoads() {
+      return loads.get();
+  }
+
+  /**
+   * @return the number of checkpoints saved
+   */
+  public long getSaves() {
+      return saves.get();
+  }
+
+  private String toJson(Container container) {
+      StringWriter out = new StringWriter();
+      try {
+        writer.write(new Data<Container>(Uri.LAPPS, container), out);
+      } catch (IOException e) {
+        // Only a StringWriter is written.
+        throw new IllegalStateException(e);
+      }
+      return out.toString();
+  }
+}
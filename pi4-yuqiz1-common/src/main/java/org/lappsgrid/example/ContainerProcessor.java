@@ -0,0 +1,19 @@
+package org.lappsgrid.example;
+
+import org.lappsgrid.serialization.lif.Container;
+
+/**
+ * ContainerProcessor: a pipeline stage that works on a live Container instead
+ * of a serialized JSON document
+ *
+ */
+public interface ContainerProcessor {
+
+  /**
+   * Add this stage's view to the container and return it
+   * @param container the document produced by the previous stage
+   * @return the annotated container
+   * @throws ProcessingException if the container cannot be annotated
+   */
+  Container process(Container container) throws ProcessingException;
+}
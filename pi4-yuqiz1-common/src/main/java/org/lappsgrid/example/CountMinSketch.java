@@ -0,0 +1,227 @@
+package org.lappsgrid.example;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CountMinSketch: approximate n-gram counts in a fixed amount of memory. depth
+ * rows of width counters each; an n-gram increments one counter per row and
+ * its estimate is the smallest of them. Estimates never undercount, and with
+ * probability 1 - delta overcount by at most epsilon times the total count,
+ * for width = e / epsilon and depth = ln(1 / delta).
+ *
+ * N-grams are identified by hash(), which combines the hashes of their words,
+ * so a counter can hash the n-grams ending at each token without building a
+ * String and a scorer can hash the question's "n-Gram" keys to look them up.
+ *
+ */
+public class CountMinSketch {
+  private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+  private static final long FNV_PRIME = 0x100000001B3L;
+  private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+  /**
+   * The most counters an int[] can hold on common JVMs
+   */
+  private static final int MAX_COUNTERS = Integer.MAX_VALUE - 8;
+
+  private final int width;
+  private final int depth;
+  private final int[] counts;
+  private long total = 0;
+
+  /**
+   * @param epsilon the error bound relative to the total count, e.g. 0.001
+   * @param delta the probability of exceeding it, e.g. 0.01
+   */
+  public CountMinSketch(double epsilon, double delta) {
+      this(width(epsilon), depth(delta));
+  }
+
+  private CountMinSketch(int width, int depth) {
+      this(width, depth, new int[counters(width, depth)], 0);
+  }
+
+  private static int counters(int width, int depth) {
+      long counters = (long) width * depth;
+      if (counters > MAX_COUNTERS) {
+        throw new IllegalArgumentException("A sketch of width " + width + " and depth " + depth
+                + " needs more than " + MAX_COUNTERS + " counters; raise epsilon or delta");
+      }
+      return (int) counters;
+  }
+
+  private CountMinSketch(int width, int depth, int[] counts, long total) {
+      this.width = width;
+      this.depth = depth;
+      this.counts = counts;
+      this.total = total;
+  }
+
+  private static int width(double epsilon) {
+      if (!(epsilon > 0 && epsilon < 1)) {
+        throw new IllegalArgumentException("epsilon must be in (0, 1): " + epsilon);
+      }
+      // A power of two so a row index is a mask.
+      int width = (int) Math.ceil(Math.E / epsilon);
+      return width > (1 << 30) ? 1 << 30 : Integer.highestOneBit(width - 1) << 1;
+  }
+
+  private static int depth(double delta) {
+      if (!(delta > 0 && delta < 1)) {
+        throw new IllegalArgumentException("delta must be in (0, 1): " + delta);
+      }
+      return Math.max(1, (int) Math.ceil(Math.log(1 / delta)));
+  }
+
+  /**
+   * @return the number of bytes the counters of a sketch with these bounds take
+   */
+  public static long bytes(double epsilon, double delta) {
+      return 4L * width(epsilon) * depth(delta);
+  }
+
+  /**
+   * @param gram an n-gram hash
+   * @param count the occurrences to add
+   */
+  public void add(long gram, int count) {
+      for (int row = 0; row < depth; row++) {
+        counts[row * width + index(gram, row)] += count;
+      }
+      total += count;
+  }
+
+  /**
+   * @param gram an n-gram hash
+   * @return an upper bound of its count
+   */
+  public int estimate(long gram) {
+      int min = Integer.MAX_VALUE;
+      for (int row = 0; row < depth; row++) {
+        min = Math.min(min, counts[row * width + index(gram, row)]);
+      }
+      return min;
+  }
+
+  /**
+   * @return the exact number of n-grams added
+   */
+  public long total() {
+      return total;
+  }
+
+  /**
+   * @return an upper bound of the sum of the squared counts, the smallest over the rows
+   */
+  public double sumOfSquares() {
+      double min = Double.MAX_VALUE;
+      for (int row = 0; row < depth; row++) {
+        double sum = 0;
+        for (int i = row * width, end = i + width; i < end; i++) {
+          sum += (double) counts[i] * counts[i];
+        }
+        min = Math.min(min, sum);
+      }
+      return min;
+  }
+
+  private int index(long gram, int row) {
+      long h = gram + (row + 1) * GOLDEN;
+      h ^= (h >>> 33);
+      h *= 0xFF51AFD7ED558CCDL;
+      h ^= (h >>> 33);
+      return (int) h & (width - 1);
+  }
+
+  /**
+   * @return the feature form of the sketch, as NgramAnnotation writes it
+   */
+  public Map<String, Object> toMap() {
+      Map<String, Object> map = new LinkedHashMap<String, Object>();
+      map.put("width", width);
+      map.put("depth", depth);
+      map.put("total", total);
+      map.put("counts", counts);
+      return map;
+  }
+
+  /**
+   * Rebuild a sketch from its feature form
+   * @param map the result of toMap(), in process or after a JSON round trip
+   * @return the sketch
+   * @throws IllegalArgumentException if the map is not a sketch
+   */
+  public static CountMinSketch fromMap(Map<?, ?> map) {
+      Object width = map.get("width");
+      Object depth = map.get("depth");
+      Object total = map.get("total");
+      Object counts = map.get("counts");
+      if (!(width instanceof Number) || !(depth instanceof Number) || !(total instanceof Number)) {
+        throw new IllegalArgumentException("Not a sketch: " + map.keySet());
+      }
+      int w = ((Number) width).intValue();
+      int d = ((Number) depth).intValue();
+      int[] array;
+      if (counts instanceof int[]) {
+        array = (int[]) counts;
+      }
+      else if (counts instanceof List) {
+        List<?> list = (List<?>) counts;
+        array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+          array[i] = ((Number) list.get(i)).intValue();
+        }
+      }
+      else {
+        throw new IllegalArgumentException("Not a sketch: " + map.keySet());
+      }
+      if (w <= 0 || Integer.bitCount(w) != 1 || d <= 0 || array.length != (long) w * d) {
+        throw new IllegalArgumentException("Inconsistent sketch: width=" + w + ", depth=" + d
+                + ", counts=" + array.length);
+      }
+      return new CountMinSketch(w, d, array, ((Number) total).longValue());
+  }
+
+  /**
+   * @param word characters of a normalized word
+   * @param offset the first character
+   * @param length number of characters
+   * @return the FNV-1a hash of the word
+   */
+  public static long wordHash(char[] word, int offset, int length) {
+      long h = FNV_OFFSET;
+      for (int i = offset, end = offset + length; i < end; i++) {
+        h ^= word[i];
+        h *= FNV_PRIME;
+      }
+      return h;
+  }
+
+  /**
+   * Extend an n-gram hash by one word; start from 0
+   * @param gram the hash of the words so far
+   * @param word the wordHash() of the next word
+   * @return the hash of the longer n-gram
+   */
+  public static long combine(long gram, long word) {
+      return (gram + word) * GOLDEN + 1;
+  }
+
+  /**
+   * @param gram words joined by single spaces, as in the "n-Gram" maps
+   * @return the same hash as combining the wordHash() of each word
+   */
+  public static long hash(String gram) {
+      char[] chars = gram.toCharArray();
+      long h = 0;
+      int start = 0;
+      for (int i = 0; i <= chars.length; i++) {
+        if (i == chars.length || chars[i] == ' ') {
+          h = combine(h, wordHash(chars, start, i - start));
+          start = i + 1;
+        }
+      }
+      return h;
+  }
+}
@@ -0,0 +1,101 @@
+package org.lappsgrid.example;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * DocumentStore: keep recent input documents by the SHA-256 of their JSON, so
+ * a delta that refers to one can be resolved without sending it again. The
+ * store is an LRU bounded by an estimate of its size in bytes; a document
+ * evicted from it can no longer serve as a base.
+ *
+ * Services in the same JVM share the default store, which is what lets a
+ * delta produced by one stage be the input of the next. See LifDelta.
+ *
+ */
+public class DocumentStore {
+  private static final DocumentStore DEFAULT = new DocumentStore(64L << 20);
+
+  private final long maxBytes;
+
+  // Guarded by this.
+  private final LinkedHashMap<String, String> documents = new LinkedHashMap<>(16, 0.75f, true);
+  private long bytes = 0;
+
+  /**
+   * @param maxBytes the memory budget
+   */
+  public DocumentStore(long maxBytes) {
+      if (maxBytes < 0) {
+        throw new IllegalArgumentException("maxBytes must not be negative: " + maxBytes);
+      }
+      this.maxBytes = maxBytes;
+  }
+
+  /**
+   * @return the store shared by every service in this JVM, 64 MB
+   */
+  public static DocumentStore getDefault() {
+      return DEFAULT;
+  }
+
+  /**
+   * Keep a document
+   * @param json the document exactly as received
+   * @return its reference
+   */
+  public String put(String json) {
+      String reference = reference(json);
+      long size = sizeOf(reference, json);
+      synchronized (this) {
+        if (size > maxBytes) {
+          return reference;
+        }
+        if (documents.put(reference, json) == null) {
+          bytes += size;
+        }
+        Iterator<Map.Entry<String, String>> eldest = documents.entrySet().iterator();
+        while (bytes > maxBytes) {
+          Map.Entry<String, String> entry = eldest.next();
+          bytes -= sizeOf(entry.getKey(), entry.getValue());
+          eldest.remove();
+        }
+      }
+      return reference;
+  }
+
+  /**
+   * @param reference the reference returned by put()
+   * @return the document, or null if it was never stored or has been evicted
+   */
+  public synchronized String get(String reference) {
+      return documents.get(reference);
+  }
+
+  public synchronized int size() {
+      return documents.size();
+  }
+
+  /**
+   * @return the estimated size of the store in bytes
+   */
+  public synchronized long getBytes() {
+      return bytes;
+  }
+
+  /**
+   * @param json a document
+   * @return the hex SHA-256 of its UTF-8 encoding
+   */
+  public static String reference(String json) {
+      return Hashes.sha256(json);
+  }
+
+  /**
+   * Two bytes per char plus a rough allowance for the entry and String headers
+   */
+  private static long sizeOf(String reference, String json) {
+      return 2L * (reference.length() + json.length()) + 128;
+  }
+}
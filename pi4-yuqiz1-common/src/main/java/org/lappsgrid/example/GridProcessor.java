@@ -0,0 +1,18 @@
+package org.lappsgrid.example;
+
+import java.util.List;
+
+/**
+ * GridProcessor: a stage that runs several configurations on one document in
+ * a single pass, doing the work they have in common once. process() appends
+ * one view per configuration, in the order of getConfigurations(), and each
+ * view is the one that configuration would have appended on its own.
+ *
+ */
+public interface GridProcessor extends ContainerProcessor {
+
+  /**
+   * @return a name for each configuration, in the order of their views
+   */
+  List<String> getConfigurations();
+}
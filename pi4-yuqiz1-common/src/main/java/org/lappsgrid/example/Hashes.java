@@ -0,0 +1,43 @@
+package org.lappsgrid.example;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Hashes: the hex SHA-256 keys of the caches and stores
+ *
+ */
+final class Hashes {
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+  private Hashes() {
+  }
+
+  /**
+   * @param parts strings hashed in order as UTF-8, with a zero byte between
+   *        them so that ("ab", "c") and ("a", "bc") differ
+   * @return the lowercase hex SHA-256
+   */
+  static String sha256(String... parts) {
+      MessageDigest digest;
+      try {
+        digest = MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException("SHA-256 is not available", e);
+      }
+      for (int i = 0; i < parts.length; i++) {
+        if (i > 0) {
+          digest.update((byte) 0);
+        }
+        digest.update(parts[i].getBytes(StandardCharsets.UTF_8));
+      }
+      byte[] hash = digest.digest();
+      char[] hex = new char[hash.length * 2];
+      for (int i = 0; i < hash.length; i++) {
+        hex[2 * i] = HEX[(hash[i] >> 4) & 0xF];
+        hex[2 * i + 1] = HEX[hash[i] & 0xF];
+      }
+      return new String(hex);
+  }
+}
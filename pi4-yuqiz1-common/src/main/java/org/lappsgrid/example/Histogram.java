@@ -0,0 +1,89 @@
+package org.lappsgrid.example;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram: a lock-free distribution of non-negative values in power-of-two
+ * buckets. Bucket 0 holds 0 and bucket i holds [2^(i-1), 2^i), so recording
+ * is a few atomic adds and percentiles are accurate to within a factor of two.
+ *
+ */
+public class Histogram {
+  private static final int BUCKETS = 64;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong sum = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * @param value the value to record; negative values are recorded as 0
+   */
+  public void record(long value) {
+      if (value < 0) {
+        value = 0;
+      }
+      buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(value));
+      count.incrementAndGet();
+      sum.addAndGet(value);
+      long current = max.get();
+      while (value > current && !max.compareAndSet(current, value)) {
+        current = max.get();
+      }
+  }
+
+  public long getCount() {
+      return count.get();
+  }
+
+  public long getSum() {
+      return sum.get();
+  }
+
+  public long getMax() {
+      return max.get();
+  }
+
+  public double getMean() {
+      long n = count.get();
+      return n == 0 ? 0 : (double) sum.get() / n;
+  }
+
+  /**
+   * @param p the quantile, 0..1
+   * @return the upper bound of the bucket holding the quantile, capped at the maximum
+   */
+  public long percentile(double p) {
+      long n = count.get();
+      if (n == 0) {
+        return 0;
+      }
+      long rank = (long) Math.ceil(p * n);
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        seen += buckets.get(i);
+        if (seen >= rank && seen > 0) {
+          long upper = i == 0 ? 0 : (i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << i) - 1);
+          return Math.min(upper, max.get());
+        }
+      }
+      return max.get();
+  }
+
+  /**
+   * @return count, mean, p50, p90, p99 and max, for the metrics endpoint
+   */
+  public Map<String, Object> toMap() {
+      Map<String, Object> map = new LinkedHashMap<>();
+      map.put("count", getCount());
+      map.put("mean", getMean());
+      map.put("p50", percentile(0.5));
+      map.put("p90", percentile(0.9));
+      map.put("p99", percentile(0.99));
+      map.put("max", getMax());
+      return map;
+  }
+}
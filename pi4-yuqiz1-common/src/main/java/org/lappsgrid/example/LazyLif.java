@@ -0,0 +1,371 @@
+package org.lappsgrid.example;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.lappsgrid.discriminator.Discriminators.Uri;
+import org.lappsgrid.serialization.Data;
+import org.lappsgrid.serialization.lif.Annotation;
+import org.lappsgrid.serialization.lif.Container;
+import org.lappsgrid.serialization.lif.View;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * LazyLif: parse LAPPS documents without decoding their annotations. A single
+ * streaming pass over the JSON records where each view's annotations start
+ * and end; the view ids and metadata are read, but an annotation list is only
+ * decoded the first time getAnnotations() is called on its view. A stage that
+ * reads view 0 and adds a view never pays for the views in between.
+ *
+ * When the result is written, a view whose annotations were never decoded and
+ * whose id and metadata are as they were read is copied from the input
+ * character for character instead of being serialized again. Changed and new
+ * views are serialized as usual.
+ *
+ */
+public class LazyLif {
+  private static final ObjectMapper mapper = LifWriter.mapper;
+  private static final JavaType ANNOTATIONS =
+          mapper.getTypeFactory().constructCollectionType(ArrayList.class, Annotation.class);
+
+  private LazyLif() {
+  }
+
+  /**
+   * Parse a document from a stream
+   * @param in UTF-8 JSON
+   * @return the document; a LAPPS payload is a Container of lazy views
+   * @throws IOException if the input is not valid JSON
+   */
+  public static Data read(InputStream in) throws IOException {
+      return parse(text(in));
+  }
+
+  /**
+   * Read a whole stream
+   * @param in UTF-8 text
+   * @return the text
+   * @throws IOException if the stream cannot be read
+   */
+  static String text(InputStream in) throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int n;
+      while ((n = in.read(buffer)) > 0) {
+        bytes.write(buffer, 0, n);
+      }
+      return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Parse a document
+   * @param json the JSON input, kept as the source of the lazy views
+   * @return the document; a LAPPS payload is a Container of lazy views, a
+   *         LifDelta payload a Map whose "views" are lazy, and any other
+   *         payload a Map, List or scalar
+   * @throws IOException if the input is not valid JSON
+   */
+  public static Data parse(String json) throws IOException {
+      String discriminator = null;
+      Object payload = null;
+      try (JsonParser parser = mapper.getFactory().createParser(json)) {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+          throw new IOException("Expected a JSON object");
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String name = parser.getCurrentName();
+          JsonToken token = parser.nextToken();
+          if ("discriminator".equals(name)) {
+            discriminator = parser.getValueAsString();
+          }
+          else if (!"payload".equals(name)) {
+            parser.skipChildren();
+          }
+          else if (token == JsonToken.START_OBJECT && LifDelta.DISCRIMINATOR.equals(discriminator)) {
+            payload = fields(parser, json);
+          }
+          else if (token == JsonToken.START_OBJECT && (discriminator == null || Uri.LAPPS.equals(discriminator))) {
+            payload = container(fields(parser, json));
+          }
+          else {
+            payload = mapper.readValue(parser, Object.class);
+          }
+        }
+      }
+      if (payload instanceof Container && !Uri.LAPPS.equals(discriminator)) {
+        // The payload came before a discriminator that is not LAPPS; read it again as a Map.
+        return mapper.readValue(json, Data.class);
+      }
+      return new Data<Object>(discriminator, payload);
+  }
+
+  /**
+   * @param data a document
+   * @return true if the document has views that will be copied as they arrived
+   */
+  public static boolean isLazy(Data data) {
+      if (!(data.getPayload() instanceof Container)) {
+        return false;
+      }
+      List<View> views = ((Container) data.getPayload()).getViews();
+      if (views == null) {
+        return false;
+      }
+      for (View view : views) {
+        if (view instanceof LazyView && ((LazyView) view).unchanged()) {
+          return true;
+        }
+      }
+      return false;
+  }
+
+  /**
+   * Serialize a document with a Container payload to a stream
+   * @param data the document
+   * @param out the destination, flushed but not closed
+   * @param prettyPrint indent the output; copied views keep their original layout
+   * @throws IOException if the stream cannot be written
+   */
+  public static void write(Data data, OutputStream out, boolean prettyPrint) throws IOException {
+      write(data, mapper.getFactory().createGenerator(out), prettyPrint);
+  }
+
+  /**
+   * Serialize a document with a Container payload to a character stream
+   * @param data the document
+   * @param out the destination, flushed but not closed
+   * @param prettyPrint indent the output; copied views keep their original layout
+   * @throws IOException if the stream cannot be written
+   */
+  public static void write(Data data, Writer out, boolean prettyPrint) throws IOException {
+      write(data, mapper.getFactory().createGenerator(out), prettyPrint);
+  }
+
+  /**
+   * @param data a document with a Container payload
+   * @param prettyPrint indent the output
+   * @return the JSON
+   */
+  public static String toJson(Data data, boolean prettyPrint) {
+      StringWriter out = new StringWriter();
+      try {
+        write(data, out, prettyPrint);
+      } catch (IOException e) {
+        // Only a StringWriter is written.
+        throw new IllegalStateException(e);
+      }
+      return out.toString();
+  }
+
+  private static void write(Data data, JsonGenerator generator, boolean prettyPrint) throws IOException {
+      if (prettyPrint) {
+        generator.useDefaultPrettyPrinter();
+      }
+      Container container = (Container) data.getPayload();
+      List<View> views = container.getViews();
+      Map<String, Object> fields;
+      // Serialize everything but the views the usual way.
+      container.setViews(new ArrayList<View>());
+      try {
+        fields = mapper.convertValue(container, LinkedHashMap.class);
+      } finally {
+        container.setViews(views);
+      }
+
+      generator.writeStartObject();
+      generator.writeStringField("discriminator", data.getDiscriminator());
+      generator.writeFieldName("payload");
+      generator.writeStartObject();
+      boolean written = false;
+      for (Map.Entry<String, Object> field : fields.entrySet()) {
+        if ("views".equals(field.getKey())) {
+          writeViews(generator, views);
+          written = true;
+        }
+        else {
+          generator.writeFieldName(field.getKey());
+          mapper.writeValue(generator, field.getValue());
+        }
+      }
+      if (!written) {
+        writeViews(generator, views);
+      }
+      generator.writeEndObject();
+      generator.writeEndObject();
+      generator.close();
+  }
+
+  private static void writeViews(JsonGenerator generator, List<View> views) throws IOException {
+      generator.writeFieldName("views");
+      generator.writeStartArray();
+      for (View view : views) {
+        if (view instanceof LazyView && ((LazyView) view).unchanged()) {
+          LazyView lazy = (LazyView) view;
+          generator.writeRawValue(lazy.source, lazy.start, lazy.end - lazy.start);
+        }
+        else {
+          mapper.writeValue(generator, view);
+        }
+      }
+      generator.writeEndArray();
+  }
+
+  /**
+   * Read a LAPPS or LifDelta payload, leaving the annotations of every view undecoded
+   * @param parser positioned on the START_OBJECT of the payload
+   * @param json the input the parser reads
+   * @return the fields of the payload, with "views" as a list of lazy views
+   */
+  private static Map<String, Object> fields(JsonParser parser, String json) throws IOException {
+      Map<String, Object> fields = new LinkedHashMap<String, Object>();
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String name = parser.getCurrentName();
+        JsonToken token = parser.nextToken();
+        if ("views".equals(name) && token == JsonToken.START_ARRAY) {
+          List<View> views = new ArrayList<View>();
+          while (parser.nextToken() == JsonToken.START_OBJECT) {
+            views.add(view(parser, json));
+          }
+          fields.put(name, views);
+        }
+        else {
+          fields.put(name, mapper.readValue(parser, Object.class));
+        }
+      }
+      return fields;
+  }
+
+  private static Container container(Map<String, Object> fields) {
+      List<View> views = (List<View>) fields.put("views", new ArrayList<Object>());
+      Container container = new Container(fields);
+      container.setViews(views == null ? new ArrayList<View>() : views);
+      return container;
+  }
+
+  /**
+   * Read one view, recording where it and its annotations lie in the input
+   * @param parser positioned on the START_OBJECT of the view
+   * @param json the input the parser reads
+   */
+  private static LazyView view(JsonParser parser, String json) throws IOException {
+      LazyView view = new LazyView(json, offset(parser));
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String name = parser.getCurrentName();
+        parser.nextToken();
+        if ("id".equals(name)) {
+          view.setId(parser.getValueAsString());
+        }
+        else if ("metadata".equals(name)) {
+          view.setMetadata(mapper.readValue(parser, LinkedHashMap.class));
+        }
+        else if ("annotations".equals(name)) {
+          view.annotationsStart = offset(parser);
+          parser.skipChildren();
+          view.annotationsEnd = offset(parser) + 1;
+        }
+        else {
+          // Kept only in the copied form of the view.
+          parser.skipChildren();
+        }
+      }
+      view.end = offset(parser) + 1;
+      view.indexed();
+      return view;
+  }
+
+  private static int offset(JsonParser parser) {
+      return (int) parser.getTokenLocation().getCharOffset();
+  }
+
+  /**
+   * A view whose annotations are decoded from the input on first access
+   */
+  static class LazyView extends View {
+    private final String source;
+    private final int start;
+    private int end;
+    private int annotationsStart = -1;
+    private int annotationsEnd = -1;
+    private boolean decoded = false;
+    private String originalId;
+    private JsonNode originalMetadata;
+
+    LazyView(String source, int start) {
+        this.source = source;
+        this.start = start;
+    }
+
+    @Override
+    public List<Annotation> getAnnotations() {
+        if (!decoded) {
+          decode();
+        }
+        return super.getAnnotations();
+    }
+
+    @Override
+    public void setAnnotations(List<Annotation> annotations) {
+        decoded = true;
+        super.setAnnotations(annotations);
+    }
+
+    @Override
+    public Annotation newAnnotation(String id, String type, long start, long end) {
+        // Add to the annotations of the input, not to an empty list.
+        getAnnotations();
+        return super.newAnnotation(id, type, start, end);
+    }
+
+    /**
+     * Remember the id and metadata as read, to tell later whether they changed
+     */
+    private void indexed() {
+        originalId = getId();
+        originalMetadata = mapper.valueToTree(getMetadata());
+    }
+
+    /**
+     * @return true if the view can be copied from the input: its annotations
+     *         were never decoded and its id and metadata are as they were read
+     */
+    private boolean unchanged() {
+        if (decoded) {
+          return false;
+        }
+        String id = getId();
+        if (id == null ? originalId != null : !id.equals(originalId)) {
+          return false;
+        }
+        JsonNode metadata = mapper.valueToTree(getMetadata());
+        return originalMetadata == null ? metadata == null : originalMetadata.equals(metadata);
+    }
+
+    private void decode() {
+        List<Annotation> annotations = new ArrayList<Annotation>();
+        if (annotationsStart >= 0) {
+          try {
+            annotations = mapper.readValue(source.substring(annotationsStart, annotationsEnd), ANNOTATIONS);
+          } catch (IOException e) {
+            // The range was already parsed once when the view was indexed.
+            throw new IllegalStateException(e);
+          }
+        }
+        setAnnotations(annotations);
+    }
+  }
+}
@@ -0,0 +1,131 @@
+package org.lappsgrid.example;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.lappsgrid.discriminator.Discriminators.Uri;
+import org.lappsgrid.serialization.Data;
+import org.lappsgrid.serialization.lif.Container;
+import org.lappsgrid.serialization.lif.View;
+
+/**
+ * LifDelta: documents that carry only the views a service added. In delta mode
+ * a service answers with
+ *
+ * <pre>
+ * {"discriminator": DISCRIMINATOR,
+ *  "payload": {"base": "&lt;SHA-256 of the input JSON&gt;", "views": [ ...new views... ]}}
+ * </pre>
+ *
+ * instead of the whole container, so the response no longer grows with the
+ * length of the pipeline. merge() rebuilds the full document on the client
+ * from the original input and the deltas in order.
+ *
+ * A delta is also accepted as input. Its base is looked up in a DocumentStore;
+ * services in one JVM share the default store and keep every document they
+ * receive in delta mode, so each stage of a co-located pipeline can be sent
+ * the previous stage's delta alone.
+ *
+ */
+public class LifDelta {
+  public static final String DISCRIMINATOR = "http://vocab.lappsgrid.org/ns/media/lif#delta";
+
+  private static final String BASE = "base";
+  private static final String VIEWS = "views";
+
+  private LifDelta() {
+  }
+
+  /**
+   * Build the delta of a result
+   * @param base the reference of the input document
+   * @param result the container the service returned
+   * @param first the number of views in the input; later views are new
+   * @return the delta document
+   */
+  public static Data delta(String base, Container result, int first) {
+      List<View> views = result.getViews();
+      Map<String, Object> payload = new LinkedHashMap<String, Object>();
+      payload.put(BASE, base);
+      payload.put(VIEWS, new ArrayList<View>(views.subList(Math.min(first, views.size()), views.size())));
+      return new Data<Map<String, Object>>(DISCRIMINATOR, payload);
+  }
+
+  /**
+   * Replace a delta by the full document it describes
+   * @param data any document
+   * @param store where the base documents are kept
+   * @return data itself unless it is a delta, otherwise the LAPPS document or
+   *         an error if a base is no longer in the store
+   */
+  public static Data resolve(Data data, DocumentStore store) {
+      if (!DISCRIMINATOR.equals(data.getDiscriminator())) {
+        return data;
+      }
+      Map payload = (Map) data.getPayload();
+      Object reference = payload.get(BASE);
+      String json = reference == null ? null : store.get(reference.toString());
+      if (json == null) {
+        return new Data<String>(Uri.ERROR, "Unknown base document: " + reference);
+      }
+      Data base;
+      try {
+        base = resolve(LazyLif.parse(json), store);
+      } catch (IOException e) {
+        return new Data<String>(Uri.ERROR, "Unable to parse base document: " + e.getMessage());
+      }
+      return apply(base, payload);
+  }
+
+  /**
+   * Rebuild a full document from the original input and the deltas of the
+   * stages that followed, checking that each delta applies to its predecessor
+   * @param document the JSON that was sent to the first stage
+   * @param deltas the JSON each stage returned, in order
+   * @return the LAPPS document
+   * @throws IOException if a document cannot be parsed or a delta is out of order
+   */
+  public static Data merge(String document, List<String> deltas) throws IOException {
+      Data merged = LazyLif.parse(document);
+      String reference = DocumentStore.reference(document);
+      for (String json : deltas) {
+        Data delta = LazyLif.parse(json);
+        if (!DISCRIMINATOR.equals(delta.getDiscriminator())) {
+          throw new IOException("Not a delta: " + delta.getDiscriminator());
+        }
+        Map payload = (Map) delta.getPayload();
+        if (!reference.equals(payload.get(BASE))) {
+          throw new IOException("Delta based on " + payload.get(BASE) + " does not follow " + reference);
+        }
+        merged = apply(merged, payload);
+        if (Uri.ERROR.equals(merged.getDiscriminator())) {
+          throw new IOException(String.valueOf(merged.getPayload()));
+        }
+        reference = DocumentStore.reference(json);
+      }
+      return merged;
+  }
+
+  /**
+   * Append the views of a delta to its base
+   */
+  private static Data apply(Data base, Map delta) {
+      if (Uri.ERROR.equals(base.getDiscriminator())) {
+        return base;
+      }
+      Container container = AbstractProcessingService.toContainer(base);
+      if (container == null) {
+        return new Data<String>(Uri.ERROR, "Unsupported base document: " + base.getDiscriminator());
+      }
+      Object views = delta.get(VIEWS);
+      if (views instanceof List) {
+        for (Object view : (List) views) {
+          container.getViews().add(view instanceof View ? (View) view : LifWriter.mapper.convertValue(view, View.class));
+        }
+      }
+      return new Data<Container>(Uri.LAPPS, container);
+  }
+}
@@ -0,0 +1,236 @@
+package org.lappsgrid.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+
+/**
+ * LifStreamServlet: expose a service over plain HTTP POST, streaming the LIF
+ * response straight to the servlet OutputStream. The service class is given by
+ * the "service" init-param and looked up in the ServiceRegistry, which holds
+ * the instance configured in WEB-INF/serviceimpl when the webapp registers
+ * ServiceConfigListener. Add
+ * "?pretty=true" to indent the output. A body sent with the content type
+ * application/x-lif-binary is read and answered in BinaryLif. With
+ * "?delta=true" the response is a LifDelta holding only the new view.
+ *
+ * POST to .../batch sends any number of documents, e.g. one per line. They
+ * are processed concurrently on a BatchExecutor, "?concurrency=N" at a time,
+ * and written back one compact document per line in input order. Each one
+ * goes through the same stream front end as a single request, "?delta=true"
+ * included, and a document that fails gets an error document in its place.
+ * N is capped by the "maxConcurrency" init-param, by default four times the
+ * number of processors.
+ *
+ */
+public class LifStreamServlet extends HttpServlet {
+
+  private static final long serialVersionUID = 1L;
+  private static final String CONTENT_TYPE = "application/json";
+  private static final LifWriter compactWriter = new LifWriter(false);
+
+  private AbstractProcessingService service;
+  private int maxConcurrency;
+
+  @Override
+  public void init() throws ServletException {
+      String className = getInitParameter("service");
+      if (className == null) {
+        throw new ServletException("Missing init-param: service");
+      }
+      try {
+        service = ServiceRegistry.get(className);
+      } catch (ProcessingException e) {
+        throw new ServletException(e.getMessage(), e.getCause());
+      }
+      String max = getInitParameter("maxConcurrency");
+      try {
+        maxConcurrency = max == null ? 4 * Runtime.getRuntime().availableProcessors() : Integer.parseInt(max);
+      } catch (NumberFormatException e) {
+        maxConcurrency = 0;
+      }
+      if (maxConcurrency < 1) {
+        throw new ServletException("Invalid init-param maxConcurrency: " + max);
+      }
+  }
+
+  /**
+   * Return the service metadata
+   */
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+          throws ServletException, IOException {
+      response.setContentType(CONTENT_TYPE);
+      response.setCharacterEncoding("UTF-8");
+      response.getWriter().write(service.getMetadata());
+  }
+
+  /**
+   * Run the service on the request body
+   */
+  @Override
+  protected void doPost(HttpServletRequest request, HttpServletResponse response)
+          throws ServletException, IOException {
+      if ("/batch".equals(request.getPathInfo())) {
+        batch(request, response);
+        return;
+      }
+      if (isBinary(request)) {
+        response.setContentType(BinaryLif.CONTENT_TYPE);
+        service.executeBinary(request.getInputStream(), response.getOutputStream());
+        return;
+      }
+      boolean pretty = Boolean.parseBoolean(request.getParameter("pretty"));
+      response.setContentType(CONTENT_TYPE);
+      response.setCharacterEncoding("UTF-8");
+      if (Boolean.parseBoolean(request.getParameter("delta"))) {
+        service.executeDelta(request.getInputStream(), response.getOutputStream());
+        return;
+      }
+      service.execute(request.getInputStream(), response.getOutputStream(), pretty);
+  }
+
+  private void batch(HttpServletRequest request, HttpServletResponse response) throws IOException {
+      String param = request.getParameter("concurrency");
+      int concurrency;
+      try {
+        concurrency = param == null ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(param);
+      } catch (NumberFormatException e) {
+        concurrency = 0;
+      }
+      if (concurrency < 1) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid concurrency: " + param);
+        return;
+      }
+      concurrency = Math.min(concurrency, maxConcurrency);
+      response.setContentType(CONTENT_TYPE);
+      response.setCharacterEncoding("UTF-8");
+      JsonParser parser = LifWriter.mapper.getFactory().createParser(request.getInputStream());
+      boolean delta = Boolean.parseBoolean(request.getParameter("delta"));
+      final OutputStream out = response.getOutputStream();
+      Iterator<Callable<byte[]>> tasks = new Documents(parser, service, delta);
+      try (BatchExecutor executor = new BatchExecutor(concurrency)) {
+        executor.execute(tasks, new BatchExecutor.Handler<byte[]>() {
+          @Override
+          public void result(int index, byte[] result) throws IOException {
+              out.write(result);
+              out.write('\n');
+          }
+
+          @Override
+          public void failure(int index, Throwable cause) throws IOException {
+              compactWriter.write(BatchExecutor.error(cause), out);
+              out.write('\n');
+          }
+        });
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while processing the batch", e);
+      }
+      out.flush();
+  }
+
+  /**
+   * @return true if the request body is binary LIF
+   */
+  static boolean isBinary(HttpServletRequest request) {
+      String type = request.getContentType();
+      return type != null && type.startsWith(BinaryLif.CONTENT_TYPE);
+  }
+
+  /**
+   * Split a stream of JSON documents into one task per document. The tokens
+   * of each document are copied out so that the task can run it through the
+   * stream front end of the service. A document that is not well-formed JSON
+   * leaves the parser with no place to resume, so it becomes the last task,
+   * one that fails with the parse error.
+   */
+  private static class Documents implements Iterator<Callable<byte[]>> {
+    private final JsonParser parser;
+    private final AbstractProcessingService service;
+    private final boolean delta;
+    /**
+     * The parser is on the first token of the next document, or has failed
+     */
+    private boolean ready = false;
+    private boolean done = false;
+    private IOException error = null;
+
+    Documents(JsonParser parser, AbstractProcessingService service, boolean delta) {
+        this.parser = parser;
+        this.service = service;
+        this.delta = delta;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!ready && !done) {
+          try {
+            done = parser.nextToken() == null;
+          } catch (IOException e) {
+            error = e;
+          }
+          ready = true;
+        }
+        return !done;
+    }
+
+    @Override
+    public Callable<byte[]> next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        ready = false;
+        ByteArrayOutputStream document = new ByteArrayOutputStream();
+        if (error == null) {
+          try (JsonGenerator json = LifWriter.mapper.getFactory().createGenerator(document)) {
+            json.copyCurrentStructure(parser);
+          } catch (IOException e) {
+            error = e;
+          }
+        }
+        if (error != null) {
+          done = true;
+          final IOException cause =
+                  new IOException("Unable to parse the rest of the batch: " + error.getMessage(), error);
+          return new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                throw cause;
+            }
+          };
+        }
+        final byte[] input = document.toByteArray();
+        return new Callable<byte[]>() {
+          @Override
+          public byte[] call() throws IOException {
+              ByteArrayOutputStream result = new ByteArrayOutputStream();
+              if (delta) {
+                service.executeDelta(new ByteArrayInputStream(input), result);
+              }
+              else {
+                service.execute(new ByteArrayInputStream(input), result, false);
+              }
+              return result.toByteArray();
+          }
+        };
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+  }
+}
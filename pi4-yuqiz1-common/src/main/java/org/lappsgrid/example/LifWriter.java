@@ -0,0 +1,116 @@
+package org.lappsgrid.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+
+import org.lappsgrid.serialization.Data;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * LifWriter: read and write LIF documents directly from and to streams.
+ * Output is compact unless pretty printing is requested, and nothing is
+ * buffered into an intermediate String. Documents read by LazyLif are
+ * written by it, so views that were never decoded are copied unchanged.
+ *
+ */
+public class LifWriter {
+  static final ObjectMapper mapper = new ObjectMapper();
+  static {
+      mapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+      mapper.disable(SerializationFeature.FAIL_ON_EMPTY_BEANS);
+      mapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+      // The caller owns the response stream; flush it but leave it open.
+      mapper.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      // LazyLif writes values into a generator of its own; flush once at the end.
+      mapper.disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+  }
+
+  private final ObjectWriter writer;
+  private final boolean prettyPrint;
+
+  /**
+   * A compact writer
+   */
+  public LifWriter() {
+      this(false);
+  }
+
+  public LifWriter(boolean prettyPrint) {
+      writer = prettyPrint ? mapper.writerWithDefaultPrettyPrinter() : mapper.writer();
+      this.prettyPrint = prettyPrint;
+  }
+
+  /**
+   * Parse a Data object from a stream
+   * @param in the JSON input
+   * @return the parsed Data, with the payload left as a Map
+   * @throws IOException if the input is not valid JSON
+   */
+  public static Data read(InputStream in) throws IOException {
+      return mapper.readValue(in, Data.class);
+  }
+
+  /**
+   * Parse a sequence of Data objects, such as one document per line, one at a
+   * time as the iterator advances
+   * @param in the JSON input
+   * @return the documents in order; read errors surface as RuntimeExceptions
+   * @throws IOException if the input cannot be opened for parsing
+   */
+  public static MappingIterator<Data> readAll(InputStream in) throws IOException {
+      return mapper.reader(Data.class).readValues(in);
+  }
+
+  /**
+   * Convert a value to its JSON shape: maps, lists, strings, numbers, booleans
+   * and nulls. Values already in that shape are returned as they are.
+   * @param value e.g. a Container
+   * @return the equivalent tree
+   */
+  static Object toTree(Object value) {
+      if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean
+              || value instanceof Map || value instanceof List) {
+        return value;
+      }
+      return mapper.convertValue(value, Object.class);
+  }
+
+  /**
+   * Serialize a Data object to a stream
+   * @param data the document
+   * @param out the destination, flushed but not closed
+   * @throws IOException if the stream cannot be written
+   */
+  public void write(Data data, OutputStream out) throws IOException {
+      if (LazyLif.isLazy(data)) {
+        LazyLif.write(data, out, prettyPrint);
+        return;
+      }
+      writer.writeValue(out, data);
+  }
+
+  /**
+   * Serialize a Data object to a character stream
+   * @param data the document
+   * @param out the destination, flushed but not closed
+   * @throws IOException if the stream cannot be written
+   */
+  public void write(Data data, Writer out) throws IOException {
+      if (LazyLif.isLazy(data)) {
+        LazyLif.write(data, out, prettyPrint);
+        return;
+      }
+      writer.writeValue(out, data);
+  }
+}
@@ -0,0 +1,48 @@
+package org.lappsgrid.example;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * MetricsServlet: serve the ServiceMetrics of this webapp as JSON on GET.
+ * The "service" init-param names the service class to report; without it
+ * every service that has handled a request in this JVM is reported.
+ *
+ */
+public class MetricsServlet extends HttpServlet {
+
+  private static final long serialVersionUID = 1L;
+  private static final ObjectMapper mapper = new ObjectMapper();
+
+  private String service;
+
+  @Override
+  public void init() throws ServletException {
+      service = getInitParameter("service");
+  }
+
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+          throws ServletException, IOException {
+      Map<String, Object> body = new LinkedHashMap<>();
+      if (service != null) {
+        body.put(service, ServiceMetrics.get(service).toMap());
+      }
+      else {
+        for (Map.Entry<String, ServiceMetrics> entry : ServiceMetrics.all().entrySet()) {
+          body.put(entry.getKey(), entry.getValue().toMap());
+        }
+      }
+      response.setContentType("application/json");
+      response.setCharacterEncoding("UTF-8");
+      mapper.writerWithDefaultPrettyPrinter().writeValue(response.getOutputStream(), body);
+  }
+}
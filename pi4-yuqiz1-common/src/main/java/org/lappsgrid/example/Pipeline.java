@@ -0,0 +1,153 @@
+package org.lappsgrid.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.lappsgrid.discriminator.Discriminators.Uri;
+import org.lappsgrid.metadata.IOSpecification;
+import org.lappsgrid.metadata.ServiceMetadata;
+import org.lappsgrid.serialization.Data;
+import org.lappsgrid.serialization.lif.Container;
+
+/**
+ * Pipeline: run several stages in one process, passing the live Container from
+ * stage to stage. The input is parsed once and the output serialized once.
+ *
+ * <pre>
+ * Pipeline qa = new Pipeline(new ElementAnnotation(), new TokenAnnotation(),
+ *         new NgramAnnotation(), new AnswerScoring(), new Evaluation());
+ * String json = qa.execute(input);
+ * </pre>
+ *
+ * With a CheckpointStore the output of every stage is saved, and a run
+ * resumes after the deepest stage already saved for the same input and the
+ * same configuration of that stage and those before it. Changing the
+ * parameters of a late stage then only re-runs that stage and the ones after.
+ *
+ */
+public class Pipeline extends AbstractProcessingService {
+  private String metadata;
+  private final List<ContainerProcessor> stages;
+  private final CheckpointStore checkpoints;
+
+  public Pipeline(ContainerProcessor... stages) {
+      this(Arrays.asList(stages));
+  }
+
+  public Pipeline(List<? extends ContainerProcessor> stages) {
+      this(null, stages);
+  }
+
+  /**
+   * @param checkpoints saves the output of every stage and resumes from it, or null for none
+   * @param stages the stages in execution order
+   */
+  public Pipeline(CheckpointStore checkpoints, List<? extends ContainerProcessor> stages) {
+      this.stages = Collections.unmodifiableList(new ArrayList<ContainerProcessor>(stages));
+      this.checkpoints = checkpoints;
+      metadata = generateMetadata();
+  }
+
+  /**
+   * Generate Metadata
+   * Input format: TEXT/LAPPS
+   * Output format: LAPPS
+   * @return
+   */
+  private String generateMetadata() {
+      ServiceMetadata metadata = new ServiceMetadata();
+      metadata.setName(this.getClass().getName());
+      metadata.setDescription("In-process pipeline of " + stages.size() + " stages");
+      metadata.setVersion("1.0.0-SNAPSHOT");
+      metadata.setVendor("http://www.lappsgrid.org");
+      metadata.setLicense(Uri.APACHE2);
+
+      IOSpecification requires = new IOSpecification();
+      requires.addFormat(Uri.TEXT);
+      requires.addFormat(Uri.LAPPS);
+      requires.addLanguage("en");
+      requires.setEncoding("UTF-8");
+
+      IOSpecification produces = new IOSpecification();
+      produces.addFormat(Uri.LAPPS);
+      produces.addLanguage("en");
+      produces.setEncoding("UTF-8");
+
+      metadata.setRequires(requires);
+      metadata.setProduces(produces);
+
+      Data<ServiceMetadata> data = new Data<ServiceMetadata>(Uri.META, metadata);
+      return data.asPrettyJson();
+  }
+
+  @Override
+  /**
+   * getMetadata simply returns metadata populated in the constructor
+   */
+  public String getMetadata() {
+      return metadata;
+  }
+
+  /**
+   * @return the stages in execution order
+   */
+  public List<ContainerProcessor> getStages() {
+      return stages;
+  }
+
+  @Override
+  /**
+   * The configuration of every stage in order
+   */
+  public String getConfiguration() {
+      StringBuilder buffer = new StringBuilder(super.getConfiguration()).append('[');
+      for (int i = 0; i < stages.size(); i++) {
+        if (i > 0) {
+          buffer.append(',');
+        }
+        buffer.append(configurationOf(stages.get(i)));
+      }
+      return buffer.append(']').toString();
+  }
+
+  private static String configurationOf(ContainerProcessor stage) {
+      return stage instanceof AbstractProcessingService
+              ? ((AbstractProcessingService) stage).getConfiguration() : stage.getClass().getName();
+  }
+
+  @Override
+  /**
+   * Run every stage on the same container
+   */
+  public Container process(Container container) throws ProcessingException {
+      if (checkpoints == null) {
+        for (ContainerProcessor stage : stages) {
+          container = stage.process(container);
+        }
+        return container;
+      }
+
+      // keys[i] identifies the output of stage i for this input and configuration.
+      String[] keys = new String[stages.size()];
+      String key = checkpoints.inputKey(container);
+      for (int i = 0; i < keys.length; i++) {
+        key = keys[i] = CheckpointStore.key(key, configurationOf(stages.get(i)));
+      }
+      int first = 0;
+      for (int i = keys.length - 1; i >= 0; i--) {
+        Container saved = checkpoints.get(keys[i]);
+        if (saved != null) {
+          container = saved;
+          first = i + 1;
+          break;
+        }
+      }
+      for (int i = first; i < keys.length; i++) {
+        container = stages.get(i).process(container);
+        checkpoints.put(keys[i], container);
+      }
+      return container;
+  }
+}
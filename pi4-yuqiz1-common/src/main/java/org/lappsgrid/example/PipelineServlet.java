@@ -0,0 +1,156 @@
+package org.lappsgrid.example;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * PipelineServlet: run several co-located services on one request, passing
+ * the live Container between them instead of making an HTTP call per stage.
+ * The "stages" init-param lists name=class pairs, separated by commas or
+ * whitespace, in pipeline order:
+ *
+ * <pre>
+ * POST /pipeline                          all stages in order
+ * POST /pipeline?stages=token,ngram       only the listed stages
+ * </pre>
+ *
+ * The listed stages must appear once each and in pipeline order, so there is
+ * one Pipeline per subset of the stages however the request spells it.
+ *
+ * Add "pretty=true" to indent the output, or "delta=true" to receive a
+ * LifDelta with only the views the selected stages added. A body sent with
+ * the content type application/x-lif-binary is read and answered in BinaryLif.
+ *
+ */
+public class PipelineServlet extends HttpServlet {
+
+  private static final long serialVersionUID = 1L;
+  private static final String CONTENT_TYPE = "application/json";
+
+  private final Map<String, AbstractProcessingService> stages = new LinkedHashMap<>();
+  private final ConcurrentMap<List<String>, Pipeline> pipelines = new ConcurrentHashMap<>();
+
+  @Override
+  public void init() throws ServletException {
+      String config = getInitParameter("stages");
+      if (config == null) {
+        throw new ServletException("Missing init-param: stages");
+      }
+      for (String pair : config.trim().split("[,\\s]+")) {
+        int eq = pair.indexOf('=');
+        if (eq <= 0) {
+          throw new ServletException("Expected name=class: " + pair);
+        }
+        try {
+          stages.put(pair.substring(0, eq), ServiceRegistry.get(pair.substring(eq + 1)));
+        } catch (ProcessingException e) {
+          throw new ServletException(e.getMessage(), e.getCause());
+        }
+      }
+      if (stages.isEmpty()) {
+        throw new ServletException("No stages configured");
+      }
+  }
+
+  /**
+   * List the stage names in order
+   */
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response)
+          throws ServletException, IOException {
+      response.setContentType(CONTENT_TYPE);
+      response.setCharacterEncoding("UTF-8");
+      StringBuilder json = new StringBuilder("[");
+      for (String name : stages.keySet()) {
+        if (json.length() > 1) {
+          json.append(',');
+        }
+        json.append('"').append(name).append('"');
+      }
+      response.getWriter().write(json.append(']').toString());
+  }
+
+  /**
+   * Run the requested stages on the request body
+   */
+  @Override
+  protected void doPost(HttpServletRequest request, HttpServletResponse response)
+          throws ServletException, IOException {
+      List<String> names;
+      try {
+        names = select(request.getParameter("stages"));
+      } catch (IllegalArgumentException e) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+        return;
+      }
+      Pipeline pipeline = pipelines.get(names);
+      if (pipeline == null) {
+        List<AbstractProcessingService> selected = new ArrayList<>();
+        for (String name : names) {
+          selected.add(stages.get(name));
+        }
+        pipeline = new Pipeline(selected);
+        Pipeline existing = pipelines.putIfAbsent(names, pipeline);
+        if (existing != null) {
+          pipeline = existing;
+        }
+      }
+      if (isBinary(request)) {
+        response.setContentType(BinaryLif.CONTENT_TYPE);
+        pipeline.executeBinary(request.getInputStream(), response.getOutputStream());
+        return;
+      }
+      boolean pretty = Boolean.parseBoolean(request.getParameter("pretty"));
+      response.setContentType(CONTENT_TYPE);
+      response.setCharacterEncoding("UTF-8");
+      if (Boolean.parseBoolean(request.getParameter("delta"))) {
+        pipeline.executeDelta(request.getInputStream(), response.getOutputStream());
+        return;
+      }
+      pipeline.execute(request.getInputStream(), response.getOutputStream(), pretty);
+  }
+
+  /**
+   * @param names comma separated stage names in pipeline order, or null for every stage
+   * @return the configured names of the selected stages, in pipeline order
+   */
+  private List<String> select(String names) {
+      List<String> order = new ArrayList<>(stages.keySet());
+      if (names == null) {
+        return order;
+      }
+      List<String> selected = new ArrayList<>();
+      int last = -1;
+      for (String name : names.split(",")) {
+        int index = order.indexOf(name.trim());
+        if (index < 0) {
+          throw new IllegalArgumentException("Unknown stage: " + name);
+        }
+        if (index <= last) {
+          throw new IllegalArgumentException("Stages must be listed once each, in pipeline order: "
+                  + names);
+        }
+        selected.add(order.get(index));
+        last = index;
+      }
+      return selected;
+  }
+
+  /**
+   * @return true if the request body is binary LIF
+   */
+  static boolean isBinary(HttpServletRequest request) {
+      String type = request.getContentType();
+      return type != null && type.startsWith(BinaryLif.CONTENT_TYPE);
+  }
+}
@@ -0,0 +1,19 @@
+package org.lappsgrid.example;
+
+/**
+ * ProcessingException: raised by a stage when it cannot annotate a container.
+ * The message is returned to remote callers as an error Data object.
+ *
+ */
+public class ProcessingException extends Exception {
+
+  private static final long serialVersionUID = 1L;
+
+  public ProcessingException(String message) {
+      super(message);
+  }
+
+  public ProcessingException(String message, Throwable cause) {
+      super(message, cause);
+  }
+}
@@ -0,0 +1,59 @@
+package org.lappsgrid.example;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.lappsgrid.serialization.lif.Annotation;
+
+/**
+ * QuestionGroups: split the annotations of a view by their "Question" feature.
+ * A document produced without corpus mode has no such feature and comes back
+ * as a single group under the key "".
+ *
+ */
+public class QuestionGroups {
+  public static final String FEATURE = "Question";
+  public static final String DEFAULT_GROUP = "";
+
+  private QuestionGroups() {
+  }
+
+  /**
+   * Group annotations by question, keeping document order within and across groups
+   * @param annotations the annotations of one view
+   * @return question id to annotations
+   */
+  public static Map<String, List<Annotation>> group(List<Annotation> annotations) {
+      Map<String, List<Annotation>> groups = new LinkedHashMap<>();
+      for (Annotation a : annotations) {
+        String question = a.getFeature(FEATURE);
+        if (question == null) {
+          question = DEFAULT_GROUP;
+        }
+        List<Annotation> group = groups.get(question);
+        if (group == null) {
+          group = new ArrayList<>();
+          groups.put(question, group);
+        }
+        group.add(a);
+      }
+      return groups;
+  }
+
+  /**
+   * Find the question of a group: the annotation typed "Question", or the first
+   * annotation for documents that predate the Type feature
+   * @param group the annotations of one question
+   * @return the question annotation
+   */
+  public static Annotation question(List<Annotation> group) {
+      for (Annotation a : group) {
+        if ("Question".equals(a.getFeature("Type"))) {
+          return a;
+        }
+      }
+      return group.get(0);
+  }
+}
@@ -0,0 +1,89 @@
+package org.lappsgrid.example;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+import org.springframework.beans.PropertyValue;
+import org.springframework.beans.factory.config.BeanDefinitionHolder;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.xml.XmlBeanDefinitionReader;
+import org.springframework.core.io.UrlResource;
+
+/**
+ * ServiceConfigListener: register in the ServiceRegistry the services
+ * configured in the Spring bean files under the "servicesPath" context-param
+ * (WEB-INF/serviceimpl), so that LifStreamServlet and PipelineServlet run
+ * with the same constructor arguments as /services, /jsServices and
+ * /pbServices. The service is the bean in the "service" property of each
+ * file's "target" bean; its definition is instantiated once more here, so
+ * both sides share the configuration but not the instance.
+ *
+ * Files without a target service are skipped. A file that cannot be loaded
+ * fails the deployment, as it does for the service container.
+ *
+ */
+public class ServiceConfigListener implements ServletContextListener {
+  static final String TARGET = "target";
+  static final String SERVICE = "service";
+
+  private static final String REGISTERED = "serviceRegistry.service";
+
+  @Override
+  public void contextInitialized(ServletContextEvent event) {
+      ServletContext context = event.getServletContext();
+      String path = context.getInitParameter("servicesPath");
+      if (path == null) {
+        return;
+      }
+      Set<String> files = context.getResourcePaths("/" + path.replaceAll("^/+|/+$", "") + "/");
+      if (files == null) {
+        return;
+      }
+      for (String file : new TreeSet<>(files)) {
+        if (!file.endsWith(".xml")) {
+          continue;
+        }
+        AbstractProcessingService service;
+        try {
+          service = load(context.getResource(file));
+        } catch (MalformedURLException e) {
+          throw new IllegalStateException("Invalid service configuration path " + file, e);
+        }
+        if (service != null) {
+          ServiceRegistry.register(service);
+          context.log("Registered " + service.getConfiguration() + " from " + file);
+        }
+      }
+  }
+
+  @Override
+  public void contextDestroyed(ServletContextEvent event) {
+  }
+
+  /**
+   * Create the service configured in one bean file
+   * @param url the bean file
+   * @return the service, or null if the file configures none
+   */
+  static AbstractProcessingService load(URL url) {
+      DefaultListableBeanFactory factory = new DefaultListableBeanFactory();
+      new XmlBeanDefinitionReader(factory).loadBeanDefinitions(new UrlResource(url));
+      if (!factory.containsBeanDefinition(TARGET)) {
+        return null;
+      }
+      PropertyValue value = factory.getBeanDefinition(TARGET).getPropertyValues().getPropertyValue(SERVICE);
+      if (value == null || !(value.getValue() instanceof BeanDefinitionHolder)) {
+        return null;
+      }
+      // Only the inner service bean is created, not the container's factory around it.
+      factory.registerBeanDefinition(REGISTERED, ((BeanDefinitionHolder) value.getValue()).getBeanDefinition());
+      Object service = factory.getBean(REGISTERED);
+      return service instanceof AbstractProcessingService ? (AbstractProcessingService) service : null;
+  }
+}
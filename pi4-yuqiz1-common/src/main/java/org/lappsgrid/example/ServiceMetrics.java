@@ -0,0 +1,157 @@
+package org.lappsgrid.example;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ServiceMetrics: what AbstractProcessingService records for each request to a
+ * service. Latencies are in microseconds for the parse, process and serialize
+ * phases and for the whole request; sizes are UTF-8 bytes. Metrics are kept
+ * per service class in a static registry, so the instance created by the RPC
+ * servlets and the one behind MetricsServlet report to the same place.
+ *
+ */
+public class ServiceMetrics {
+  private static final ConcurrentMap<String, ServiceMetrics> registry = new ConcurrentHashMap<>();
+
+  private final String service;
+  private final Histogram parse = new Histogram();
+  private final Histogram process = new Histogram();
+  private final Histogram serialize = new Histogram();
+  private final Histogram total = new Histogram();
+  private final Histogram inputBytes = new Histogram();
+  private final Histogram outputBytes = new Histogram();
+  private final Histogram annotations = new Histogram();
+  private final AtomicLong requests = new AtomicLong();
+  private final AtomicLong errors = new AtomicLong();
+
+  private ServiceMetrics(String service) {
+      this.service = service;
+  }
+
+  /**
+   * @param service the service class name
+   * @return the metrics of that service, created on first use
+   */
+  public static ServiceMetrics get(String service) {
+      ServiceMetrics metrics = registry.get(service);
+      if (metrics == null) {
+        ServiceMetrics created = new ServiceMetrics(service);
+        metrics = registry.putIfAbsent(service, created);
+        if (metrics == null) {
+          metrics = created;
+        }
+      }
+      return metrics;
+  }
+
+  /**
+   * @return every registered service by name
+   */
+  public static Map<String, ServiceMetrics> all() {
+      return new TreeMap<String, ServiceMetrics>(registry);
+  }
+
+  public String getService() {
+      return service;
+  }
+
+  public Histogram getParse() {
+      return parse;
+  }
+
+  public Histogram getProcess() {
+      return process;
+  }
+
+  public Histogram getSerialize() {
+      return serialize;
+  }
+
+  public Histogram getTotal() {
+      return total;
+  }
+
+  public Histogram getInputBytes() {
+      return inputBytes;
+  }
+
+  public Histogram getOutputBytes() {
+      return outputBytes;
+  }
+
+  /**
+   * @return the number of annotations in the view each request added
+   */
+  public Histogram getAnnotations() {
+      return annotations;
+  }
+
+  public long getRequests() {
+      return requests.get();
+  }
+
+  /**
+   * @return requests whose result was an error document
+   */
+  public long getErrors() {
+      return errors.get();
+  }
+
+  void request(boolean error) {
+      requests.incrementAndGet();
+      if (error) {
+        errors.incrementAndGet();
+      }
+  }
+
+  /**
+   * @return the metrics as nested maps, for the metrics endpoint
+   */
+  public Map<String, Object> toMap() {
+      Map<String, Object> map = new LinkedHashMap<>();
+      map.put("requests", getRequests());
+      map.put("errors", getErrors());
+      Map<String, Object> latency = new LinkedHashMap<>();
+      latency.put("parse", parse.toMap());
+      latency.put("process", process.toMap());
+      latency.put("serialize", serialize.toMap());
+      latency.put("total", total.toMap());
+      map.put("latencyMicros", latency);
+      map.put("inputBytes", inputBytes.toMap());
+      map.put("outputBytes", outputBytes.toMap());
+      map.put("annotations", annotations.toMap());
+      return map;
+  }
+
+  /**
+   * Count the UTF-8 encoded length of a String without encoding it
+   * @param s the text
+   * @return its size in bytes
+   */
+  static long utf8Length(String s) {
+      long bytes = 0;
+      int n = s.length();
+      for (int i = 0; i < n; i++) {
+        char c = s.charAt(i);
+        if (c < 0x80) {
+          bytes++;
+        }
+        else if (c < 0x800) {
+          bytes += 2;
+        }
+        else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+          bytes += 4;
+          i++;
+        }
+        else {
+          bytes += 3;
+        }
+      }
+      return bytes;
+  }
+}
@@ -0,0 +1,51 @@
+package org.lappsgrid.example;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * ServiceRegistry: one shared instance of each service class per JVM, used
+ * by LifStreamServlet and PipelineServlet. When several services are
+ * deployed together, a pipeline request reuses the instances that serve the
+ * /lif endpoints and dispatches between them in memory.
+ *
+ * The RPC endpoints (/services, /jsServices, /pbServices) get their instances
+ * from the service container, not from here. ServiceConfigListener registers
+ * instances built from the same Spring bean files, so both sides run the
+ * same configuration; a class that is not registered gets its no-argument
+ * constructor.
+ *
+ */
+public class ServiceRegistry {
+  private static final ConcurrentMap<String, AbstractProcessingService> services = new ConcurrentHashMap<>();
+
+  private ServiceRegistry() {
+  }
+
+  /**
+   * @param className the service class
+   * @return the shared instance, created with the no-argument constructor on first use
+   * @throws ProcessingException if the class cannot be instantiated as an AbstractProcessingService
+   */
+  public static AbstractProcessingService get(String className) throws ProcessingException {
+      AbstractProcessingService service = services.get(className);
+      if (service != null) {
+        return service;
+      }
+      try {
+        service = (AbstractProcessingService) Class.forName(className).newInstance();
+      } catch (Exception e) {
+        throw new ProcessingException("Unable to create service " + className, e);
+      }
+      AbstractProcessingService existing = services.putIfAbsent(className, service);
+      return existing != null ? existing : service;
+  }
+
+  /**
+   * Share a configured instance instead of a default one
+   * @param service the instance to return for its class from now on
+   */
+  public static void register(AbstractProcessingService service) {
+      services.put(service.getClass().getName(), service);
+  }
+}
@@ -0,0 +1,213 @@
+package org.lappsgrid.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * TermDictionary: assign dense int ids 0..size-1 to the normalized words of a
+ * document in order of first occurrence. Characters live in one pool and
+ * lookups go through a primitive open-addressing table, so interning a word
+ * allocates nothing once it has been seen.
+ *
+ * A view that carries term ids stores toList() in its "terms" metadata so the
+ * ids can be read back with fromList() after a JSON round trip. N-grams of up
+ * to MAX_ORDER terms are packed into a long with pack(), MAX_ORDER fields of
+ * 21 bits each, so comparing two n-grams is a single long comparison.
+ *
+ * Not thread safe: use one dictionary per document.
+ *
+ */
+public class TermDictionary {
+  /**
+   * The key of the term list in view metadata
+   */
+  public static final String METADATA = "terms";
+  /**
+   * The highest n-gram order pack() supports
+   */
+  public static final int MAX_ORDER = 3;
+  /**
+   * The most terms a dictionary may hold for its ids to fit pack()
+   */
+  public static final int MAX_TERMS = (1 << 21) - 1;
+
+  private static final int BITS = 21;
+  private static final long MASK = (1L << BITS) - 1;
+
+  private char[] pool = new char[1024];
+  private int poolSize = 0;
+  private int[] offset = new int[64];
+  private int[] length = new int[64];
+  private int[] hash = new int[64];
+  private int size = 0;
+  private int[] slots = new int[128];
+  private char[] scratch = new char[32];
+
+  /**
+   * Rebuild a dictionary from the "terms" metadata of a view
+   * @param terms the words in id order
+   * @return the dictionary
+   */
+  public static TermDictionary fromList(List<?> terms) {
+      TermDictionary dictionary = new TermDictionary();
+      for (Object term : terms) {
+        dictionary.id(term.toString());
+      }
+      return dictionary;
+  }
+
+  /**
+   * @return the number of distinct terms
+   */
+  public int size() {
+      return size;
+  }
+
+  /**
+   * Intern a word
+   * @param word the normalized word
+   * @param wordOffset the first character of the word
+   * @param wordLength number of characters of word in use
+   * @return its id
+   * @throws IllegalStateException if the dictionary already holds MAX_TERMS terms
+   */
+  public int id(char[] word, int wordOffset, int wordLength) {
+      int h = 0;
+      for (int i = 0; i < wordLength; i++) {
+        h = 31 * h + word[wordOffset + i];
+      }
+      int mask = slots.length - 1;
+      int slot = mix(h) & mask;
+      while (slots[slot] != 0) {
+        int id = slots[slot] - 1;
+        if (hash[id] == h && length[id] == wordLength && regionMatches(pool, offset[id], word, wordOffset, wordLength)) {
+          return id;
+        }
+        slot = (slot + 1) & mask;
+      }
+      if (size == MAX_TERMS) {
+        throw new IllegalStateException("More than " + MAX_TERMS + " terms");
+      }
+      int id = size++;
+      if (id == offset.length) {
+        offset = Arrays.copyOf(offset, id * 2);
+        length = Arrays.copyOf(length, id * 2);
+        hash = Arrays.copyOf(hash, id * 2);
+      }
+      if (poolSize + wordLength > pool.length) {
+        pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + wordLength));
+      }
+      System.arraycopy(word, wordOffset, pool, poolSize, wordLength);
+      offset[id] = poolSize;
+      length[id] = wordLength;
+      hash[id] = h;
+      poolSize += wordLength;
+      slots[slot] = id + 1;
+      if (size * 2 > slots.length) {
+        rehash();
+      }
+      return id;
+  }
+
+  /**
+   * Intern a word
+   * @param word the normalized word
+   * @return its id
+   */
+  public int id(String word) {
+      int wordLength = word.length();
+      if (wordLength > scratch.length) {
+        scratch = new char[Math.max(wordLength, scratch.length * 2)];
+      }
+      word.getChars(0, wordLength, scratch, 0);
+      return id(scratch, 0, wordLength);
+  }
+
+  /**
+   * @param id a term id
+   * @return the word
+   */
+  public String term(int id) {
+      return new String(pool, offset[id], length[id]);
+  }
+
+  /**
+   * Append a word without building a String
+   * @param buffer the destination
+   * @param id a term id
+   */
+  public void append(StringBuilder buffer, int id) {
+      buffer.append(pool, offset[id], length[id]);
+  }
+
+  /**
+   * @return the words in id order, for the "terms" metadata of a view
+   */
+  public List<String> toList() {
+      List<String> terms = new ArrayList<String>(size);
+      for (int id = 0; id < size; id++) {
+        terms.add(term(id));
+      }
+      return terms;
+  }
+
+  /**
+   * Pack the ids of an n-gram into a long
+   * @param ids term ids
+   * @param start the first id of the n-gram
+   * @param n the order, 1..MAX_ORDER
+   * @return the packed n-gram
+   */
+  public static long pack(int[] ids, int start, int n) {
+      long packed = 0;
+      for (int k = 0; k < n; k++) {
+        packed = (packed << BITS) | (ids[start + k] + 1);
+      }
+      return packed;
+  }
+
+  /**
+   * @param packed an n-gram from pack()
+   * @param n its order
+   * @return its words joined by a space, as in the "n-Gram" maps
+   */
+  public String gram(long packed, int n) {
+      StringBuilder buffer = new StringBuilder();
+      for (int k = n - 1; k >= 0; k--) {
+        if (k < n - 1) {
+          buffer.append(' ');
+        }
+        append(buffer, (int) ((packed >>> (k * BITS)) & MASK) - 1);
+      }
+      return buffer.toString();
+  }
+
+  private void rehash() {
+      slots = new int[slots.length * 2];
+      int mask = slots.length - 1;
+      for (int id = 0; id < size; id++) {
+        int slot = mix(hash[id]) & mask;
+        while (slots[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        slots[slot] = id + 1;
+      }
+  }
+
+  private static boolean regionMatches(char[] a, int aOffset, char[] b, int bOffset, int n) {
+      for (int i = 0; i < n; i++) {
+        if (a[aOffset + i] != b[bOffset + i]) {
+          return false;
+        }
+      }
+      return true;
+  }
+
+  private static int mix(long h) {
+      h ^= (h >>> 33);
+      h *= 0xFF51AFD7ED558CCDL;
+      h ^= (h >>> 33);
+      return (int) h;
+  }
+}
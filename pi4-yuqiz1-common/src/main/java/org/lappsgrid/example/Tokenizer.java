@@ -0,0 +1,32 @@
+package org.lappsgrid.example;
+
+/**
+ * Tokenizer: split a sentence into tokens in a single pass over its characters.
+ * Implementations report document offsets and hand the normalized word to the
+ * handler in a reused buffer, so no String is created unless the handler
+ * needs one.
+ *
+ */
+public interface Tokenizer {
+
+  /**
+   * Receives tokens in order
+   */
+  interface Handler {
+    /**
+     * @param start document offset of the first character of the token
+     * @param end document offset just past the token
+     * @param word the normalized word; only valid until this method returns
+     * @param length number of characters of word in use
+     */
+    void token(int start, int end, char[] word, int length) throws ProcessingException;
+  }
+
+  /**
+   * Tokenize a sentence
+   * @param text the sentence
+   * @param offset document offset of the first character of text
+   * @param handler receives every token
+   */
+  void tokenize(CharSequence text, int offset, Handler handler) throws ProcessingException;
+}
@@ -0,0 +1,55 @@
+package org.lappsgrid.example;
+
+/**
+ * WhitespaceTokenizer: split on the characters matched by the regex \s and
+ * keep every character of the token. Subclasses drop characters by overriding
+ * keep(char).
+ *
+ */
+public class WhitespaceTokenizer implements Tokenizer {
+
+  @Override
+  public void tokenize(CharSequence text, int offset, Handler handler) throws ProcessingException {
+      char[] word = new char[32];
+      int length = 0;
+      int start = -1;
+      int n = text.length();
+      for (int i = 0; i <= n; i++) {
+        if (i == n || isWhitespace(text.charAt(i))) {
+          if (start >= 0) {
+            handler.token(offset + start, offset + i, word, length);
+            start = -1;
+            length = 0;
+          }
+          continue;
+        }
+        if (start < 0) {
+          start = i;
+        }
+        char c = text.charAt(i);
+        if (keep(c)) {
+          if (length == word.length) {
+            char[] bigger = new char[word.length * 2];
+            System.arraycopy(word, 0, bigger, 0, length);
+            word = bigger;
+          }
+          word[length++] = c;
+        }
+      }
+  }
+
+  /**
+   * @param c a character inside a token
+   * @return true if c belongs in the normalized word
+   */
+  protected boolean keep(char c) {
+      return true;
+  }
+
+  /**
+   * The same characters as the regex \s
+   */
+  static boolean isWhitespace(char c) {
+      return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+  }
+}
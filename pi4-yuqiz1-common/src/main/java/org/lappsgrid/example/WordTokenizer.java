@@ -0,0 +1,14 @@
+package org.lappsgrid.example;
+
+/**
+ * WordTokenizer: split on whitespace and keep only word characters, the
+ * equivalent of split("\\s+") followed by replaceAll("\\W", "")
+ *
+ */
+public class WordTokenizer extends WhitespaceTokenizer {
+
+  @Override
+  protected boolean keep(char c) {
+      return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+  }
+}
@@ -0,0 +1,114 @@
+package org.lappsgrid.example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.lappsgrid.api.ProcessingService;
+import org.lappsgrid.discriminator.Discriminators.Uri;
+
+public class BatchExecutorTest {
+
+  /**
+   * Sleeps longer for earlier tasks so they finish out of order, and tracks
+   * how many run at once
+   */
+  static class Slow implements Callable<Integer> {
+    private final int index;
+    private final AtomicInteger running;
+    private final AtomicInteger peak;
+
+    Slow(int index, AtomicInteger running, AtomicInteger peak) {
+        this.index = index;
+        this.running = running;
+        this.peak = peak;
+    }
+
+    @Override
+    public Integer call() throws Exception {
+        int now = running.incrementAndGet();
+        synchronized (peak) {
+          peak.set(Math.max(peak.get(), now));
+        }
+        try {
+          Thread.sleep(20 - index % 4 * 5);
+          if (index % 7 == 3) {
+            throw new IllegalStateException("task " + index);
+          }
+          return index;
+        } finally {
+          running.decrementAndGet();
+        }
+    }
+  }
+
+  @Test
+  public void deliversInInputOrderWithBoundedConcurrency() throws Exception {
+      AtomicInteger running = new AtomicInteger();
+      AtomicInteger peak = new AtomicInteger();
+      List<Callable<Integer>> tasks = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+        tasks.add(new Slow(i, running, peak));
+      }
+      final List<String> log = new ArrayList<>();
+
+      try (BatchExecutor batch = new BatchExecutor(4)) {
+        batch.execute(tasks.iterator(), new BatchExecutor.Handler<Integer>() {
+          @Override
+          public void result(int index, Integer result) {
+              log.add(index + "=" + result);
+          }
+
+          @Override
+          public void failure(int index, Throwable cause) {
+              log.add(index + ":" + cause.getMessage());
+          }
+        });
+      }
+
+      assertEquals(20, log.size());
+      for (int i = 0; i < 20; i++) {
+        assertEquals(i % 7 == 3 ? i + ":task " + i : i + "=" + i, log.get(i));
+      }
+      assertTrue(peak.get() <= 4);
+  }
+
+  @Test
+  public void failedDocumentsGetErrorDocuments() throws Exception {
+      ProcessingService service = new ProcessingService() {
+        @Override
+        public String getMetadata() {
+            return "{}";
+        }
+
+        @Override
+        public String execute(String input) {
+            if (input.equals("bad")) {
+              throw new IllegalArgumentException(input);
+            }
+            return input.toUpperCase();
+        }
+      };
+
+      List<String> results;
+      try (BatchExecutor batch = new BatchExecutor(2)) {
+        results = batch.execute(service, Arrays.asList("a", "bad", "c"));
+      }
+
+      assertEquals("A", results.get(0));
+      assertTrue(results.get(1).contains(Uri.ERROR));
+      assertTrue(results.get(1).contains("IllegalArgumentException"));
+      assertEquals("C", results.get(2));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsZeroConcurrency() {
+      new BatchExecutor(0);
+  }
+}
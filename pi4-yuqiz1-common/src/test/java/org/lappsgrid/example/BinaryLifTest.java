@@ -0,0 +1,157 @@
+package org.lappsgrid.example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.lappsgrid.discriminator.Discriminators.Uri;
+import org.lappsgrid.serialization.Data;
+import org.lappsgrid.serialization.DataContainer;
+import org.lappsgrid.serialization.lif.Annotation;
+import org.lappsgrid.serialization.lif.Container;
+import org.lappsgrid.serialization.lif.View;
+
+public class BinaryLifTest {
+
+  static Container container() {
+      Container container = new Container();
+      container.setText("Q What is it?\nA 1 It is a test \u00e9\u20ac.");
+      View view = container.newView();
+      for (int i = 0; i < 50; i++) {
+        Annotation a = view.newAnnotation("s" + i, Uri.SENTENCE, i, i + 1);
+        a.addFeature("Type", i == 0 ? "Question" : "Answer");
+        Map<String, Object> grams = new LinkedHashMap<>();
+        grams.put("it is", i);
+        grams.put("score", i / 3.0);
+        grams.put("big", 1L << 40);
+        grams.put("flag", i % 2 == 0);
+        grams.put("list", Arrays.asList("a", null, -7));
+        a.getFeatures().put("2-Gram", grams);
+      }
+      return container;
+  }
+
+  /**
+   * The payload as it reads back from JSON, where small numbers are Integers
+   */
+  static Object parsed(Data data) throws IOException {
+      return LifWriter.mapper.readValue(LifWriter.mapper.writeValueAsString(data.getPayload()), Object.class);
+  }
+
+  static byte[] encode(Data data) throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      BinaryLif.write(data, out);
+      return out.toByteArray();
+  }
+
+  /**
+   * A document whose payload is a list claiming the given length
+   */
+  static byte[] listOf(long length) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      out.write('L');
+      out.write('I');
+      out.write('F');
+      out.write('B');
+      out.write(1);
+      // STRING_NEW "x", then LIST
+      out.write(5);
+      out.write(1);
+      out.write('x');
+      out.write(8);
+      while ((length & ~0x7FL) != 0) {
+        out.write((int) ((length & 0x7F) | 0x80));
+        length >>>= 7;
+      }
+      out.write((int) length);
+      return out.toByteArray();
+  }
+
+  /**
+   * A document whose payload is a list nested the given number of lists deep
+   */
+  static byte[] nested(int depth) {
+      byte[] header = listOf(1);
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      out.write(header, 0, header.length);
+      for (int i = 1; i < depth - 1; i++) {
+        out.write(8);
+        out.write(1);
+      }
+      out.write(8);
+      out.write(0);
+      return out.toByteArray();
+  }
+
+  @Test
+  public void roundTripsTheJsonTree() throws Exception {
+      Data data = new DataContainer(container());
+      Object expected = parsed(data);
+
+      Data decoded = BinaryLif.read(new ByteArrayInputStream(encode(data)));
+
+      assertEquals(Uri.LAPPS, decoded.getDiscriminator());
+      assertEquals(expected, decoded.getPayload());
+      assertEquals(container().getText(), new Container((Map) decoded.getPayload()).getText());
+  }
+
+  @Test
+  public void roundTripsThroughBase64AndStreams() throws Exception {
+      Data data = new DataContainer(container());
+      Object expected = parsed(data);
+
+      assertEquals(expected, BinaryLif.fromBase64(BinaryLif.toBase64(data)).getPayload());
+      FilterInputStream stream = new FilterInputStream(new ByteArrayInputStream(encode(data))) {
+      };
+      assertEquals(expected, BinaryLif.read(stream).getPayload());
+  }
+
+  @Test
+  public void internedStringsKeepTheEncodingSmall() throws Exception {
+      byte[] binary = encode(new DataContainer(container()));
+
+      assertTrue(binary.length * 2 < new DataContainer(container()).asJson().length());
+  }
+
+  @Test
+  public void rejectsLengthsBeyondTheInput() throws Exception {
+      try {
+        BinaryLif.read(new ByteArrayInputStream(listOf(1000)));
+        throw new AssertionError("Accepted a truncated list");
+      } catch (IOException e) {
+        assertTrue(e.getMessage().contains("bytes left"));
+      }
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsHugeLengthsInStreams() throws Exception {
+      BinaryLif.read(new FilterInputStream(new ByteArrayInputStream(listOf(1L << 30))) {
+      });
+  }
+
+  @Test
+  public void rejectsDeepNesting() throws Exception {
+      assertEquals(1, ((List<?>) BinaryLif.read(new ByteArrayInputStream(nested(512))).getPayload()).size());
+      try {
+        // Deep enough to overflow the stack without the limit
+        BinaryLif.read(new ByteArrayInputStream(nested(100000)));
+        throw new AssertionError("Accepted a deeply nested list");
+      } catch (IOException e) {
+        assertTrue(e.getMessage().contains("nested"));
+      }
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsOtherDocuments() throws Exception {
+      BinaryLif.read(new ByteArrayInputStream("{\"discriminator\":1}".getBytes("UTF-8")));
+  }
+}
@@ -0,0 +1,107 @@
+package org.lappsgrid.example;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lappsgrid.api.ProcessingService;
+
+public class CachingServiceTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * A service that counts its calls
+   */
+  static class Counting implements ProcessingService {
+    int calls = 0;
+
+    @Override
+    public String getMetadata() {
+        return "{}";
+    }
+
+    @Override
+    public String execute(String input) {
+        calls++;
+        return "result " + input;
+    }
+  }
+
+  @Test
+  public void sameInputIsProcessedOnce() {
+      Counting service = new Counting();
+      CachingService cache = new CachingService(service, 1 << 20);
+
+      assertEquals("result a", cache.execute("a"));
+      assertEquals("result a", cache.execute("a"));
+      assertEquals("result b", cache.execute("b"));
+
+      assertEquals(2, service.calls);
+      assertEquals(1, cache.getHits());
+      assertEquals(2, cache.getMisses());
+      assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void evictsTheLeastRecentlyUsedEntry() {
+      Counting service = new Counting();
+      // Each entry is estimated at 272 bytes, so two fit.
+      CachingService cache = new CachingService(service, 600);
+      cache.execute("a");
+      cache.execute("b");
+      cache.execute("a");
+      cache.execute("c");
+
+      assertEquals(2, cache.size());
+      assertEquals(1, cache.getEvictions());
+      assertEquals(544, cache.getBytes());
+      cache.execute("a");
+      assertEquals(3, service.calls);
+      cache.execute("b");
+      assertEquals(4, service.calls);
+  }
+
+  @Test
+  public void resultsLargerThanTheBudgetAreNotKept() {
+      Counting service = new Counting();
+      CachingService cache = new CachingService(service, 100);
+      cache.execute("a");
+      cache.execute("a");
+
+      assertEquals(2, service.calls);
+      assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void configurationsDoNotShareResults() {
+      Counting service = new Counting();
+      File directory = folder.getRoot();
+      new CachingService(service, "x", 1 << 20, directory).execute("a");
+      new CachingService(service, "y", 1 << 20, directory).execute("a");
+
+      assertEquals(2, service.calls);
+  }
+
+  @Test
+  public void diskTierSurvivesANewCache() {
+      Counting service = new Counting();
+      File directory = new File(folder.getRoot(), "cache");
+      new CachingService(service, 1 << 20, directory).execute("a");
+
+      CachingService cache = new CachingService(service, 1 << 20, directory);
+      assertEquals("result a", cache.execute("a"));
+      assertEquals(1, service.calls);
+      assertEquals(1, cache.getDiskHits());
+      cache.execute("a");
+      assertEquals(1, cache.getHits());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsANegativeBudget() {
+      new CachingService(new Counting(), -1);
+  }
+}
@@ -0,0 +1,122 @@
+package org.lappsgrid.example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lappsgrid.serialization.lif.Container;
+
+public class CheckpointStoreTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * A stage with a parameter in its configuration that appends one view and logs its name
+   */
+  static class Stage extends AbstractProcessingService {
+    private final String name;
+    private final int parameter;
+    private final List<String> log;
+
+    Stage(String name, int parameter, List<String> log) {
+        this.name = name;
+        this.parameter = parameter;
+        this.log = log;
+    }
+
+    @Override
+    public String getMetadata() {
+        return "{}";
+    }
+
+    @Override
+    public String getConfiguration() {
+        return super.getConfiguration() + "?name=" + name + "&parameter=" + parameter;
+    }
+
+    @Override
+    public Container process(Container container) throws ProcessingException {
+        log.add(name);
+        container.newView().getMetadata().put("stage", name + parameter);
+        return container;
+    }
+  }
+
+  static Container input(String text) {
+      Container container = new Container();
+      container.setText(text);
+      return container;
+  }
+
+  static Pipeline pipeline(CheckpointStore store, List<String> log, int... parameters) {
+      return new Pipeline(store, Arrays.asList(new Stage("a", parameters[0], log),
+              new Stage("b", parameters[1], log), new Stage("c", parameters[2], log)));
+  }
+
+  @Test
+  public void resumesAfterTheDeepestUnchangedStage() throws Exception {
+      CheckpointStore store = new CheckpointStore(folder.newFolder("checkpoints"));
+      List<String> log = new ArrayList<>();
+
+      Container first = pipeline(store, log, 1, 1, 1).process(input("Q why?"));
+      assertEquals(Arrays.asList("a", "b", "c"), log);
+      assertEquals(3, store.getSaves());
+
+      log.clear();
+      Container again = pipeline(store, log, 1, 1, 1).process(input("Q why?"));
+      assertEquals(Collections.emptyList(), log);
+      assertEquals(1, store.getLoads());
+      assertEquals(3, again.getViews().size());
+      assertEquals("c1", again.getView(2).getMetadata().get("stage"));
+      assertEquals(first.getText(), again.getText());
+
+      log.clear();
+      Container changed = pipeline(store, log, 1, 1, 2).process(input("Q why?"));
+      assertEquals(Arrays.asList("c"), log);
+      assertEquals("b1", changed.getView(1).getMetadata().get("stage"));
+      assertEquals("c2", changed.getView(2).getMetadata().get("stage"));
+
+      log.clear();
+      pipeline(store, log, 1, 2, 2).process(input("Q why?"));
+      assertEquals(Arrays.asList("b", "c"), log);
+
+      log.clear();
+      pipeline(store, log, 1, 1, 1).process(input("Q how?"));
+      assertEquals(Arrays.asList("a", "b", "c"), log);
+  }
+
+  @Test
+  public void unreadableCheckpointsAreMissing() throws Exception {
+      File directory = folder.newFolder("checkpoints");
+      CheckpointStore store = new CheckpointStore(directory);
+      String key = CheckpointStore.key(store.inputKey(input("Q why?")), "stage");
+      Files.write(new File(directory, key).toPath(), "{not json".getBytes(StandardCharsets.UTF_8));
+
+      assertNull(store.get(key));
+      assertNull(store.get(CheckpointStore.key(key, "next")));
+      assertEquals(0, store.getLoads());
+  }
+
+  @Test
+  public void keysChainStageConfigurations() {
+      String input = "input";
+
+      assertEquals(CheckpointStore.key(CheckpointStore.key(input, "a"), "b"),
+              CheckpointStore.key(CheckpointStore.key(input, "a"), "b"));
+      assertFalse(CheckpointStore.key(CheckpointStore.key(input, "a"), "b")
+              .equals(CheckpointStore.key(CheckpointStore.key(input, "b"), "a")));
+      // Parts are separated, so moving a character between them changes the key.
+      assertFalse(CheckpointStore.key("ab", "c").equals(CheckpointStore.key("a", "bc")));
+  }
+}
@@ -0,0 +1,96 @@
+package org.lappsgrid.example;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CountMinSketchTest {
+
+  @Test
+  public void estimatesStayWithinTheErrorBound() {
+      Random random = new Random(19);
+      CountMinSketch sketch = new CountMinSketch(0.01, 0.01);
+      Map<Long, Integer> exact = new HashMap<>();
+      for (int i = 0; i < 20000; i++) {
+        // A skewed distribution over 2000 n-grams
+        long gram = CountMinSketch.hash("w" + (int) Math.abs(random.nextGaussian() * 300) % 2000);
+        sketch.add(gram, 1);
+        Integer count = exact.get(gram);
+        exact.put(gram, count == null ? 1 : count + 1);
+      }
+
+      assertEquals(20000, sketch.total());
+      int over = 0;
+      double squares = 0;
+      for (Map.Entry<Long, Integer> entry : exact.entrySet()) {
+        int estimate = sketch.estimate(entry.getKey());
+        assertTrue(estimate >= entry.getValue());
+        if (estimate - entry.getValue() > 0.01 * sketch.total()) {
+          over++;
+        }
+        squares += (double) entry.getValue() * entry.getValue();
+      }
+      assertTrue(over <= 0.01 * exact.size() + 1);
+      assertTrue(sketch.sumOfSquares() >= squares);
+  }
+
+  @Test
+  public void hashOfAGramCombinesItsWords() {
+      char[] words = "who shot".toCharArray();
+      long h = CountMinSketch.combine(CountMinSketch.combine(0, CountMinSketch.wordHash(words, 0, 3)),
+              CountMinSketch.wordHash(words, 4, 4));
+
+      assertEquals(h, CountMinSketch.hash("who shot"));
+      assertTrue(CountMinSketch.hash("who shot") != CountMinSketch.hash("shot who"));
+  }
+
+  @Test
+  public void featureMapRoundTrips() throws Exception {
+      CountMinSketch sketch = new CountMinSketch(0.1, 0.1);
+      sketch.add(CountMinSketch.hash("a b"), 3);
+      sketch.add(CountMinSketch.hash("b c"), 1);
+
+      CountMinSketch copy = CountMinSketch.fromMap(sketch.toMap());
+      assertEquals(3, copy.estimate(CountMinSketch.hash("a b")));
+
+      // After JSON the counts are a list of numbers.
+      String json = LifWriter.mapper.writeValueAsString(sketch.toMap());
+      Map<?, ?> parsed = LifWriter.mapper.readValue(json, Map.class);
+      CountMinSketch read = CountMinSketch.fromMap(parsed);
+      assertEquals(4, read.total());
+      assertArrayEquals((int[]) sketch.toMap().get("counts"), (int[]) read.toMap().get("counts"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsInconsistentMaps() {
+      Map<String, Object> map = new CountMinSketch(0.1, 0.1).toMap();
+      map.put("width", 3);
+      CountMinSketch.fromMap(map);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsInvalidBounds() {
+      CountMinSketch.bytes(0, 0.5);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsSketchesTooLargeForAnArray() {
+      // 2^30 counters per row times 5 rows; checked before anything is allocated.
+      new CountMinSketch(1e-9, 0.01);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsMapsWhoseSizeOverflows() {
+      Map<String, Object> map = new CountMinSketch(0.1, 0.1).toMap();
+      map.put("width", 1 << 30);
+      map.put("depth", 4);
+      map.put("counts", new int[0]);
+      CountMinSketch.fromMap(map);
+  }
+}
@@ -0,0 +1,53 @@
+package org.lappsgrid.example;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class HistogramTest {
+
+  @Test
+  public void percentilesAreBucketUpperBounds() {
+      Histogram h = new Histogram();
+      for (int i = 1; i <= 100; i++) {
+        h.record(i);
+      }
+
+      assertEquals(100, h.getCount());
+      assertEquals(5050, h.getSum());
+      assertEquals(50.5, h.getMean(), 1e-12);
+      // 50 falls in [32, 64) and 90 and 99 in [64, 128), which is capped at the maximum.
+      assertEquals(63, h.percentile(0.5));
+      assertEquals(100, h.percentile(0.9));
+      assertEquals(100, h.percentile(0.99));
+      assertEquals(1, h.percentile(0));
+  }
+
+  @Test
+  public void zeroAndNegativeValuesShareTheFirstBucket() {
+      Histogram h = new Histogram();
+      h.record(0);
+      h.record(-5);
+
+      assertEquals(2, h.getCount());
+      assertEquals(0, h.getMax());
+      assertEquals(0, h.percentile(1));
+  }
+
+  @Test
+  public void emptyHistogramReportsZeros() {
+      Histogram h = new Histogram();
+
+      assertEquals(0, h.percentile(0.5));
+      assertEquals(0, h.getMean(), 0);
+      assertEquals(0L, h.toMap().get("count"));
+  }
+
+  @Test
+  public void largeValuesAreCapped() {
+      Histogram h = new Histogram();
+      h.record(Long.MAX_VALUE);
+
+      assertEquals(Long.MAX_VALUE, h.percentile(0.5));
+  }
+}
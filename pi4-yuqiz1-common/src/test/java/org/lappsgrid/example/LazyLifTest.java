@@ -0,0 +1,114 @@
+package org.lappsgrid.example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.lappsgrid.discriminator.Discriminators.Uri;
+import org.lappsgrid.serialization.Data;
+import org.lappsgrid.serialization.lif.Annotation;
+import org.lappsgrid.serialization.lif.Container;
+import org.lappsgrid.serialization.lif.View;
+
+public class LazyLifTest {
+  // The second view is laid out unusually so a copy can be told from a new serialization.
+  static final String VIEW = "{ \"id\" : \"v2\",\"metadata\":{},  \"annotations\":[{\"id\":\"t1\",\"start\":0,"
+          + "\"end\":2,\"@type\":\"" + Uri.TOKEN + "\",\"features\":{\"word\":\"Q1\"}}] }";
+  static final String JSON = "{\"discriminator\":\"" + Uri.LAPPS + "\",\"payload\":{\"@context\":\"ctx\","
+          + "\"metadata\":{},\"text\":{\"@value\":\"Q1 why?\"},\"views\":[{\"id\":\"v1\",\"metadata\":{},"
+          + "\"annotations\":[{\"id\":\"s1\",\"start\":0,\"end\":7,\"@type\":\"" + Uri.SENTENCE + "\","
+          + "\"features\":{\"Type\":\"Question\"}}]}," + VIEW + "]}}";
+
+  static Object tree(String json) throws Exception {
+      return LifWriter.mapper.readValue(json, Object.class);
+  }
+
+  @Test
+  public void annotationsAreDecodedOnFirstUse() throws Exception {
+      Data data = LazyLif.parse(JSON);
+      Container container = (Container) data.getPayload();
+
+      assertEquals(Uri.LAPPS, data.getDiscriminator());
+      assertEquals("Q1 why?", container.getText());
+      assertEquals("v2", container.getView(1).getId());
+      assertTrue(LazyLif.isLazy(data));
+      List<Annotation> annotations = container.getView(0).getAnnotations();
+      assertEquals("Question", annotations.get(0).getFeature("Type"));
+      assertTrue(LazyLif.isLazy(data));
+      container.getView(1).getAnnotations();
+      assertFalse(LazyLif.isLazy(data));
+  }
+
+  @Test
+  public void unreadViewsAreCopiedAsTheyArrived() throws Exception {
+      Data data = LazyLif.parse(JSON);
+      Container container = (Container) data.getPayload();
+      container.getView(0).getAnnotations().get(0).addFeature("Seen", "yes");
+      View added = container.newView();
+      added.newAnnotation("n1", Uri.SENTENCE, 0, 2);
+
+      String json = LazyLif.toJson(data, false);
+
+      assertTrue(json.contains(VIEW));
+      Map<?, ?> payload = (Map<?, ?>) ((Map<?, ?>) tree(json)).get("payload");
+      List<?> views = (List<?>) payload.get("views");
+      assertEquals(3, views.size());
+      assertEquals(tree(VIEW), views.get(1));
+      assertTrue(json.contains("\"Seen\":\"yes\""));
+  }
+
+  @Test
+  public void editedViewsAreSerializedAgain() throws Exception {
+      Data data = LazyLif.parse(JSON);
+      Container container = (Container) data.getPayload();
+      container.getView(0).getMetadata().put("checked", true);
+      container.getView(1).setId("v9");
+
+      assertFalse(LazyLif.isLazy(data));
+      String json = LazyLif.toJson(data, false);
+
+      assertFalse(json.contains(VIEW));
+      List<?> views = (List<?>) ((Map<?, ?>) ((Map<?, ?>) tree(json)).get("payload")).get("views");
+      Map<?, ?> first = (Map<?, ?>) views.get(0);
+      assertEquals(true, ((Map<?, ?>) first.get("metadata")).get("checked"));
+      assertEquals(1, ((List<?>) first.get("annotations")).size());
+      Map<?, ?> second = (Map<?, ?>) views.get(1);
+      assertEquals("v9", second.get("id"));
+      assertEquals(((Map<?, ?>) tree(VIEW)).get("annotations"), second.get("annotations"));
+  }
+
+  @Test
+  public void annotationsAddedToUnreadViewsKeepTheOthers() throws Exception {
+      Data data = LazyLif.parse(JSON);
+      View view = ((Container) data.getPayload()).getView(1);
+      view.newAnnotation("t2", Uri.TOKEN, 3, 6);
+
+      String json = LazyLif.toJson(data, false);
+
+      List<?> views = (List<?>) ((Map<?, ?>) ((Map<?, ?>) tree(json)).get("payload")).get("views");
+      List<?> annotations = (List<?>) ((Map<?, ?>) views.get(1)).get("annotations");
+      assertEquals(2, annotations.size());
+      assertEquals("t1", ((Map<?, ?>) annotations.get(0)).get("id"));
+      assertEquals("t2", ((Map<?, ?>) annotations.get(1)).get("id"));
+  }
+
+  @Test
+  public void prettyOutputParsesToTheSameTree() throws Exception {
+      assertEquals(tree(JSON), tree(LazyLif.toJson(LazyLif.parse(JSON), true)));
+  }
+
+  @Test
+  public void otherPayloadsAreReadEagerly() throws Exception {
+      Data text = LazyLif.parse("{\"discriminator\":\"" + Uri.TEXT + "\",\"payload\":\"Q why?\"}");
+      assertEquals("Q why?", text.getPayload());
+      assertFalse(LazyLif.isLazy(text));
+
+      // A payload that precedes a discriminator other than LAPPS is not a Container.
+      Data error = LazyLif.parse("{\"payload\":{\"a\":1},\"discriminator\":\"" + Uri.ERROR + "\"}");
+      assertTrue(error.getPayload() instanceof Map);
+  }
+}
@@ -0,0 +1,120 @@
+package org.lappsgrid.example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.lappsgrid.discriminator.Discriminators.Uri;
+import org.lappsgrid.serialization.Data;
+import org.lappsgrid.serialization.lif.Container;
+import org.lappsgrid.serialization.lif.View;
+
+public class LifDeltaTest {
+
+  /**
+   * Adds one view naming the stage and counting the views before it
+   */
+  static class Stage extends AbstractProcessingService {
+    private final String name;
+
+    Stage(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String getMetadata() {
+        return "{}";
+    }
+
+    @Override
+    public Container process(Container container) throws ProcessingException {
+        int before = container.getViews().size();
+        View view = container.newView();
+        view.newAnnotation(name, Uri.SENTENCE, 0, before).addFeature("Stage", name);
+        return container;
+    }
+  }
+
+  static Object tree(String json) throws IOException {
+      return LifWriter.mapper.readValue(json, Object.class);
+  }
+
+  static Object payload(Data data) throws IOException {
+      return tree(LazyLif.toJson(new Data<Object>(Uri.LAPPS, AbstractProcessingService.toContainer(data)), false));
+  }
+
+  @Test
+  public void deltasMergeIntoTheFullDocument() throws Exception {
+      Stage a = new Stage("a");
+      Stage b = new Stage("b");
+      String input = new Data<String>(Uri.TEXT, "Q why?").asJson();
+
+      String full = b.execute(a.execute(input));
+      String deltaA = a.executeDelta(input);
+      String deltaB = b.executeDelta(deltaA);
+
+      Map<?, ?> delta = (Map<?, ?>) ((Map<?, ?>) tree(deltaB)).get("payload");
+      assertEquals(DocumentStore.reference(deltaA), delta.get("base"));
+      assertEquals(1, ((List<?>) delta.get("views")).size());
+      Data merged = LifDelta.merge(input, Arrays.asList(deltaA, deltaB));
+      assertEquals(Uri.LAPPS, merged.getDiscriminator());
+      assertEquals(payload(LazyLif.parse(full)), payload(merged));
+  }
+
+  @Test
+  public void deltaOfAResultHoldsOnlyNewViews() {
+      Container container = new Container();
+      container.newView();
+      container.newView();
+      container.newView().setId("new");
+
+      Data delta = LifDelta.delta("ref", container, 2);
+
+      assertEquals(LifDelta.DISCRIMINATOR, delta.getDiscriminator());
+      List<?> views = (List<?>) ((Map<?, ?>) delta.getPayload()).get("views");
+      assertEquals(1, views.size());
+      assertEquals("new", ((View) views.get(0)).getId());
+  }
+
+  @Test
+  public void unknownBasesResolveToErrors() throws Exception {
+      String json = "{\"discriminator\":\"" + LifDelta.DISCRIMINATOR
+              + "\",\"payload\":{\"base\":\"missing\",\"views\":[]}}";
+
+      Data resolved = LifDelta.resolve(LazyLif.parse(json), new DocumentStore(1 << 20));
+
+      assertEquals(Uri.ERROR, resolved.getDiscriminator());
+  }
+
+  @Test(expected = IOException.class)
+  public void mergeRejectsDeltasOutOfOrder() throws Exception {
+      Stage a = new Stage("a");
+      Stage b = new Stage("b");
+      String input = new Data<String>(Uri.TEXT, "Q why?").asJson();
+      String deltaA = a.executeDelta(input);
+      String deltaB = b.executeDelta(deltaA);
+
+      LifDelta.merge(input, Arrays.asList(deltaB, deltaA));
+  }
+
+  @Test
+  public void storeEvictsTheLeastRecentlyUsedDocument() {
+      // Each document is estimated at 2 * (64 + 1) + 128 = 258 bytes, so two fit.
+      DocumentStore store = new DocumentStore(600);
+      String a = store.put("a");
+      String b = store.put("b");
+      store.get(a);
+      store.put("c");
+
+      assertEquals(2, store.size());
+      assertEquals("a", store.get(a));
+      assertNull(store.get(b));
+      assertTrue(store.getBytes() <= 600);
+  }
+}
@@ -0,0 +1,212 @@
+package org.lappsgrid.example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.Test;
+import org.lappsgrid.discriminator.Discriminators.Uri;
+import org.lappsgrid.serialization.Data;
+import org.lappsgrid.serialization.lif.Container;
+import org.lappsgrid.serialization.lif.View;
+
+public class LifStreamServletTest {
+
+  /**
+   * Adds an empty view, tracking how many documents it processes at once
+   */
+  static class Tracking extends AbstractProcessingService {
+    static final AtomicInteger running = new AtomicInteger();
+    static final AtomicInteger peak = new AtomicInteger();
+
+    @Override
+    public String getMetadata() {
+        return "{}";
+    }
+
+    @Override
+    public Container process(Container container) throws ProcessingException {
+        int now = running.incrementAndGet();
+        synchronized (peak) {
+          peak.set(Math.max(peak.get(), now));
+        }
+        try {
+          Thread.sleep(10);
+        } catch (InterruptedException e) {
+          throw new ProcessingException("Interrupted", e);
+        } finally {
+          running.decrementAndGet();
+        }
+        View view = container.newView();
+        view.addContains(Uri.TOKEN, getClass().getName(), "tracking");
+        return container;
+    }
+  }
+
+  /**
+   * Answers getParameter() and getInitParameter() from a map, records
+   * sendError() and returns the other values by method name
+   */
+  static class Handler implements InvocationHandler {
+    final Map<String, String> parameters = new HashMap<>();
+    final Map<String, Object> values = new HashMap<>();
+    int status = 200;
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        String name = method.getName();
+        if (name.equals("getParameter") || name.equals("getInitParameter")) {
+          return parameters.get(args[0]);
+        }
+        if (name.equals("sendError")) {
+          status = (Integer) args[0];
+          return null;
+        }
+        return values.get(name);
+    }
+  }
+
+  static <T> T proxy(Class<T> type, Handler handler) {
+      return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler));
+  }
+
+  static String text(String text) {
+      return new Data<String>(Uri.TEXT, text).asJson();
+  }
+
+  /**
+   * Post a body to .../batch
+   * @param init the init-params of the servlet besides "service"
+   * @param parameters the query parameters
+   * @return the response body, or the status if it is an error
+   */
+  static String post(Map<String, String> init, Map<String, String> parameters, String body)
+          throws Exception {
+      Handler config = new Handler();
+      config.parameters.putAll(init);
+      config.parameters.put("service", Tracking.class.getName());
+      LifStreamServlet servlet = new LifStreamServlet();
+      servlet.init(proxy(ServletConfig.class, config));
+
+      final ByteArrayInputStream in = new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+      Handler request = new Handler();
+      request.parameters.putAll(parameters);
+      request.values.put("getPathInfo", "/batch");
+      request.values.put("getInputStream", new ServletInputStream() {
+        @Override
+        public int read() throws IOException {
+            return in.read();
+        }
+
+        @Override
+        public boolean isFinished() {
+            return in.available() == 0;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener listener) {
+        }
+      });
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      Handler response = new Handler();
+      response.values.put("getOutputStream", new ServletOutputStream() {
+        @Override
+        public void write(int b) {
+            out.write(b);
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener listener) {
+        }
+      });
+
+      servlet.doPost(proxy(HttpServletRequest.class, request), proxy(HttpServletResponse.class, response));
+      return response.status == 200 ? new String(out.toByteArray(), StandardCharsets.UTF_8) : "" + response.status;
+  }
+
+  static Map<String, String> map(String... pairs) {
+      Map<String, String> map = new HashMap<>();
+      for (int i = 0; i < pairs.length; i += 2) {
+        map.put(pairs[i], pairs[i + 1]);
+      }
+      return map;
+  }
+
+  @Test
+  public void badDocumentsGetErrorDocuments() throws Exception {
+      ServiceMetrics metrics = ServiceMetrics.get(Tracking.class.getName());
+      long requests = metrics.getRequests();
+      long errors = metrics.getErrors();
+
+      String output = post(map(), map(), text("a") + "\n[1, 2]\n" + text("b") + "\n");
+
+      String[] lines = output.split("\n");
+      assertEquals(3, lines.length);
+      assertTrue(lines[0].contains(Uri.LAPPS));
+      assertTrue(lines[0].contains("tracking"));
+      assertTrue(lines[1].contains(Uri.ERROR));
+      assertTrue(lines[2].contains(Uri.LAPPS));
+      assertTrue(lines[2].contains("\"b\""));
+      // Each document is recorded like a single request.
+      assertEquals(requests + 3, metrics.getRequests());
+      assertEquals(errors + 1, metrics.getErrors());
+  }
+
+  @Test
+  public void malformedJsonEndsTheBatchWithAnErrorDocument() throws Exception {
+      String output = post(map(), map(), text("a") + "\n{\"discriminator\": }\n" + text("b") + "\n");
+
+      String[] lines = output.split("\n");
+      assertEquals(2, lines.length);
+      assertTrue(lines[0].contains("tracking"));
+      assertTrue(lines[1].contains(Uri.ERROR));
+      assertTrue(lines[1].contains("Unable to parse the rest of the batch"));
+  }
+
+  @Test
+  public void concurrencyIsCappedByTheServlet() throws Exception {
+      StringBuilder body = new StringBuilder();
+      for (int i = 0; i < 12; i++) {
+        body.append(text("document " + i)).append('\n');
+      }
+      Tracking.peak.set(0);
+
+      String output = post(map("maxConcurrency", "2"), map("concurrency", "1000000"), body.toString());
+
+      assertEquals(12, output.split("\n").length);
+      assertTrue(Tracking.peak.get() <= 2);
+  }
+
+  @Test
+  public void rejectsInvalidConcurrency() throws Exception {
+      assertEquals("400", post(map(), map("concurrency", "0"), text("a")));
+  }
+}
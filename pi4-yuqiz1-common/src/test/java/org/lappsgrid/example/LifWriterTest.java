@@ -0,0 +1,97 @@
+package org.lappsgrid.example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.lappsgrid.discriminator.Discriminators.Uri;
+import org.lappsgrid.serialization.Data;
+import org.lappsgrid.serialization.DataContainer;
+import org.lappsgrid.serialization.lif.Annotation;
+import org.lappsgrid.serialization.lif.Container;
+import org.lappsgrid.serialization.lif.View;
+
+public class LifWriterTest {
+
+  static Container container() {
+      Container container = new Container();
+      container.setText("Q What is it?\nA 1 It is a test.");
+      View view = container.newView();
+      Annotation a = view.newAnnotation("s1", Uri.SENTENCE, 0, 13);
+      a.addFeature("Type", "Question");
+      view.newAnnotation("s2", Uri.SENTENCE, 14, 32).addFeature("Type", "Answer");
+      return container;
+  }
+
+  @Test
+  public void writesCompactJsonThatReadsBack() throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      new LifWriter().write(new DataContainer(container()), out);
+      String json = new String(out.toByteArray(), StandardCharsets.UTF_8);
+
+      assertFalse(json, json.contains("\n"));
+      Data data = LifWriter.read(new ByteArrayInputStream(out.toByteArray()));
+      assertEquals(Uri.LAPPS, data.getDiscriminator());
+      Container copy = AbstractProcessingService.toContainer(data);
+      assertEquals(container().getText(), copy.getText());
+      List<Annotation> annotations = copy.getView(0).getAnnotations();
+      assertEquals(2, annotations.size());
+      assertEquals("Question", annotations.get(0).getFeature("Type"));
+      assertEquals(14L, (long) annotations.get(1).getStart());
+  }
+
+  @Test
+  public void prettyPrintsOnRequest() throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      new LifWriter(true).write(new DataContainer(container()), out);
+
+      String json = new String(out.toByteArray(), StandardCharsets.UTF_8);
+      assertTrue(json, json.contains("\n"));
+      assertEquals(LifWriter.mapper.readTree(json), LifWriter.mapper.readTree(compact(container())));
+  }
+
+  @Test
+  public void leavesTheStreamOpen() throws IOException {
+      final boolean[] closed = new boolean[1];
+      OutputStream out = new FilterOutputStream(new ByteArrayOutputStream()) {
+        @Override
+        public void close() throws IOException {
+            closed[0] = true;
+            super.close();
+        }
+      };
+
+      new LifWriter().write(new Data<String>(Uri.TEXT, "text"), out);
+
+      assertFalse(closed[0]);
+  }
+
+  @Test
+  public void readsOneDocumentPerLine() throws IOException {
+      String lines = compact(container()) + "\n" + new Data<String>(Uri.TEXT, "second").asJson() + "\n";
+
+      Iterator<Data> documents = LifWriter.readAll(new ByteArrayInputStream(lines.getBytes(StandardCharsets.UTF_8)));
+
+      assertTrue(documents.hasNext());
+      assertTrue(documents.next().getPayload() instanceof Map);
+      assertEquals("second", documents.next().getPayload());
+      assertFalse(documents.hasNext());
+  }
+
+  private static String compact(Container container) throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      new LifWriter().write(new DataContainer(container), out);
+      return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,94 @@
+package org.lappsgrid.example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.lappsgrid.discriminator.Discriminators.Uri;
+import org.lappsgrid.serialization.Data;
+import org.lappsgrid.serialization.lif.Container;
+
+public class PipelineTest {
+
+  /**
+   * A stage that appends one empty view and logs its name
+   */
+  static class Append implements ContainerProcessor {
+    private final String name;
+    private final List<String> log;
+
+    Append(String name, List<String> log) {
+        this.name = name;
+        this.log = log;
+    }
+
+    @Override
+    public Container process(Container container) throws ProcessingException {
+        log.add(name);
+        container.newView().getMetadata().put("stage", name);
+        return container;
+    }
+  }
+
+  @Test
+  public void runsStagesInOrderOnOneContainer() throws Exception {
+      List<String> log = new ArrayList<>();
+      Pipeline pipeline = new Pipeline(new Append("a", log), new Append("b", log), new Append("c", log));
+      Container container = new Container();
+      container.setText("What is it?");
+
+      Container result = pipeline.process(container);
+
+      assertEquals(Arrays.asList("a", "b", "c"), log);
+      assertEquals(3, result.getViews().size());
+      assertEquals("a", result.getView(0).getMetadata().get("stage"));
+      assertEquals("c", result.getView(2).getMetadata().get("stage"));
+      assertEquals("What is it?", result.getText());
+  }
+
+  @Test
+  public void executesTextInput() {
+      List<String> log = new ArrayList<>();
+      Pipeline pipeline = new Pipeline(new Append("a", log), new Append("b", log));
+
+      Data result = pipeline.execute(new Data<String>(Uri.TEXT, "Q: why?"));
+
+      assertEquals(Uri.LAPPS, result.getDiscriminator());
+      Container container = (Container) result.getPayload();
+      assertEquals("Q: why?", container.getText());
+      assertEquals(2, container.getViews().size());
+  }
+
+  @Test
+  public void stopsAtAFailingStage() {
+      final List<String> log = new ArrayList<>();
+      ContainerProcessor failing = new ContainerProcessor() {
+        @Override
+        public Container process(Container container) throws ProcessingException {
+            throw new ProcessingException("no sentences");
+        }
+      };
+      Pipeline pipeline = new Pipeline(new Append("a", log), failing, new Append("c", log));
+
+      Data result = pipeline.execute(new Data<String>(Uri.TEXT, "text"));
+
+      assertEquals(Uri.ERROR, result.getDiscriminator());
+      assertEquals("no sentences", result.getPayload());
+      assertEquals(Arrays.asList("a"), log);
+  }
+
+  @Test
+  public void configurationListsEveryStage() {
+      List<String> log = new ArrayList<>();
+      Pipeline pipeline = new Pipeline(new Append("a", log), new Append("b", log));
+
+      String configuration = pipeline.getConfiguration();
+
+      assertTrue(configuration, configuration.startsWith(Pipeline.class.getName() + "["));
+      assertTrue(configuration, configuration.endsWith(Append.class.getName() + "," + Append.class.getName() + "]"));
+  }
+}
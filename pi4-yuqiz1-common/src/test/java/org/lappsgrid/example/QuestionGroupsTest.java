@@ -0,0 +1,64 @@
+package org.lappsgrid.example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.lappsgrid.discriminator.Discriminators.Uri;
+import org.lappsgrid.serialization.lif.Annotation;
+import org.lappsgrid.serialization.lif.View;
+
+public class QuestionGroupsTest {
+
+  private static Annotation sentence(View view, String id, String type, String question) {
+      Annotation a = view.newAnnotation(id, Uri.SENTENCE, 0, 1);
+      a.addFeature("Type", type);
+      if (question != null) {
+        a.addFeature(QuestionGroups.FEATURE, question);
+      }
+      return a;
+  }
+
+  @Test
+  public void groupsByQuestionInDocumentOrder() {
+      View view = new View();
+      Annotation q1 = sentence(view, "Q1", "Question", "Q1");
+      Annotation a1 = sentence(view, "Q1.A1", "Answer", "Q1");
+      Annotation q2 = sentence(view, "Q2", "Question", "Q2");
+      Annotation a2 = sentence(view, "Q2.A1", "Answer", "Q2");
+      Annotation a3 = sentence(view, "Q1.A2", "Answer", "Q1");
+
+      Map<String, List<Annotation>> groups = QuestionGroups.group(view.getAnnotations());
+
+      assertEquals(Arrays.asList("Q1", "Q2"), new ArrayList<>(groups.keySet()));
+      assertEquals(Arrays.asList(q1, a1, a3), groups.get("Q1"));
+      assertEquals(Arrays.asList(q2, a2), groups.get("Q2"));
+  }
+
+  @Test
+  public void documentWithoutQuestionsIsOneGroup() {
+      View view = new View();
+      sentence(view, "Question", "Question", null);
+      sentence(view, "A1", "Answer", null);
+
+      Map<String, List<Annotation>> groups = QuestionGroups.group(view.getAnnotations());
+
+      assertEquals(1, groups.size());
+      assertEquals(2, groups.get(QuestionGroups.DEFAULT_GROUP).size());
+  }
+
+  @Test
+  public void findsTheQuestionByType() {
+      View view = new View();
+      Annotation answer = sentence(view, "A1", "Answer", null);
+      Annotation question = sentence(view, "Question", "Question", null);
+
+      assertSame(question, QuestionGroups.question(view.getAnnotations()));
+      assertSame(answer, QuestionGroups.question(Arrays.asList(answer)));
+  }
+}
@@ -0,0 +1,88 @@
+package org.lappsgrid.example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import org.lappsgrid.discriminator.Discriminators.Uri;
+import org.lappsgrid.serialization.Data;
+import org.lappsgrid.serialization.lif.Container;
+import org.lappsgrid.serialization.lif.View;
+
+public class ServiceMetricsTest {
+
+  /**
+   * Adds a view of two annotations
+   */
+  static class Annotating extends AbstractProcessingService {
+    @Override
+    public String getMetadata() {
+        return "{}";
+    }
+
+    @Override
+    public Container process(Container container) throws ProcessingException {
+        View view = container.newView();
+        view.newAnnotation("a1", Uri.SENTENCE, 0, 1);
+        view.newAnnotation("a2", Uri.SENTENCE, 1, 2);
+        return container;
+    }
+  }
+
+  /**
+   * Fails with a bug rather than a ProcessingException
+   */
+  static class Failing extends AbstractProcessingService {
+    @Override
+    public String getMetadata() {
+        return "{}";
+    }
+
+    @Override
+    public Container process(Container container) throws ProcessingException {
+        throw new IllegalStateException("broken");
+    }
+  }
+
+  @Test
+  public void recordsEachRequest() {
+      Annotating service = new Annotating();
+      ServiceMetrics metrics = service.getServiceMetrics();
+      long requests = metrics.getRequests();
+      String input = new Data<String>(Uri.TEXT, "\u00e9?").asJson();
+
+      String output = service.execute(input);
+
+      assertSame(metrics, ServiceMetrics.get(Annotating.class.getName()));
+      assertEquals(requests + 1, metrics.getRequests());
+      assertEquals(0, metrics.getErrors());
+      assertEquals(2, metrics.getAnnotations().getMax());
+      assertEquals(input.getBytes(StandardCharsets.UTF_8).length, metrics.getInputBytes().getMax());
+      assertEquals(output.getBytes(StandardCharsets.UTF_8).length, metrics.getOutputBytes().getMax());
+      assertTrue(ServiceMetrics.all().containsKey(Annotating.class.getName()));
+  }
+
+  @Test
+  public void runtimeExceptionsBecomeCountedErrors() throws Exception {
+      Failing service = new Failing();
+      long errors = service.getServiceMetrics().getErrors();
+
+      Data result = service.execute(new Data<String>(Uri.TEXT, "text"));
+      service.execute(new Data<String>(Uri.TEXT, "text").asJson());
+
+      assertEquals(Uri.ERROR, result.getDiscriminator());
+      assertTrue(result.getPayload().toString().contains("broken"));
+      // execute(Data) is not a front end and records nothing.
+      assertEquals(errors + 1, service.getServiceMetrics().getErrors());
+  }
+
+  @Test
+  public void utf8LengthMatchesEncoding() {
+      for (String s : new String[] { "", "abc", "\u00e9", "\u20ac", "\ud83d\ude00", "a\u00e9\u20ac\ud83d\ude00" }) {
+        assertEquals(s, s.getBytes(StandardCharsets.UTF_8).length, ServiceMetrics.utf8Length(s));
+      }
+  }
+}
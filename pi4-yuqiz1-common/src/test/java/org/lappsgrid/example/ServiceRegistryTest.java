@@ -0,0 +1,46 @@
+package org.lappsgrid.example;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.lappsgrid.serialization.lif.Container;
+
+public class ServiceRegistryTest {
+
+  static class Default extends AbstractProcessingService {
+    @Override
+    public String getMetadata() {
+        return "{}";
+    }
+
+    @Override
+    public Container process(Container container) throws ProcessingException {
+        return container;
+    }
+  }
+
+  static class Configured extends Default {
+  }
+
+  @Test
+  public void sharesOneInstancePerClass() throws Exception {
+      AbstractProcessingService service = ServiceRegistry.get(Default.class.getName());
+
+      assertTrue(service instanceof Default);
+      assertSame(service, ServiceRegistry.get(Default.class.getName()));
+  }
+
+  @Test
+  public void registeredInstancesReplaceTheDefault() throws Exception {
+      Configured configured = new Configured();
+      ServiceRegistry.register(configured);
+
+      assertSame(configured, ServiceRegistry.get(Configured.class.getName()));
+  }
+
+  @Test(expected = ProcessingException.class)
+  public void rejectsClassesThatAreNotServices() throws Exception {
+      ServiceRegistry.get(String.class.getName());
+  }
+}
@@ -0,0 +1,79 @@
+package org.lappsgrid.example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TermDictionaryTest {
+
+  @Test
+  public void idsFollowFirstOccurrence() {
+      TermDictionary terms = new TermDictionary();
+
+      assertEquals(0, terms.id("who"));
+      assertEquals(1, terms.id("shot"));
+      assertEquals(0, terms.id("who"));
+      assertEquals(2, terms.id("Who"));
+      assertEquals(1, terms.id("xshotx".toCharArray(), 1, 4));
+      assertEquals(3, terms.size());
+      assertEquals("Who", terms.term(2));
+  }
+
+  @Test
+  public void manyTermsSurviveGrowing() {
+      TermDictionary terms = new TermDictionary();
+      for (int i = 0; i < 10000; i++) {
+        assertEquals(i, terms.id("term" + i));
+      }
+      for (int i = 0; i < 10000; i++) {
+        assertEquals(i, terms.id("term" + i));
+        assertEquals("term" + i, terms.term(i));
+      }
+  }
+
+  @Test
+  public void listRoundTripKeepsIds() {
+      TermDictionary terms = new TermDictionary();
+      for (String word : "to be or not to be".split(" ")) {
+        terms.id(word);
+      }
+      List<String> list = terms.toList();
+      assertEquals(Arrays.asList("to", "be", "or", "not"), list);
+
+      TermDictionary copy = TermDictionary.fromList(list);
+      assertEquals(terms.size(), copy.size());
+      assertEquals(terms.id("not"), copy.id("not"));
+  }
+
+  @Test
+  public void packedNgramsSpellOutTheirWords() {
+      TermDictionary terms = new TermDictionary();
+      int[] ids = new int[4];
+      String[] words = { "John", "Wilkes", "Booth", "John" };
+      for (int i = 0; i < words.length; i++) {
+        ids[i] = terms.id(words[i]);
+      }
+
+      assertEquals("John", terms.gram(TermDictionary.pack(ids, 3, 1), 1));
+      assertEquals("Wilkes Booth", terms.gram(TermDictionary.pack(ids, 1, 2), 2));
+      assertEquals("Wilkes Booth John", terms.gram(TermDictionary.pack(ids, 1, 3), 3));
+      assertEquals(TermDictionary.pack(ids, 0, 1), TermDictionary.pack(ids, 3, 1));
+  }
+
+  @Test
+  public void packedOrdersNeverCollide() {
+      // Ids are stored plus one, so a unigram of id 0 differs from a bigram starting with it.
+      int[] ids = { 0, 0, TermDictionary.MAX_TERMS - 1 };
+      long one = TermDictionary.pack(ids, 0, 1);
+      long two = TermDictionary.pack(ids, 0, 2);
+      long three = TermDictionary.pack(ids, 0, 3);
+
+      assertFalse(one == two || two == three || one == three);
+      assertTrue(three > 0);
+  }
+}
@@ -0,0 +1,111 @@
+package org.lappsgrid.example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TokenizerTest {
+
+  /**
+   * Collects the tokens as "word@start-end"
+   */
+  static class Collector implements Tokenizer.Handler {
+    final List<String> tokens = new ArrayList<>();
+    final List<String> words = new ArrayList<>();
+
+    @Override
+    public void token(int start, int end, char[] word, int length) {
+        String w = new String(word, 0, length);
+        tokens.add(w + "@" + start + "-" + end);
+        words.add(w);
+    }
+  }
+
+  static Collector tokenize(Tokenizer tokenizer, String text, int offset) throws ProcessingException {
+      Collector collector = new Collector();
+      tokenizer.tokenize(text, offset, collector);
+      return collector;
+  }
+
+  /**
+   * The words of the regex tokenization TokenAnnotation used before Tokenizer
+   */
+  static List<String> regexWords(String sentence) {
+      List<String> words = new ArrayList<>();
+      for (String word : sentence.trim().split("\\s+")) {
+        words.add(word.replaceAll("\\W", ""));
+      }
+      return words;
+  }
+
+  @Test
+  public void reportsDocumentOffsets() throws Exception {
+      Collector collector = tokenize(new WordTokenizer(), "  Who's there?\tMe.", 100);
+
+      assertEquals(Arrays.asList("Whos@102-107", "there@108-114", "Me@115-118"), collector.tokens);
+  }
+
+  @Test
+  public void whitespaceTokenizerKeepsEveryCharacter() throws Exception {
+      Collector collector = tokenize(new WhitespaceTokenizer(), "a,b \u000B c.d\r\n", 0);
+
+      assertEquals(Arrays.asList("a,b@0-3", "c.d@6-9"), collector.tokens);
+  }
+
+  @Test
+  public void tokenOfOnlyPunctuationIsKeptEmpty() throws Exception {
+      Collector collector = tokenize(new WordTokenizer(), "yes -- no", 0);
+
+      assertEquals(Arrays.asList("yes@0-3", "@4-6", "no@7-9"), collector.tokens);
+  }
+
+  @Test
+  public void wordTokenizerMatchesTheRegexTokenization() throws Exception {
+      Random random = new Random(4);
+      String alphabet = "abcXYZ019_'-.,?!\u00e9\u00df  \t\n\u000B\f\r";
+      for (int trial = 0; trial < 2000; trial++) {
+        StringBuilder sentence = new StringBuilder();
+        int length = 1 + random.nextInt(40);
+        for (int i = 0; i < length; i++) {
+          sentence.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        String text = sentence.toString();
+        if (text.trim().isEmpty()) {
+          continue;
+        }
+
+        Collector collector = tokenize(new WordTokenizer(), text, 7);
+
+        assertEquals(text, regexWords(text), collector.words);
+        // Offsets cover the raw token, in order.
+        List<String> raw = Arrays.asList(text.trim().split("\\s+"));
+        int previous = 0;
+        for (int t = 0; t < raw.size(); t++) {
+          String token = collector.tokens.get(t);
+          int start = Integer.parseInt(token.substring(token.lastIndexOf('@') + 1, token.lastIndexOf('-'))) - 7;
+          int end = Integer.parseInt(token.substring(token.lastIndexOf('-') + 1)) - 7;
+          assertTrue(start >= previous);
+          assertEquals(raw.get(t), text.substring(start, end));
+          previous = end;
+        }
+      }
+  }
+
+  @Test
+  public void growsTheBufferForLongTokens() throws Exception {
+      StringBuilder word = new StringBuilder();
+      for (int i = 0; i < 100; i++) {
+        word.append((char) ('a' + i % 26));
+      }
+
+      Collector collector = tokenize(new WordTokenizer(), word + " x", 0);
+
+      assertEquals(Arrays.asList(word.toString(), "x"), collector.words);
+  }
+}
@@ -1,36 +1,65 @@
 package org.lappsgrid.example;
 
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 
-import org.lappsgrid.api.ProcessingService;
 import org.lappsgrid.discriminator.Discriminators.Uri;
 import org.lappsgrid.metadata.IOSpecification;
 import org.lappsgrid.metadata.ServiceMetadata;
 import org.lappsgrid.serialization.Data;
-import org.lappsgrid.serialization.DataContainer;
-import org.lappsgrid.serialization.Serializer;
 import org.lappsgrid.serialization.lif.Annotation;
 import org.lappsgrid.serialization.lif.Container;
 import org.lappsgrid.serialization.lif.View;
 import org.lappsgrid.vocabulary.Features;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
 /**
- * ElementAnnotation: parse question and answers from the input file
+ * ElementAnnotation: parse question and answers from the input file.
+ * In corpus mode the input may hold any number of Q/A blocks; each question
+ * and its answers form a group identified by "Q1", "Q2", ...
+ *
+ * Corpora too large to post as a payload can be annotated from a local file
+ * with ingest(), which memory-maps the file and parses it in parallel. The
+ * main() method streams the resulting LIF document as it is parsed:
+ *
+ * <pre>
+ * java org.lappsgrid.example.ElementAnnotation [-corpus] qa.txt &gt; elements.json
+ * </pre>
  * @author yuqizhang
  * 
  */
-public class ElementAnnotation implements ProcessingService{
+public class ElementAnnotation extends AbstractProcessingService {
   /**
    * The Json String required by getMetadata()
    */
   private String metadata;
+  /**
+   * Treat the input as a corpus of many questions
+   */
+  private boolean corpusMode;
+  /**
+   * Container metadata of ingested files: the URI of the file. Their text is
+   * left empty, and annotation offsets count characters of the decoded file.
+   */
+  public static final String TEXT_SOURCE = "textSource";
 
 
   public ElementAnnotation() {
+      this(false);
+  }
+
+  public ElementAnnotation(boolean corpusMode) {
       metadata = generateMetadata();
+      this.corpusMode = corpusMode;
   }
   
   /**
@@ -82,84 +111,212 @@ public class ElementAnnotation implements ProcessingService{
       return metadata;
   }
 
+  @Override
+  public String getConfiguration() {
+      return super.getConfiguration() + "?corpusMode=" + corpusMode;
+  }
+
   @Override
   /**
    * Parse the document and annotate the question and answers
    */
-  public String execute(String input) {
-      // Step #1: Parse the input.
-      Data data = Serializer.parse(input, Data.class);
-
-      // Step #2: Check the discriminator
-      final String discriminator = data.getDiscriminator();
-      if (discriminator.equals(Uri.ERROR)) {
-          // Return the input unchanged.
-          return input;
-      }
-
-      // Step #3: Extract the text.
-      Container container = null;
-      if (discriminator.equals(Uri.TEXT)) {
-          container = new Container();
-          container.setText(data.getPayload().toString());
-      }
-      else if (discriminator.equals(Uri.LAPPS)) {
-          container = new Container((Map) data.getPayload());
-      }
-      else {
-          // This is a format we don't accept.
-          String message = String.format("Unsupported discriminator type: %s", discriminator);
-          return new Data<String>(Uri.ERROR, message).asJson();
-      }
-
+  public Container process(Container container) throws ProcessingException {
       // Step #4: Create a new View
       View view = container.newView();
 
-      
+      // Step #5: Stream the text line by line and annotate every question and answer.
       String text = container.getText();
-      int id = 0;
       try {
-        //BufferedReader br = new BufferedReader(new FileReader(text));
-        String[] lines = text.split("\n");
-        // String qline = null;
-        for (String qline:lines){
-          
-          //System.out.println(qline);
-          int start = qline.indexOf(" ");
-          int end = qline.length();
-          if(qline.substring(0, start).equals("Q")){
-            Annotation a = view.newAnnotation("Question", Uri.SENTENCE, start, end);
-            a.addFeature("Type", "Question");
-            a.addFeature(Uri.SENTENCE, qline.substring(start+1));
-          }
-          else{
-            int newstart = qline.indexOf(" ", start+1);
-            String score = qline.substring(start+1, newstart);
-            Annotation a = view.newAnnotation("A" + (++id), Uri.SENTENCE, newstart, end);
-            a.addFeature("Type", "Answer");
-            a.addFeature(Uri.SENTENCE, qline.substring(newstart+1));
-            a.addFeature("Score", score);
-          }
-        }
-      } catch (Exception e) {
-        // TODO Auto-generated catch block
-        e.printStackTrace();
+        new QaCorpusReader(new StringReader(text)).read(new ViewBuilder(view, corpusMode));
+      } catch (IOException e) {
+        throw new ProcessingException("Unable to read the text", e);
       }
-  
-      
-      
-   
-      
 
       // Step #6: Update the view's metadata. Each view contains metadata about the
       // annotations it contains, in particular the name of the tool that produced the
       // annotations.
       view.addContains(Uri.SENTENCE, this.getClass().getName(), "elementAnnotation");
 
-      // Step #7: Create a DataContainer with the result.
-      data = new DataContainer(container);
+      return container;
+  }
 
-      // Step #8: Serialize the data object and return the JSON.
-      return data.asPrettyJson();
+  /**
+   * Annotate a local Q/A file without reading it into a String. The file is
+   * read by a MappedCorpusReader, but every annotation is kept in the returned
+   * container, so this suits files whose annotations fit on the heap; use
+   * ingest(File, ForkJoinPool, OutputStream) for larger ones.
+   * @param file the corpus in UTF-8
+   * @param pool parses chunks of the file in parallel
+   * @return a new container with the element view and an empty text; see TEXT_SOURCE
+   * @throws ProcessingException if the file cannot be read or is malformed
+   */
+  public Container ingest(File file, ForkJoinPool pool) throws ProcessingException {
+      Container container = sourceContainer(file);
+      View view = container.newView();
+      try {
+        new MappedCorpusReader(file, pool).read(new ViewBuilder(view, corpusMode));
+      } catch (IOException e) {
+        throw new ProcessingException("Unable to read " + file, e);
+      }
+      view.addContains(Uri.SENTENCE, this.getClass().getName(), "elementAnnotation");
+      return container;
+  }
+
+  /**
+   * Annotate a local Q/A file of any size and write the LIF document as it is
+   * parsed. Each annotation is written as soon as it is read and then
+   * dropped, so neither the file nor its annotations are held on the heap.
+   * @param file the corpus in UTF-8
+   * @param pool parses chunks of the file in parallel
+   * @param out receives the compact LIF document, with an empty text; see TEXT_SOURCE
+   * @throws ProcessingException if the file cannot be read or is malformed
+   * @throws IOException if the document cannot be written
+   */
+  public void ingest(File file, ForkJoinPool pool, OutputStream out) throws ProcessingException, IOException {
+      Container container = sourceContainer(file);
+      View view = container.newView();
+      view.addContains(Uri.SENTENCE, this.getClass().getName(), "elementAnnotation");
+
+      // Write everything but the annotations, then stream those into the open array.
+      ObjectNode document = LifWriter.mapper.valueToTree(new Data<Container>(Uri.LAPPS, container));
+      ObjectNode payload = (ObjectNode) document.remove("payload");
+      ObjectNode viewNode = (ObjectNode) payload.remove("views").get(0);
+      viewNode.remove("annotations");
+      JsonGenerator json = LifWriter.mapper.getFactory().createGenerator(out);
+      json.writeStartObject();
+      writeFields(json, document);
+      json.writeObjectFieldStart("payload");
+      writeFields(json, payload);
+      json.writeArrayFieldStart("views");
+      json.writeStartObject();
+      writeFields(json, viewNode);
+      json.writeArrayFieldStart("annotations");
+      try {
+        new MappedCorpusReader(file, pool).read(new ViewWriter(view, corpusMode, json));
+      } catch (IOException e) {
+        throw new ProcessingException("Unable to read " + file, e);
+      }
+      json.writeEndArray();
+      json.writeEndObject();
+      json.writeEndArray();
+      json.writeEndObject();
+      json.writeEndObject();
+      json.flush();
+  }
+
+  /**
+   * @return an empty container naming the file its offsets refer to
+   */
+  private static Container sourceContainer(File file) {
+      Container container = new Container();
+      container.setText("");
+      container.getMetadata().put(TEXT_SOURCE, file.getAbsoluteFile().toURI().toString());
+      return container;
+  }
+
+  private static void writeFields(JsonGenerator json, ObjectNode node) throws IOException {
+      Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+      while (fields.hasNext()) {
+        Map.Entry<String, JsonNode> field = fields.next();
+        json.writeFieldName(field.getKey());
+        json.writeTree(field.getValue());
+      }
+  }
+
+  public static void main(String[] args) throws Exception {
+      boolean corpusMode = args.length == 2 && args[0].equals("-corpus");
+      if (args.length != (corpusMode ? 2 : 1)) {
+        System.err.println("Usage: ElementAnnotation [-corpus] <Q/A file>");
+        System.exit(1);
+      }
+      ForkJoinPool pool = new ForkJoinPool();
+      try {
+        OutputStream out = new BufferedOutputStream(System.out);
+        new ElementAnnotation(corpusMode).ingest(new File(args[args.length - 1]), pool, out);
+        out.flush();
+      } finally {
+        pool.shutdown();
+      }
+  }
+
+  /**
+   * Add one Uri.SENTENCE annotation per line. Every annotation carries the id of
+   * its question in the "Question" feature so later stages can group them.
+   */
+  private static class ViewBuilder implements QaCorpusReader.Handler {
+    private final View view;
+    private final boolean corpusMode;
+    private int questions = 0;
+    private int id = 0;
+    private String question = null;
+
+    ViewBuilder(View view, boolean corpusMode) {
+        this.view = view;
+        this.corpusMode = corpusMode;
+    }
+
+    @Override
+    public void question(String sentence, long start, long end) throws ProcessingException {
+        if (corpusMode) {
+          question = "Q" + (++questions);
+          id = 0;
+        }
+        else {
+          question = "Question";
+        }
+        Annotation a = view.newAnnotation(question, Uri.SENTENCE, start, end);
+        a.addFeature("Type", "Question");
+        a.addFeature(Uri.SENTENCE, sentence);
+        a.addFeature("Question", question);
+        added(a);
+    }
+
+    @Override
+    public void answer(String score, String sentence, long start, long end) throws ProcessingException {
+        if (corpusMode && question == null) {
+          throw new ProcessingException("Answer before the first question at offset " + start);
+        }
+        String answerId = corpusMode ? question + ".A" + (++id) : "A" + (++id);
+        Annotation a = view.newAnnotation(answerId, Uri.SENTENCE, start, end);
+        a.addFeature("Type", "Answer");
+        a.addFeature(Uri.SENTENCE, sentence);
+        a.addFeature("Score", score);
+        if (question != null) {
+          a.addFeature("Question", question);
+        }
+        added(a);
+    }
+
+    /**
+     * Called after each annotation is complete
+     * @param a the annotation, the last one of the view
+     * @throws ProcessingException if it cannot be handed on
+     */
+    void added(Annotation a) throws ProcessingException {
+    }
+  }
+
+  /**
+   * Write each annotation to an open JSON array and drop it from the view
+   */
+  private static class ViewWriter extends ViewBuilder {
+    private final View view;
+    private final JsonGenerator json;
+
+    ViewWriter(View view, boolean corpusMode, JsonGenerator json) {
+        super(view, corpusMode);
+        this.view = view;
+        this.json = json;
+    }
+
+    @Override
+    void added(Annotation a) throws ProcessingException {
+        try {
+          json.writeObject(a);
+        } catch (IOException e) {
+          throw new ProcessingException("Unable to write " + a.getId(), e);
+        }
+        view.getAnnotations().clear();
+    }
   }
 }
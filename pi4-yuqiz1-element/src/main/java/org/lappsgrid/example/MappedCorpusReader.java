@@ -0,0 +1,275 @@
+package org.lappsgrid.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * MappedCorpusReader: read a Q/A corpus file of any size without loading it
+ * onto the heap. The file is memory-mapped in chunks of about chunkSize bytes
+ * that end at a line break, and a window of chunks is parsed in parallel on a
+ * fork-join pool. Each chunk is decoded in one pass and its questions and
+ * answers are then handed to the Handler in document order, with the offsets
+ * QaCorpusReader reports for the decoded text, so only the chunks of the
+ * window and their sentences are held in memory at a time.
+ *
+ * The file must be UTF-8. A line break is a single byte in UTF-8, so chunks
+ * can be split at line breaks without decoding; malformed bytes are replaced
+ * as new String() does.
+ *
+ */
+public class MappedCorpusReader {
+  public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+  private static final int SCAN_SIZE = 8192;
+
+  private final File file;
+  private final ForkJoinPool pool;
+  private final int chunkSize;
+
+  /**
+   * @param file a Q/A corpus in UTF-8
+   * @param pool parses the chunks; twice its parallelism are read at a time
+   */
+  public MappedCorpusReader(File file, ForkJoinPool pool) {
+      this(file, pool, DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * @param file a Q/A corpus in UTF-8
+   * @param pool parses the chunks; twice its parallelism are read at a time
+   * @param chunkSize the number of bytes to map per chunk, before extending it to a line break
+   */
+  public MappedCorpusReader(File file, ForkJoinPool pool, int chunkSize) {
+      if (chunkSize < 1) {
+        throw new IllegalArgumentException("chunkSize must be at least 1: " + chunkSize);
+      }
+      this.file = file;
+      this.pool = pool;
+      this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Read the whole file. Blank lines and lines without a sentence are skipped.
+   * @param handler receives every question and answer in document order
+   * @throws IOException if the file cannot be mapped
+   * @throws ProcessingException if the handler rejects a line
+   */
+  public void read(QaCorpusReader.Handler handler) throws IOException, ProcessingException {
+      try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+              FileChannel channel = raf.getChannel()) {
+        long size = channel.size();
+        int window = pool.getParallelism() * 2;
+        List<Chunk> chunks = new ArrayList<>(window);
+        long position = 0;
+        long offset = 0;
+        while (position < size) {
+          chunks.clear();
+          while (position < size && chunks.size() < window) {
+            long end = lineEnd(channel, Math.min(position + chunkSize, size), size);
+            if (end - position > Integer.MAX_VALUE) {
+              throw new IOException("Line of more than 2 GB after byte " + position + " of " + file);
+            }
+            chunks.add(new Chunk(channel.map(FileChannel.MapMode.READ_ONLY, position, end - position)));
+            position = end;
+          }
+          pool.invoke(new Parse(chunks, 0, chunks.size()));
+          for (Chunk chunk : chunks) {
+            offset = chunk.replay(offset, handler);
+          }
+        }
+      }
+  }
+
+  /**
+   * @param from where to start looking
+   * @return the position just after the first line break at or after from - 1, or size
+   */
+  private static long lineEnd(FileChannel channel, long from, long size) throws IOException {
+      if (from >= size) {
+        return size;
+      }
+      ByteBuffer buffer = ByteBuffer.allocate(SCAN_SIZE);
+      long position = from - 1;
+      while (position < size) {
+        buffer.clear();
+        int n = channel.read(buffer, position);
+        if (n <= 0) {
+          break;
+        }
+        for (int i = 0; i < n; i++) {
+          if (buffer.get(i) == '\n') {
+            return position + i + 1;
+          }
+        }
+        position += n;
+      }
+      return size;
+  }
+
+  /**
+   * Parse chunks [from, to) by splitting the range in halves
+   */
+  private static class Parse extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final List<Chunk> chunks;
+    private final int from;
+    private final int to;
+
+    Parse(List<Chunk> chunks, int from, int to) {
+        this.chunks = chunks;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from == 1) {
+          chunks.get(from).parse();
+        }
+        else if (to - from > 1) {
+          int middle = (from + to) >>> 1;
+          invokeAll(new Parse(chunks, from, middle), new Parse(chunks, middle, to));
+        }
+    }
+  }
+
+  /**
+   * The lines of one mapped region, parsed with offsets relative to its first character
+   */
+  private static class Chunk implements QaCorpusReader.Handler {
+    private ByteBuffer bytes;
+    private final List<String> scores = new ArrayList<>();
+    private final List<String> sentences = new ArrayList<>();
+    private long[] offsets = new long[64];
+    private long length = 0;
+
+    Chunk(ByteBuffer bytes) {
+        this.bytes = bytes;
+    }
+
+    void parse() {
+        // UTF-8 never decodes to more chars than bytes, so the chunk fits in one pass.
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer chars = CharBuffer.allocate(bytes.remaining());
+        decoder.decode(bytes, chars, true);
+        decoder.flush(chars);
+        // Let the mapping go as soon as the chunk is decoded.
+        bytes = null;
+
+        char[] text = chars.array();
+        int end = chars.position();
+        Line line = new Line(text);
+        int lineStart = 0;
+        for (int i = 0; i <= end; i++) {
+          if (i < end && text[i] != '\n') {
+            continue;
+          }
+          if (i == end && lineStart == end) {
+            break;
+          }
+          line.set(lineStart, i);
+          try {
+            QaCorpusReader.parseLine(line, lineStart, this);
+          } catch (ProcessingException e) {
+            // Recording a line never fails.
+            throw new IllegalStateException(e);
+          }
+          lineStart = i + 1;
+        }
+        length = end;
+    }
+
+    @Override
+    public void question(String sentence, long start, long end) {
+        add(null, sentence, start, end);
+    }
+
+    @Override
+    public void answer(String score, String sentence, long start, long end) {
+        add(score, sentence, start, end);
+    }
+
+    private void add(String score, String sentence, long start, long end) {
+        int i = sentences.size();
+        if (2 * i + 2 > offsets.length) {
+          offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[2 * i] = start;
+        offsets[2 * i + 1] = end;
+        scores.add(score);
+        sentences.add(sentence);
+    }
+
+    /**
+     * Hand the lines to a handler
+     * @param offset the document offset of the first character of the chunk
+     * @return the document offset just after the chunk
+     */
+    long replay(long offset, QaCorpusReader.Handler handler) throws ProcessingException {
+        for (int i = 0; i < sentences.size(); i++) {
+          long start = offset + offsets[2 * i];
+          long end = offset + offsets[2 * i + 1];
+          if (scores.get(i) == null) {
+            handler.question(sentences.get(i), start, end);
+          }
+          else {
+            handler.answer(scores.get(i), sentences.get(i), start, end);
+          }
+        }
+        return offset + length;
+    }
+  }
+
+  /**
+   * A line of a decoded chunk, without copying it
+   */
+  private static class Line implements CharSequence {
+    private final char[] text;
+    private int start;
+    private int end;
+
+    Line(char[] text) {
+        this.text = text;
+    }
+
+    void set(int lineStart, int lineEnd) {
+        start = lineStart;
+        end = lineEnd;
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return text[start + index];
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        return new String(text, start + from, to - from);
+    }
+
+    @Override
+    public String toString() {
+        return new String(text, start, end - start);
+    }
+  }
+}
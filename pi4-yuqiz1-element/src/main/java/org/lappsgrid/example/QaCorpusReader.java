@@ -0,0 +1,96 @@
+package org.lappsgrid.example;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * QaCorpusReader: read "Q question" and "A score answer" lines from a stream
+ * one line at a time, reporting each sentence with its offsets in the document.
+ * Only the current line is held in memory.
+ *
+ */
+public class QaCorpusReader {
+
+  /**
+   * Receives the parsed lines in document order
+   */
+  public interface Handler {
+    void question(String sentence, long start, long end) throws ProcessingException;
+    void answer(String score, String sentence, long start, long end) throws ProcessingException;
+  }
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private final Reader in;
+
+  public QaCorpusReader(Reader in) {
+      this.in = in;
+  }
+
+  /**
+   * Read the whole stream. Blank lines and lines without a sentence are skipped.
+   * @param handler receives every question and answer
+   * @throws IOException if the stream cannot be read
+   * @throws ProcessingException if the handler rejects a line
+   */
+  public void read(Handler handler) throws IOException, ProcessingException {
+      char[] buffer = new char[BUFFER_SIZE];
+      StringBuilder line = new StringBuilder();
+      long offset = 0;
+      long lineStart = 0;
+      int n;
+      while ((n = in.read(buffer)) != -1) {
+        for (int i = 0; i < n; i++) {
+          char c = buffer[i];
+          if (c == '\n') {
+            parseLine(line, lineStart, handler);
+            line.setLength(0);
+            lineStart = offset + i + 1;
+          }
+          else {
+            line.append(c);
+          }
+        }
+        offset += n;
+      }
+      parseLine(line, lineStart, handler);
+  }
+
+  /**
+   * Parse a single line
+   * @param line the line without its terminating newline
+   * @param lineStart document offset of the first character of the line
+   * @param handler receives the question or answer
+   */
+  static void parseLine(CharSequence line, long lineStart, Handler handler) throws ProcessingException {
+      int length = line.length();
+      if (length > 0 && line.charAt(length - 1) == '\r') {
+        length--;
+      }
+      int start = indexOf(line, ' ', 0, length);
+      if (start < 0) {
+        return;
+      }
+      if (start == 1 && line.charAt(0) == 'Q') {
+        handler.question(line.subSequence(start + 1, length).toString(), lineStart + start + 1, lineStart + length);
+      }
+      else {
+        int newstart = indexOf(line, ' ', start + 1, length);
+        if (newstart < 0) {
+          return;
+        }
+        String score = line.subSequence(start + 1, newstart).toString();
+        handler.answer(score, line.subSequence(newstart + 1, length).toString(), lineStart + newstart + 1,
+                lineStart + length);
+      }
+  }
+
+  private static int indexOf(CharSequence s, char c, int from, int to) {
+      for (int i = from; i < to; i++) {
+        if (s.charAt(i) == c) {
+          return i;
+        }
+      }
+      return -1;
+  }
+}
@@ -0,0 +1,110 @@
+package org.lappsgrid.example;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lappsgrid.discriminator.Discriminators.Uri;
+import org.lappsgrid.serialization.lif.Annotation;
+import org.lappsgrid.serialization.lif.Container;
+
+public class ElementAnnotationTest {
+  static final String CORPUS = "Q First question?\nA 1 First answer.\nA 0 Second answer.\n"
+          + "Q Second question?\nA 1 Only answer.\n";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  static Container annotate(boolean corpusMode, String text) throws ProcessingException {
+      Container container = new Container();
+      container.setText(text);
+      return new ElementAnnotation(corpusMode).process(container);
+  }
+
+  static List<String> ids(List<Annotation> annotations) {
+      List<String> ids = new ArrayList<>();
+      for (Annotation a : annotations) {
+        ids.add(a.getId());
+      }
+      return ids;
+  }
+
+  @Test
+  public void annotatesOneQuestionAndItsAnswers() throws Exception {
+      Container container = annotate(false, "Q What?\nA 1 This.\nA 0 That.\n");
+
+      List<Annotation> annotations = container.getView(0).getAnnotations();
+      assertEquals(Arrays.asList("Question", "A1", "A2"), ids(annotations));
+      Annotation answer = annotations.get(1);
+      assertEquals(Uri.SENTENCE, answer.getAtType());
+      assertEquals("Answer", answer.getFeature("Type"));
+      assertEquals("1", answer.getFeature("Score"));
+      assertEquals("This.", answer.getFeature(Uri.SENTENCE));
+      assertEquals(12L, (long) answer.getStart());
+  }
+
+  @Test
+  public void corpusModeNumbersQuestionsAndGroupsAnswers() throws Exception {
+      Container container = annotate(true, CORPUS);
+
+      List<Annotation> annotations = container.getView(0).getAnnotations();
+      assertEquals(Arrays.asList("Q1", "Q1.A1", "Q1.A2", "Q2", "Q2.A1"), ids(annotations));
+      assertEquals(2, QuestionGroups.group(annotations).size());
+      assertEquals("Q2", annotations.get(4).getFeature(QuestionGroups.FEATURE));
+  }
+
+  @Test(expected = ProcessingException.class)
+  public void corpusModeRejectsAnAnswerBeforeAnyQuestion() throws Exception {
+      annotate(true, "A 1 Orphan.\nQ Late?\n");
+  }
+
+  @Test
+  public void configurationNamesTheMode() {
+      assertEquals(ElementAnnotation.class.getName() + "?corpusMode=true",
+              new ElementAnnotation(true).getConfiguration());
+  }
+
+  /**
+   * @return the annotations as they read back from JSON
+   */
+  static Object tree(List<Annotation> annotations) throws Exception {
+      return LifWriter.mapper.readValue(LifWriter.mapper.writeValueAsString(annotations), Object.class);
+  }
+
+  @Test
+  public void ingestedFilesMatchTheirText() throws Exception {
+      File file = folder.newFile("corpus.txt");
+      Files.write(file.toPath(), CORPUS.getBytes(StandardCharsets.UTF_8));
+      ForkJoinPool pool = new ForkJoinPool(2);
+      try {
+        Container ingested = new ElementAnnotation(true).ingest(file, pool);
+
+        assertEquals("", ingested.getText());
+        assertEquals(file.getAbsoluteFile().toURI().toString(),
+                ingested.getMetadata().get(ElementAnnotation.TEXT_SOURCE));
+        Object expected = tree(annotate(true, CORPUS).getView(0).getAnnotations());
+        assertEquals(expected, tree(ingested.getView(0).getAnnotations()));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ElementAnnotation(true).ingest(file, pool, out);
+        Map<?, ?> document = LifWriter.mapper.readValue(out.toByteArray(), Map.class);
+        Map<?, ?> payload = (Map<?, ?>) document.get("payload");
+        Map<?, ?> view = (Map<?, ?>) ((List<?>) payload.get("views")).get(0);
+        assertEquals(expected, view.get("annotations"));
+        assertEquals(ingested.getMetadata(), payload.get("metadata"));
+      } finally {
+        pool.shutdown();
+      }
+  }
+}
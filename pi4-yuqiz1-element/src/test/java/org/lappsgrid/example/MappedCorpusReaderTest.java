@@ -0,0 +1,89 @@
+package org.lappsgrid.example;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedCorpusReaderTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final ForkJoinPool pool = new ForkJoinPool(4);
+
+  @After
+  public void shutdown() {
+      pool.shutdown();
+  }
+
+  /**
+   * A corpus with multi-byte characters, carriage returns, blank and incomplete lines
+   */
+  static String corpus(Random random, int questions) {
+      String[] words = { "who", "Zo\u00eb", "na\u00efve", "\u6771\u4eac", "\ud83d\ude00", "it", "was", "x" };
+      StringBuilder text = new StringBuilder();
+      for (int q = 0; q < questions; q++) {
+        text.append("Q ").append(words[random.nextInt(words.length)]).append("?\n");
+        for (int a = random.nextInt(6); a >= 0; a--) {
+          text.append("A ").append(random.nextInt(2));
+          for (int w = random.nextInt(10); w >= 0; w--) {
+            text.append(' ').append(words[random.nextInt(words.length)]);
+          }
+          text.append(random.nextInt(5) == 0 ? "\r\n" : "\n");
+          if (random.nextInt(10) == 0) {
+            text.append(random.nextBoolean() ? "\n" : "A 1\n");
+          }
+        }
+      }
+      return text.toString();
+  }
+
+  File write(String text) throws IOException {
+      File file = folder.newFile();
+      Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+      return file;
+  }
+
+  @Test
+  public void offsetsMatchTheStreamingReader() throws Exception {
+      Random random = new Random(21);
+      for (int trial = 0; trial < 20; trial++) {
+        String text = corpus(random, 1 + random.nextInt(40));
+        if (random.nextBoolean()) {
+          // No line break at the end
+          text = text.trim();
+        }
+        QaCorpusReaderTest.Recorder expected = new QaCorpusReaderTest.Recorder();
+        new QaCorpusReader(new StringReader(text)).read(expected);
+        File file = write(text);
+        for (int chunkSize : new int[] { 1, 7, 64, MappedCorpusReader.DEFAULT_CHUNK_SIZE }) {
+          QaCorpusReaderTest.Recorder actual = new QaCorpusReaderTest.Recorder();
+          new MappedCorpusReader(file, pool, chunkSize).read(actual);
+          assertEquals("chunk size " + chunkSize, expected.lines, actual.lines);
+        }
+      }
+  }
+
+  @Test
+  public void emptyFileHasNoSentences() throws Exception {
+      QaCorpusReaderTest.Recorder recorder = new QaCorpusReaderTest.Recorder();
+      new MappedCorpusReader(write(""), pool).read(recorder);
+
+      assertEquals(0, recorder.lines.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsAnEmptyChunkSize() {
+      new MappedCorpusReader(new File("corpus.txt"), pool, 0);
+  }
+}
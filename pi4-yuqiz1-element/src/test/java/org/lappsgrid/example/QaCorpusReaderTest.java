@@ -0,0 +1,80 @@
+package org.lappsgrid.example;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class QaCorpusReaderTest {
+
+  /**
+   * Records each sentence as "Q|sentence|start|end" or "A|score|sentence|start|end"
+   */
+  static class Recorder implements QaCorpusReader.Handler {
+    final List<String> lines = new ArrayList<>();
+
+    @Override
+    public void question(String sentence, long start, long end) {
+        lines.add("Q|" + sentence + "|" + start + "|" + end);
+    }
+
+    @Override
+    public void answer(String score, String sentence, long start, long end) {
+        lines.add("A|" + score + "|" + sentence + "|" + start + "|" + end);
+    }
+  }
+
+  static List<String> read(String text) throws IOException, ProcessingException {
+      Recorder recorder = new Recorder();
+      new QaCorpusReader(new StringReader(text)).read(recorder);
+      return recorder.lines;
+  }
+
+  @Test
+  public void reportsSentencesWithDocumentOffsets() throws Exception {
+      String text = "Q Who wrote it?\nA 1 Someone wrote it.\nA 0 Nobody did.";
+
+      List<String> lines = read(text);
+
+      assertEquals(Arrays.asList("Q|Who wrote it?|2|15", "A|1|Someone wrote it.|20|37", "A|0|Nobody did.|42|53"),
+              lines);
+      assertEquals("Someone wrote it.", text.substring(20, 37));
+  }
+
+  @Test
+  public void skipsBlankAndIncompleteLinesAndCarriageReturns() throws Exception {
+      List<String> lines = read("Q Why?\r\n\r\nA\nA 1\nA 1 Because.\r\n");
+
+      assertEquals(Arrays.asList("Q|Why?|2|6", "A|1|Because.|20|28"), lines);
+  }
+
+  @Test
+  public void offsetsSurviveBufferBoundaries() throws Exception {
+      StringBuilder text = new StringBuilder("Q Question?\n");
+      for (int i = 0; i < 2000; i++) {
+        text.append("A ").append(i % 2).append(" answer number ").append(i).append('\n');
+      }
+      final String document = text.toString();
+      final int[] checked = new int[1];
+
+      new QaCorpusReader(new StringReader(document)).read(new QaCorpusReader.Handler() {
+        @Override
+        public void question(String sentence, long start, long end) {
+            assertEquals(sentence, document.substring((int) start, (int) end));
+        }
+
+        @Override
+        public void answer(String score, String sentence, long start, long end) {
+            assertEquals(sentence, document.substring((int) start, (int) end));
+            checked[0]++;
+        }
+      });
+
+      assertEquals(2000, checked[0]);
+  }
+}
@@ -1,37 +1,45 @@
 package org.lappsgrid.example;
 
 import java.text.DecimalFormat;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.lappsgrid.api.ProcessingService;
 import org.lappsgrid.discriminator.Discriminators.Uri;
 import org.lappsgrid.metadata.IOSpecification;
 import org.lappsgrid.metadata.ServiceMetadata;
 import org.lappsgrid.serialization.Data;
-import org.lappsgrid.serialization.DataContainer;
-import org.lappsgrid.serialization.Serializer;
 import org.lappsgrid.serialization.lif.Annotation;
 import org.lappsgrid.serialization.lif.Container;
 import org.lappsgrid.serialization.lif.View;
 import org.lappsgrid.vocabulary.Features;
 /**
- * Evaluation: evaluate the system by checking the precision at N
+ * Evaluation: evaluate the system by checking the precision at N, along with
+ * MAP, MRR and NDCG. Rankings are built by top-K selection, and the metrics
+ * of many questions are summed in a RankingMetrics, so a whole corpus can be
+ * streamed through accumulate() without keeping per-question results.
  * @author yuqizhang
  *
  */
-public class Evaluation implements ProcessingService{
+public class Evaluation extends AbstractProcessingService {
   private String metadata;
+  /**
+   * The cutoff for the Scorelist, MAP, MRR and NDCG; 0 for the whole ranking
+   */
+  private int depth;
 
 
   public Evaluation() {
+      this(0);
+  }
+
+  public Evaluation(int depth) {
+      if (depth < 0) {
+        throw new IllegalArgumentException("depth must not be negative: " + depth);
+      }
       metadata = generateMetadata();
+      this.depth = depth;
   }
 
   /**
@@ -83,105 +91,130 @@ public class Evaluation implements ProcessingService{
       return metadata;
   }
 
+  @Override
+  public String getConfiguration() {
+      return super.getConfiguration() + "?depth=" + depth;
+  }
+
   @Override
   /**
    * Evaluate the system by comparing the output of answer scoring and the face and get precision
    */
-  public String execute(String input) {
-      // Step #1: Parse the input.
-      Data data = Serializer.parse(input, Data.class);
-
-      // Step #2: Check the discriminator
-      final String discriminator = data.getDiscriminator();
-      if (discriminator.equals(Uri.ERROR)) {
-          // Return the input unchanged.
-          return input;
-      }
-
-      // Step #3: Extract the text.
-      Container container = null;
-      if (discriminator.equals(Uri.TEXT)) {
-          container = new Container();
-          container.setText(data.getPayload().toString());
-      }
-      else if (discriminator.equals(Uri.LAPPS)) {
-          container = new Container((Map) data.getPayload());
-      }
-      else {
-          // This is a format we don't accept.
-          String message = String.format("Unsupported discriminator type: %s", discriminator);
-          return new Data<String>(Uri.ERROR, message).asJson();
-      }
-
+  public Container process(Container container) throws ProcessingException {
       // Step #4: Create a new View
       List<View> views = container.getViews();
       int lastview = views.size()-1;
       View oldview = container.getView(lastview);
-      List<Annotation> annotations = oldview.getAnnotations();
-      final HashMap<String, Double> scoremap = new HashMap<>();
-      
+      Map<String, List<Annotation>> scored = QuestionGroups.group(oldview.getAnnotations());
+
+      View firstview = container.getView(0);
+      Map<String, List<Annotation>> elements = QuestionGroups.group(firstview.getAnnotations());
+
       View view = container.newView();
-      Annotation a = view.newAnnotation("Final Result", Uri.TOKEN, 0,0);
-      
-      
-      for(int i = 0; i<annotations.size();i++){
-        Annotation ans = annotations.get(i);
-        
-        double scorei = Double.parseDouble(ans.getFeature("Score"));
-        String answer = ans.getFeature("Group");
-        
-        scoremap.put(answer, scorei);
+
+      // Step #5: Evaluate every question; a corpus also gets the mean of each metric.
+      if (scored.size() == 1) {
+        Map.Entry<String, List<Annotation>> entry = scored.entrySet().iterator().next();
+        Annotation a = view.newAnnotation("Final Result", Uri.TOKEN, 0,0);
+        addMetrics(a, evaluateGroup(entry.getValue(), correctAnswers(elements.get(entry.getKey())), a));
       }
-      
-      
-      List<String> anslist = new ArrayList<>(scoremap.keySet());
-      Collections.sort(anslist, new Comparator<String>(){
-
-        @Override
-        public int compare(String o1, String o2) {
-          return scoremap.get(o2).compareTo(scoremap.get(o1)) ;
+      else {
+        RankingMetrics total = new RankingMetrics();
+        for (Map.Entry<String, List<Annotation>> entry : scored.entrySet()) {
+          Annotation a = view.newAnnotation(entry.getKey() + "-result", Uri.TOKEN, 0, 0);
+          a.addFeature(QuestionGroups.FEATURE, entry.getKey());
+          RankingMetrics metrics = evaluateGroup(entry.getValue(), correctAnswers(elements.get(entry.getKey())), a);
+          addMetrics(a, metrics);
+          total.add(metrics);
         }
-        
-      });
-      DecimalFormat df = new DecimalFormat("#.####");
-      String result = "";
-      for(String ans: anslist){
-        result += df.format(scoremap.get(ans))+" "+ans+" ";
+        Annotation a = view.newAnnotation("Final Result", Uri.TOKEN, 0,0);
+        a.addFeature("Questions", Integer.toString(scored.size()));
+        addMetrics(a, total);
       }
-      result += "\n";
-      a.addFeature("Scorelist", result);
-      View firstview = container.getView(0);
-      List<Annotation> annotations1 = firstview.getAnnotations();
+
+      // Step #6: Update the view's metadata. Each view contains metadata about the
+      // annotations it contains, in particular the name of the tool that produced the
+      // annotations.
+      view.addContains(Uri.TOKEN, this.getClass().getName(), "evluation");
+
+      return container;
+  }
+
+  /**
+   * Add the metrics of every question of a scored document to a running total
+   * without annotating the document
+   * @param container a document processed by AnswerScoring
+   * @param total receives the metrics of each question
+   */
+  public void accumulate(Container container, RankingMetrics total) {
+      List<View> views = container.getViews();
+      Map<String, List<Annotation>> scored = QuestionGroups.group(views.get(views.size() - 1).getAnnotations());
+      Map<String, List<Annotation>> elements = QuestionGroups.group(views.get(0).getAnnotations());
+      for (Map.Entry<String, List<Annotation>> entry : scored.entrySet()) {
+        total.add(evaluateGroup(entry.getValue(), correctAnswers(elements.get(entry.getKey())), null));
+      }
+  }
+
+  private static void addMetrics(Annotation a, RankingMetrics metrics) {
+      a.addFeature("Precision", Double.toString(metrics.getPrecision()));
+      a.addFeature("MAP", Double.toString(metrics.getMap()));
+      a.addFeature("MRR", Double.toString(metrics.getMrr()));
+      a.addFeature("NDCG", Double.toString(metrics.getNdcg()));
+  }
+
+  /**
+   * Collect the ids of the answers marked correct in the element annotations
+   * @param annotations1 the element annotations of one question
+   * @return ids of the correct answers
+   */
+  private Set<String> correctAnswers(List<Annotation> annotations1) {
       Set<String> correctans = new HashSet<>();
+      if (annotations1 == null) {
+        return correctans;
+      }
       for(int i = 0; i<annotations1.size();i++){
         Annotation b = annotations1.get(i);
-        if(b.getFeature("Type").equals("Answer")){
-          if(b.getFeature("Score").equals("1")){
+        if("Answer".equals(b.getFeature("Type"))){
+          if("1".equals(b.getFeature("Score"))){
             correctans.add(b.getId());
           }
         }
       }
-      double precision = 0;
-      for(int i = 0; i<correctans.size();i++){
-        if(correctans.contains(anslist.get(i))){
-          precision++;
-        }
-      }
-      precision = precision/correctans.size();
-      a.addFeature("Precision", Double.toString(precision));
-            
-     
-      
-
-      // Step #6: Update the view's metadata. Each view contains metadata about the
-      // annotations it contains, in particular the name of the tool that produced the
-      // annotations.
-      view.addContains(Uri.TOKEN, this.getClass().getName(), "evluation");
+      return correctans;
+  }
 
-      // Step #7: Create a DataContainer with the result.
-      data = new DataContainer(container);
+  /**
+   * Rank the answers of one question and compute its metrics. Only the top
+   * max(depth, N) answers are ordered, where N is the number of correct answers.
+   * @param annotations the scored answers
+   * @param correctans ids of the correct answers
+   * @param a receives the Scorelist, or null to skip it
+   * @return the metrics of the question
+   */
+  private RankingMetrics evaluateGroup(List<Annotation> annotations, Set<String> correctans, Annotation a) {
+      int count = annotations.size();
+      double[] scores = new double[count];
+      String[] answers = new String[count];
+      boolean[] relevant = new boolean[count];
+      for(int i = 0; i<count;i++){
+        Annotation ans = annotations.get(i);
+        scores[i] = Double.parseDouble(ans.getFeature("Score"));
+        answers[i] = ans.getFeature("Group");
+        relevant[i] = correctans.contains(answers[i]);
+      }
 
-      // Step #8: Serialize the data object and return the JSON.
-      return data.asPrettyJson();
+      int k = depth > 0 ? Math.max(depth, correctans.size()) : count;
+      int[] ranking = TopK.select(scores, count, k);
+      if (a != null) {
+        DecimalFormat df = new DecimalFormat("#.####");
+        StringBuilder result = new StringBuilder();
+        int shown = depth > 0 ? Math.min(depth, ranking.length) : ranking.length;
+        for (int i = 0; i < shown; i++) {
+          result.append(df.format(scores[ranking[i]])).append(' ').append(answers[ranking[i]]).append(' ');
+        }
+        result.append('\n');
+        a.addFeature("Scorelist", result.toString());
+      }
+      return RankingMetrics.of(ranking, relevant, correctans.size(), depth);
   }
 }
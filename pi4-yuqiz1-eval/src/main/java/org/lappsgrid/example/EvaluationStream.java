@@ -0,0 +1,91 @@
+package org.lappsgrid.example;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+import org.lappsgrid.serialization.Data;
+import org.lappsgrid.serialization.lif.Container;
+
+/**
+ * EvaluationStream: aggregate the metrics of every question in a stream of
+ * scored LIF documents and print one summary. Each input holds one or more
+ * documents, e.g. one per line; documents are read and dropped one at a time.
+ *
+ * <pre>
+ * java org.lappsgrid.example.EvaluationStream [-depth K] scored.jsonl ...
+ * </pre>
+ *
+ */
+public class EvaluationStream {
+  private final Evaluation evaluation;
+  private final RankingMetrics total = new RankingMetrics();
+  private long documents = 0;
+
+  /**
+   * @param depth the cutoff for MAP, MRR and NDCG, or 0 for the whole ranking
+   */
+  public EvaluationStream(int depth) {
+      evaluation = new Evaluation(depth);
+  }
+
+  /**
+   * Evaluate every document of a stream
+   * @param in documents processed by AnswerScoring
+   * @throws IOException if the stream cannot be parsed
+   */
+  public void read(InputStream in) throws IOException {
+      Iterator<Data> documents = LifWriter.readAll(in);
+      while (documents.hasNext()) {
+        add(documents.next());
+      }
+  }
+
+  /**
+   * Evaluate one document; documents that are not LIF are skipped
+   * @param data a parsed document
+   */
+  public void add(Data data) {
+      Container container = AbstractProcessingService.toContainer(data);
+      if (container != null && !container.getViews().isEmpty()) {
+        evaluation.accumulate(container, total);
+        documents++;
+      }
+  }
+
+  /**
+   * @return the metrics over every question read so far
+   */
+  public RankingMetrics getMetrics() {
+      return total;
+  }
+
+  /**
+   * @return the number of documents evaluated
+   */
+  public long getDocuments() {
+      return documents;
+  }
+
+  public static void main(String[] args) throws Exception {
+      int depth = 0;
+      int first = 0;
+      if (args.length >= 2 && args[0].equals("-depth")) {
+        depth = Integer.parseInt(args[1]);
+        first = 2;
+      }
+      if (first == args.length) {
+        System.err.println("Usage: EvaluationStream [-depth K] <LIF file>...");
+        System.exit(1);
+      }
+      EvaluationStream stream = new EvaluationStream(depth);
+      for (int i = first; i < args.length; i++) {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(args[i]))) {
+          stream.read(in);
+        }
+      }
+      System.out.println("documents=" + stream.getDocuments() + " " + stream.getMetrics());
+  }
+}
@@ -0,0 +1,278 @@
+package org.lappsgrid.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.lappsgrid.serialization.Data;
+import org.lappsgrid.serialization.lif.Container;
+import org.lappsgrid.serialization.lif.View;
+
+/**
+ * ParameterSweep: score and evaluate many scoring configurations over the
+ * same n-gram documents in one pass. Each document is parsed once and handed
+ * to a GridProcessor, which appends one view per configuration and shares
+ * the work they have in common (ScoringGrid vectorizes each question and
+ * answer once per n-gram order). The documents of a batch are processed in
+ * parallel, and the metrics of every configuration are kept as in
+ * EvaluationStream.
+ *
+ * A batch counts for every configuration or for none: if any configuration
+ * fails on any of its documents, flush() throws and no configuration's
+ * metrics include the batch, so every row of the table covers the same
+ * documents.
+ *
+ */
+public class ParameterSweep implements Closeable {
+  private static final int BATCH_SIZE = 64;
+
+  private final GridProcessor grid;
+  private final List<String> configurations;
+  private final Evaluation evaluation;
+  private final RankingMetrics[] totals;
+  private final BatchExecutor executor;
+  private final List<Container> batch = new ArrayList<>(BATCH_SIZE);
+  private long documents = 0;
+
+  /**
+   * @param grid the scoring configurations to compare
+   * @param depth the cutoff for MAP, MRR and NDCG, or 0 for the whole ranking
+   * @param threads the number of documents scored at once
+   */
+  public ParameterSweep(GridProcessor grid, int depth, int threads) {
+      this.grid = grid;
+      configurations = Collections.unmodifiableList(new ArrayList<>(grid.getConfigurations()));
+      if (configurations.isEmpty()) {
+        throw new IllegalArgumentException("No configurations to sweep");
+      }
+      evaluation = new Evaluation(depth);
+      totals = new RankingMetrics[configurations.size()];
+      for (int i = 0; i < totals.length; i++) {
+        totals[i] = new RankingMetrics();
+      }
+      executor = new BatchExecutor(threads);
+  }
+
+  /**
+   * Compare stages that share no work; each runs on its own copy of the view
+   * list, must append its scores as the last view and must leave the views
+   * it was given untouched
+   * @param configurations the scoring stages to compare
+   * @param depth the cutoff for MAP, MRR and NDCG, or 0 for the whole ranking
+   * @param threads the number of documents scored at once
+   */
+  public ParameterSweep(List<? extends ContainerProcessor> configurations, int depth, int threads) {
+      this(new Separate(configurations), depth, threads);
+  }
+
+  /**
+   * Sweep every document of a stream
+   * @param in documents processed by NgramAnnotation
+   * @throws IOException if the stream cannot be parsed
+   * @throws ProcessingException if a configuration fails on a document
+   */
+  public void read(InputStream in) throws IOException, ProcessingException {
+      Iterator<Data> documents = LifWriter.readAll(in);
+      while (documents.hasNext()) {
+        add(documents.next());
+      }
+      flush();
+  }
+
+  /**
+   * Queue one document; documents that are not LIF are skipped
+   * @param data a parsed document
+   * @throws ProcessingException if a configuration fails on the batch it completes
+   */
+  public void add(Data data) throws ProcessingException {
+      Container container = AbstractProcessingService.toContainer(data);
+      if (container == null || container.getViews().isEmpty()) {
+        return;
+      }
+      // Decode lazy views now; the configurations read them concurrently.
+      for (View view : container.getViews()) {
+        view.getAnnotations();
+      }
+      batch.add(container);
+      if (batch.size() == BATCH_SIZE) {
+        flush();
+      }
+  }
+
+  /**
+   * Score and evaluate the queued documents with every configuration
+   * @throws ProcessingException if a configuration fails on one of them; the
+   *         batch is then counted for no configuration
+   */
+  public void flush() throws ProcessingException {
+      if (batch.isEmpty()) {
+        return;
+      }
+      final List<Container> containers = new ArrayList<>(batch);
+      batch.clear();
+      List<Callable<RankingMetrics[]>> tasks = new ArrayList<>(containers.size());
+      for (final Container container : containers) {
+        tasks.add(new Callable<RankingMetrics[]>() {
+          @Override
+          public RankingMetrics[] call() throws ProcessingException {
+              return evaluate(container);
+          }
+        });
+      }
+      final RankingMetrics[] sums = new RankingMetrics[totals.length];
+      for (int i = 0; i < sums.length; i++) {
+        sums[i] = new RankingMetrics();
+      }
+      final Throwable[] failure = new Throwable[1];
+      try {
+        executor.execute(tasks.iterator(), new BatchExecutor.Handler<RankingMetrics[]>() {
+          @Override
+          public void result(int index, RankingMetrics[] result) {
+              for (int i = 0; i < sums.length; i++) {
+                sums[i].add(result[i]);
+              }
+          }
+
+          @Override
+          public void failure(int index, Throwable cause) {
+              if (failure[0] == null) {
+                failure[0] = new ProcessingException("Document " + (documents + index) + " of the sweep failed: "
+                        + cause.getMessage(), cause);
+              }
+          }
+        });
+      } catch (IOException e) {
+        // The handler does no I/O.
+        throw new IllegalStateException(e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ProcessingException("Interrupted while sweeping", e);
+      }
+      if (failure[0] != null) {
+        throw (ProcessingException) failure[0];
+      }
+      for (int i = 0; i < totals.length; i++) {
+        totals[i].add(sums[i]);
+      }
+      documents += containers.size();
+  }
+
+  /**
+   * Score one document with the grid and evaluate each configuration's view
+   * @return the metrics of the document, one per configuration
+   */
+  private RankingMetrics[] evaluate(Container container) throws ProcessingException {
+      int base = container.getViews().size();
+      Container scored = grid.process(copy(container));
+      List<View> views = scored.getViews();
+      if (views.size() != base + totals.length) {
+        throw new ProcessingException("Expected " + totals.length + " views from the grid but got "
+                + (views.size() - base));
+      }
+      RankingMetrics[] metrics = new RankingMetrics[totals.length];
+      for (int i = 0; i < metrics.length; i++) {
+        // The input views and this configuration's view, as if it had run alone
+        Container single = copy(container);
+        single.getViews().add(views.get(base + i));
+        metrics[i] = new RankingMetrics();
+        evaluation.accumulate(single, metrics[i]);
+      }
+      return metrics;
+  }
+
+  /**
+   * A container sharing the views of another but with a list of its own
+   */
+  private static Container copy(Container container) {
+      Container copy = new Container();
+      copy.setText(container.getText());
+      copy.setLanguage(container.getLanguage());
+      copy.setMetadata(container.getMetadata());
+      copy.setViews(new ArrayList<View>(container.getViews()));
+      return copy;
+  }
+
+  private static String name(ContainerProcessor configuration) {
+      return configuration instanceof AbstractProcessingService
+              ? ((AbstractProcessingService) configuration).getConfiguration() : configuration.getClass().getName();
+  }
+
+  /**
+   * A grid of independent stages, each run on its own copy of the document
+   */
+  private static final class Separate implements GridProcessor {
+    private final List<ContainerProcessor> stages;
+    private final List<String> names;
+
+    Separate(List<? extends ContainerProcessor> stages) {
+        this.stages = new ArrayList<ContainerProcessor>(stages);
+        List<String> names = new ArrayList<>(stages.size());
+        for (ContainerProcessor stage : stages) {
+          names.add(name(stage));
+        }
+        this.names = Collections.unmodifiableList(names);
+    }
+
+    @Override
+    public List<String> getConfigurations() {
+        return names;
+    }
+
+    @Override
+    public Container process(Container container) throws ProcessingException {
+        List<View> scores = new ArrayList<>(stages.size());
+        for (ContainerProcessor stage : stages) {
+          List<View> views = stage.process(copy(container)).getViews();
+          scores.add(views.get(views.size() - 1));
+        }
+        container.getViews().addAll(scores);
+        return container;
+    }
+  }
+
+  /**
+   * @return the names of the configurations in grid order
+   */
+  public List<String> getConfigurations() {
+      return configurations;
+  }
+
+  /**
+   * @param i a configuration
+   * @return its metrics over every question swept so far
+   */
+  public RankingMetrics getMetrics(int i) {
+      return totals[i];
+  }
+
+  /**
+   * @return the number of documents swept
+   */
+  public long getDocuments() {
+      return documents;
+  }
+
+  /**
+   * @return one tab-separated line per configuration, after a header line
+   */
+  public String table() {
+      StringBuilder buffer = new StringBuilder("configuration\tquestions\tP@R\tMAP\tMRR\tNDCG\n");
+      for (int i = 0; i < totals.length; i++) {
+        RankingMetrics m = totals[i];
+        buffer.append(configurations.get(i))
+                .append(String.format("\t%d\t%.4f\t%.4f\t%.4f\t%.4f%n", m.getQuestions(), m.getPrecision(),
+                        m.getMap(), m.getMrr(), m.getNdcg()));
+      }
+      return buffer.toString();
+  }
+
+  @Override
+  public void close() {
+      executor.close();
+  }
+}
@@ -0,0 +1,126 @@
+package org.lappsgrid.example;
+
+/**
+ * RankingMetrics: running sums of P@R, average precision, reciprocal rank and
+ * NDCG over any number of questions. Only the sums are kept, so memory does
+ * not grow with the corpus, and two aggregates can be merged with add().
+ *
+ * P@R is the precision at R, R being the number of correct answers of the
+ * question; the other metrics are cut off at a fixed depth, or cover the whole
+ * ranking when the depth is 0. Questions without a correct answer are left
+ * out of the means.
+ *
+ */
+public class RankingMetrics {
+  private long questions = 0;
+  private double precision = 0;
+  private double averagePrecision = 0;
+  private double reciprocalRank = 0;
+  private double ndcg = 0;
+
+  /**
+   * Evaluate one ranked question
+   * @param ranking answer indices, best first; must hold at least min(max(R, depth), answers) entries
+   * @param relevant relevant[i] is true if answer i is correct
+   * @param relevantCount R, the number of correct answers
+   * @param depth the cutoff for MAP, MRR and NDCG, or 0 for the whole ranking
+   * @return the metrics of this question alone
+   */
+  public static RankingMetrics of(int[] ranking, boolean[] relevant, int relevantCount, int depth) {
+      RankingMetrics m = new RankingMetrics();
+      if (relevantCount == 0) {
+        return m;
+      }
+      int limit = depth > 0 ? Math.min(depth, ranking.length) : ranking.length;
+      int hits = 0;
+      double ap = 0;
+      double rr = 0;
+      double dcg = 0;
+      int precisionHits = 0;
+      int end = Math.max(limit, Math.min(relevantCount, ranking.length));
+      for (int i = 0; i < end; i++) {
+        if (!relevant[ranking[i]]) {
+          continue;
+        }
+        if (i < relevantCount) {
+          precisionHits++;
+        }
+        if (i < limit) {
+          hits++;
+          ap += (double) hits / (i + 1);
+          if (rr == 0) {
+            rr = 1.0 / (i + 1);
+          }
+          dcg += 1 / log2(i + 2);
+        }
+      }
+      double idcg = 0;
+      int ideal = Math.min(relevantCount, limit);
+      for (int i = 0; i < ideal; i++) {
+        idcg += 1 / log2(i + 2);
+      }
+      m.questions = 1;
+      m.precision = (double) precisionHits / relevantCount;
+      m.averagePrecision = ap / (depth > 0 ? Math.min(relevantCount, depth) : relevantCount);
+      m.reciprocalRank = rr;
+      m.ndcg = idcg > 0 ? dcg / idcg : 0;
+      return m;
+  }
+
+  /**
+   * Fold another aggregate into this one
+   * @param other the metrics of more questions
+   */
+  public void add(RankingMetrics other) {
+      questions += other.questions;
+      precision += other.precision;
+      averagePrecision += other.averagePrecision;
+      reciprocalRank += other.reciprocalRank;
+      ndcg += other.ndcg;
+  }
+
+  /**
+   * @return the number of questions with at least one correct answer
+   */
+  public long getQuestions() {
+      return questions;
+  }
+
+  /**
+   * @return mean P@R
+   */
+  public double getPrecision() {
+      return precision / questions;
+  }
+
+  /**
+   * @return mean average precision
+   */
+  public double getMap() {
+      return averagePrecision / questions;
+  }
+
+  /**
+   * @return mean reciprocal rank
+   */
+  public double getMrr() {
+      return reciprocalRank / questions;
+  }
+
+  /**
+   * @return mean NDCG with binary relevance
+   */
+  public double getNdcg() {
+      return ndcg / questions;
+  }
+
+  private static double log2(int x) {
+      return Math.log(x) / Math.log(2);
+  }
+
+  @Override
+  public String toString() {
+      return String.format("questions=%d P@R=%.4f MAP=%.4f MRR=%.4f NDCG=%.4f", questions, getPrecision(),
+              getMap(), getMrr(), getNdcg());
+  }
+}
@@ -0,0 +1,86 @@
+package org.lappsgrid.example;
+
+/**
+ * TopK: select the indices of the k highest scores without sorting the rest.
+ * A binary min-heap of k indices is kept while scanning, so the cost is
+ * O(n log k) and only the selection is ordered. Ties keep the earlier index first.
+ *
+ */
+public class TopK {
+
+  private TopK() {
+  }
+
+  /**
+   * @param scores the scores
+   * @param count number of scores in use
+   * @param k how many to keep
+   * @return the indices of the min(k, count) highest scores, best first
+   */
+  public static int[] select(double[] scores, int count, int k) {
+      int size = Math.min(k, count);
+      int[] heap = new int[size];
+      if (size == 0) {
+        return heap;
+      }
+      for (int i = 0; i < size; i++) {
+        heap[i] = i;
+        siftUp(heap, i, scores);
+      }
+      for (int i = size; i < count; i++) {
+        // heap[0] is the worst of the selection.
+        if (worse(heap[0], i, scores)) {
+          heap[0] = i;
+          siftDown(heap, 0, size, scores);
+        }
+      }
+      // Pop the worst to the back until the array is ordered best first.
+      for (int end = size - 1; end > 0; end--) {
+        int worst = heap[0];
+        heap[0] = heap[end];
+        heap[end] = worst;
+        siftDown(heap, 0, end, scores);
+      }
+      return heap;
+  }
+
+  /**
+   * @return true if index a ranks below index b
+   */
+  private static boolean worse(int a, int b, double[] scores) {
+      int c = Double.compare(scores[a], scores[b]);
+      return c < 0 || (c == 0 && a > b);
+  }
+
+  private static void siftUp(int[] heap, int i, double[] scores) {
+      int item = heap[i];
+      while (i > 0) {
+        int parent = (i - 1) >>> 1;
+        if (!worse(item, heap[parent], scores)) {
+          break;
+        }
+        heap[i] = heap[parent];
+        i = parent;
+      }
+      heap[i] = item;
+  }
+
+  private static void siftDown(int[] heap, int i, int size, double[] scores) {
+      int item = heap[i];
+      while (true) {
+        int child = 2 * i + 1;
+        if (child >= size) {
+          break;
+        }
+        if (child + 1 < size && worse(heap[child + 1], heap[child], scores)) {
+          child++;
+        }
+        if (!worse(heap[child], item, scores)) {
+          break;
+        }
+        heap[i] = heap[child];
+        i = child;
+      }
+      heap[i] = item;
+  }
+}
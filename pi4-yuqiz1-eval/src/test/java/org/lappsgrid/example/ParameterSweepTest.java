@@ -0,0 +1,123 @@
+package org.lappsgrid.example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.lappsgrid.discriminator.Discriminators.Uri;
+import org.lappsgrid.serialization.Data;
+import org.lappsgrid.serialization.DataContainer;
+import org.lappsgrid.serialization.lif.Annotation;
+import org.lappsgrid.serialization.lif.Container;
+import org.lappsgrid.serialization.lif.View;
+
+public class ParameterSweepTest {
+
+  /**
+   * Scores one answer of every question 1 and the others 0, and fails on
+   * documents whose text is "fail"
+   */
+  static class Ranker implements ContainerProcessor {
+    private final String preferred;
+
+    Ranker(String preferred) {
+        this.preferred = preferred;
+    }
+
+    @Override
+    public Container process(Container container) throws ProcessingException {
+        if ("fail".equals(container.getText())) {
+          throw new ProcessingException("Cannot score " + preferred);
+        }
+        View view = container.newView();
+        for (Annotation element : container.getView(0).getAnnotations()) {
+          if (!"Answer".equals(element.getFeature("Type"))) {
+            continue;
+          }
+          Annotation a = view.newAnnotation(element.getId() + "-score", Uri.TOKEN, 0, 0);
+          a.addFeature("Group", element.getId());
+          a.addFeature("Question", element.getFeature("Question"));
+          a.addFeature("Score", element.getId().endsWith(preferred) ? "1" : "0");
+        }
+        return container;
+    }
+  }
+
+  /**
+   * One question whose first answer is correct
+   */
+  static Data document(String text) {
+      Container container = new Container();
+      container.setText(text);
+      View view = container.newView();
+      Annotation q = view.newAnnotation("Q1", Uri.SENTENCE, 0, 0);
+      q.addFeature("Type", "Question");
+      q.addFeature("Question", "Q1");
+      for (int i = 1; i <= 3; i++) {
+        Annotation a = view.newAnnotation("Q1.A" + i, Uri.SENTENCE, 0, 0);
+        a.addFeature("Type", "Answer");
+        a.addFeature("Score", i == 1 ? "1" : "0");
+        a.addFeature("Question", "Q1");
+      }
+      return new DataContainer(container);
+  }
+
+  static ParameterSweep sweep() {
+      List<Ranker> configurations = Arrays.asList(new Ranker("A1"), new Ranker("A3"));
+      return new ParameterSweep(configurations, 0, 2);
+  }
+
+  @Test
+  public void evaluatesEveryConfigurationOnEveryDocument() throws Exception {
+      try (ParameterSweep sweep = sweep()) {
+        for (int i = 0; i < 5; i++) {
+          sweep.add(document("doc"));
+        }
+        sweep.flush();
+
+        assertEquals(5, sweep.getDocuments());
+        assertEquals(5, sweep.getMetrics(0).getQuestions());
+        assertEquals(1, sweep.getMetrics(0).getMrr(), 1e-12);
+        // The correct answer ties with A2 behind A3 and keeps its place before A2.
+        assertEquals(0.5, sweep.getMetrics(1).getMrr(), 1e-12);
+        assertEquals(2, sweep.getConfigurations().size());
+        assertEquals(3, sweep.table().split("\n").length);
+      }
+  }
+
+  @Test
+  public void aFailedBatchCountsForNoConfiguration() throws Exception {
+      try (ParameterSweep sweep = sweep()) {
+        sweep.add(document("doc"));
+        sweep.add(document("fail"));
+        sweep.add(document("doc"));
+        try {
+          sweep.flush();
+          throw new AssertionError("The failure was not reported");
+        } catch (ProcessingException e) {
+          assertTrue(e.getMessage(), e.getMessage().startsWith("Document 1 of the sweep failed"));
+        }
+        assertEquals(0, sweep.getDocuments());
+        assertEquals(0, sweep.getMetrics(0).getQuestions());
+        assertEquals(0, sweep.getMetrics(1).getQuestions());
+
+        sweep.add(document("doc"));
+        sweep.flush();
+        assertEquals(1, sweep.getDocuments());
+        assertEquals(1, sweep.getMetrics(1).getQuestions());
+      }
+  }
+
+  @Test
+  public void documentsWithoutViewsAreSkipped() throws Exception {
+      try (ParameterSweep sweep = sweep()) {
+        sweep.add(new Data<String>(Uri.TEXT, "plain text"));
+        sweep.flush();
+
+        assertEquals(0, sweep.getDocuments());
+      }
+  }
+}
@@ -0,0 +1,60 @@
+package org.lappsgrid.example;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class RankingMetricsTest {
+  static final double DELTA = 1e-12;
+
+  static double log2(int x) {
+      return Math.log(x) / Math.log(2);
+  }
+
+  @Test
+  public void metricsOfOneRanking() {
+      // Answers 1 and 3 are correct and ranked second and third.
+      boolean[] relevant = { false, true, false, true };
+      RankingMetrics m = RankingMetrics.of(new int[] { 0, 1, 3, 2 }, relevant, 2, 0);
+
+      assertEquals(1, m.getQuestions());
+      assertEquals(0.5, m.getPrecision(), DELTA);
+      assertEquals((1.0 / 2 + 2.0 / 3) / 2, m.getMap(), DELTA);
+      assertEquals(0.5, m.getMrr(), DELTA);
+      assertEquals((1 / log2(3) + 1 / log2(4)) / (1 + 1 / log2(3)), m.getNdcg(), DELTA);
+  }
+
+  @Test
+  public void depthCutsOffTheRanking() {
+      boolean[] relevant = { false, true, false, true };
+      RankingMetrics m = RankingMetrics.of(new int[] { 0, 1, 3, 2 }, relevant, 2, 2);
+
+      // P@R is not cut off; the other metrics only see the first two answers.
+      assertEquals(0.5, m.getPrecision(), DELTA);
+      assertEquals((1.0 / 2) / 2, m.getMap(), DELTA);
+      assertEquals(0.5, m.getMrr(), DELTA);
+      assertEquals((1 / log2(3)) / (1 + 1 / log2(3)), m.getNdcg(), DELTA);
+  }
+
+  @Test
+  public void perfectRankingScoresOne() {
+      RankingMetrics m = RankingMetrics.of(new int[] { 2, 0, 1 }, new boolean[] { true, false, true }, 2, 0);
+
+      assertEquals(1, m.getPrecision(), DELTA);
+      assertEquals(1, m.getMap(), DELTA);
+      assertEquals(1, m.getMrr(), DELTA);
+      assertEquals(1, m.getNdcg(), DELTA);
+  }
+
+  @Test
+  public void questionsWithoutCorrectAnswersAreLeftOut() {
+      RankingMetrics total = new RankingMetrics();
+      total.add(RankingMetrics.of(new int[] { 0, 1 }, new boolean[] { true, false }, 1, 0));
+      total.add(RankingMetrics.of(new int[] { 0, 1 }, new boolean[] { false, false }, 0, 0));
+      total.add(RankingMetrics.of(new int[] { 0, 1 }, new boolean[] { false, true }, 1, 0));
+
+      assertEquals(2, total.getQuestions());
+      assertEquals(0.5, total.getPrecision(), DELTA);
+      assertEquals(0.75, total.getMrr(), DELTA);
+  }
+}
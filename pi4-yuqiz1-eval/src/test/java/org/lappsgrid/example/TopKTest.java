@@ -0,0 +1,57 @@
+package org.lappsgrid.example;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TopKTest {
+
+  /**
+   * The first k indices of a stable sort by descending score
+   */
+  static int[] sorted(final double[] scores, int count, int k) {
+      List<Integer> indices = new ArrayList<>();
+      for (int i = 0; i < count; i++) {
+        indices.add(i);
+      }
+      Collections.sort(indices, new Comparator<Integer>() {
+        @Override
+        public int compare(Integer a, Integer b) {
+            return Double.compare(scores[b], scores[a]);
+        }
+      });
+      int[] top = new int[Math.min(k, count)];
+      for (int i = 0; i < top.length; i++) {
+        top[i] = indices.get(i);
+      }
+      return top;
+  }
+
+  @Test
+  public void matchesAStableSort() {
+      Random random = new Random(3);
+      for (int trial = 0; trial < 2000; trial++) {
+        double[] scores = new double[random.nextInt(40)];
+        for (int i = 0; i < scores.length; i++) {
+          // Few distinct values, so ties are common.
+          scores[i] = random.nextInt(5) / 4.0;
+        }
+        int count = scores.length == 0 ? 0 : random.nextInt(scores.length + 1);
+        int k = random.nextInt(12);
+        assertArrayEquals(sorted(scores, count, k), TopK.select(scores, count, k));
+      }
+  }
+
+  @Test
+  public void keepsEverythingWhenKExceedsTheCount() {
+      assertArrayEquals(new int[] { 1, 2, 0 }, TopK.select(new double[] { 0.1, 0.9, 0.5, 1.0 }, 3, 10));
+      assertEquals(0, TopK.select(new double[] { 1 }, 1, 0).length);
+  }
+}
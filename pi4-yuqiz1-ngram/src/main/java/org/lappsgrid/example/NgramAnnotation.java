@@ -1,16 +1,14 @@
 package org.lappsgrid.example;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import org.lappsgrid.api.ProcessingService;
 import org.lappsgrid.discriminator.Discriminators.Uri;
 import org.lappsgrid.metadata.IOSpecification;
 import org.lappsgrid.metadata.ServiceMetadata;
 import org.lappsgrid.serialization.Data;
-import org.lappsgrid.serialization.DataContainer;
-import org.lappsgrid.serialization.Serializer;
 import org.lappsgrid.serialization.lif.Annotation;
 import org.lappsgrid.serialization.lif.Container;
 import org.lappsgrid.serialization.lif.View;
@@ -18,18 +16,77 @@ import org.lappsgrid.vocabulary.Features;
 
 
 /**
- * NgramAnnotation: annotate 1-, 2- and 3-grams consecutive terms in the question and answers
+ * NgramAnnotation: annotate 1- to N-grams (3 by default) of consecutive terms in the question and answers
+ *
+ * In packed mode each order is written as "n-GramIds", the n-grams as
+ * TermDictionary.pack() tuples, and "n-GramCounts" instead of the "n-Gram"
+ * map, with the terms in the "terms" metadata of the view. When the token view
+ * carries term ids they are counted directly and no word is hashed again.
+ *
+ * In approximate mode an answer with more than maxExact distinct n-grams of
+ * some order is written as one "n-GramSketch" CountMinSketch per order, so
+ * memory per answer is bounded by the sketch size. Questions are always
+ * counted exactly.
  * @author yuqizhang
  *
  */
-public class NgramAnnotation implements ProcessingService{
+public class NgramAnnotation extends AbstractProcessingService {
   private String metadata;
+  /**
+   * The highest n-gram order to annotate
+   */
+  private int maxN;
+  private boolean packed;
+  private int maxExact;
+  private double epsilon;
+  private double delta;
+  private Tokenizer tokenizer = new PunctuationTokenizer();
 
 /**
  * NgramAnnotation
  */
   public NgramAnnotation() {
+      this(3);
+  }
+
+  public NgramAnnotation(int maxN) {
+      this(maxN, false);
+  }
+
+  /**
+   * @param maxN the highest n-gram order to annotate
+   * @param packed write packed id tuples instead of n-gram maps; needs maxN &lt;= TermDictionary.MAX_ORDER
+   */
+  public NgramAnnotation(int maxN, boolean packed) {
+      this(maxN, packed, 0, 0, 0);
+  }
+
+  /**
+   * @param maxN the highest n-gram order to annotate
+   * @param packed write packed id tuples instead of n-gram maps; needs maxN &lt;= TermDictionary.MAX_ORDER
+   * @param maxExact the most distinct n-grams of one order an answer may have before it is sketched, or 0 for none
+   * @param epsilon the error bound of a sketch relative to the n-grams in the answer, e.g. 0.001
+   * @param delta the probability of exceeding it, e.g. 0.01
+   */
+  public NgramAnnotation(int maxN, boolean packed, int maxExact, double epsilon, double delta) {
+      if (maxN < 1) {
+        throw new IllegalArgumentException("maxN must be at least 1: " + maxN);
+      }
+      if (packed && maxN > TermDictionary.MAX_ORDER) {
+        throw new IllegalArgumentException("Packed n-grams support at most order " + TermDictionary.MAX_ORDER);
+      }
+      if (maxExact < 0) {
+        throw new IllegalArgumentException("maxExact must not be negative: " + maxExact);
+      }
+      if (maxExact > 0) {
+        CountMinSketch.bytes(epsilon, delta);
+      }
       metadata = generateMetadata();
+      this.maxN = maxN;
+      this.packed = packed;
+      this.maxExact = maxExact;
+      this.epsilon = epsilon;
+      this.delta = delta;
   }
   /**
    * Generate Metadata
@@ -80,91 +137,134 @@ public class NgramAnnotation implements ProcessingService{
       return metadata;
   }
 
+  @Override
+  public String getConfiguration() {
+      return super.getConfiguration() + "?maxN=" + maxN + (packed ? "&packed=true" : "")
+              + (maxExact > 0 ? "&maxExact=" + maxExact + "&epsilon=" + epsilon + "&delta=" + delta : "");
+  }
+
   @Override
   /**
-   * Annotate n-gram tokens from the original question and answers in view 1
+   * Annotate n-gram tokens from the original question and answers in view 1,
+   * using the token view when one is present
    */
-  public String execute(String input) {
-      // Step #1: Parse the input.
-      Data data = Serializer.parse(input, Data.class);
-
-      // Step #2: Check the discriminator
-      final String discriminator = data.getDiscriminator();
-      if (discriminator.equals(Uri.ERROR)) {
-          // Return the input unchanged.
-          return input;
-      }
-
-      // Step #3: Extract the text.
-      Container container = null;
-      if (discriminator.equals(Uri.TEXT)) {
-          container = new Container();
-          container.setText(data.getPayload().toString());
-      }
-      else if (discriminator.equals(Uri.LAPPS)) {
-          container = new Container((Map) data.getPayload());
-      }
-      else {
-          // This is a format we don't accept.
-          String message = String.format("Unsupported discriminator type: %s", discriminator);
-          return new Data<String>(Uri.ERROR, message).asJson();
-      }
-
+  public Container process(Container container) throws ProcessingException {
       View firstview = container.getView(0);
       List<Annotation> annotations = firstview.getAnnotations();
-      
+
       // Step #4: Create a new View
       View view = container.newView();
 
+      // Step #5: Count all orders of every sentence in one pass over its tokens.
+      // Use the term ids or words of the token view when TokenAnnotation has run,
+      // otherwise tokenize the sentence text.
+      View tokenView = tokenView(container);
+      List<?> terms = tokenView == null ? null : (List<?>) tokenView.getMetadata().get(TermDictionary.METADATA);
+      Map<String, List<Object>> words = tokenView == null ? null
+              : tokenFeatures(tokenView, terms != null ? "TermId" : Features.Token.WORD);
+      final NgramCounter counter = new NgramCounter(maxN,
+              terms != null ? TermDictionary.fromList(terms) : new TermDictionary(), maxExact, epsilon, delta);
+      Tokenizer.Handler handler = new Tokenizer.Handler() {
+        @Override
+        public void token(int start, int end, char[] word, int length) {
+            counter.add(word, length);
+        }
+      };
       int id = -1;
       for(int i = 0; i < annotations.size(); i++){
         Annotation temp = annotations.get(i);
         Annotation a = view.newAnnotation(temp.getId()+"-ngram" + (++id), Uri.SENTENCE, temp.getStart(),
                 temp.getEnd());
-        String ques = temp.getFeature(Uri.SENTENCE);
-        String[] words = ques.trim().split("\\s+");
-        
-        for(int t = 0; t<3; t++){
-          HashMap<String, Integer> count = new HashMap<>();
-          int start = 0;
-          for(int z = 0; z<words.length-t;z++){
-          
-            String word = words[z];
-            String nextword = words[z+t];
-            start = ques.indexOf(word, start);
-            int end = ques.indexOf(nextword, start)+nextword.length();
-            String content = ques.substring(start, end);
-            content = content.replaceAll("[,.?!;:]", "");
-            if(count.containsKey(content)){
-              int tempcount = count.get(content);
-              count.put(content, tempcount+1);
+        counter.reset(!"Question".equals(temp.getFeature("Type")));
+        if (words != null) {
+          List<Object> tokens = words.get(temp.getId());
+          if (tokens != null && terms != null) {
+            for (Object termId : tokens) {
+              // Tokens that normalize to nothing have no id and are skipped, as by add().
+              if (termId != null) {
+                counter.addId(((Number) termId).intValue());
+              }
             }
-            else{
-              count.put(content, 1);
+          }
+          else if (tokens != null) {
+            for (Object word : tokens) {
+              counter.add(word.toString());
             }
-            
           }
-          a.addFeature((t+1)+"-Gram", count);
-          
-          
+        }
+        else {
+          String ques = temp.getFeature(Uri.SENTENCE);
+          if (ques != null) {
+            tokenizer.tokenize(ques, 0, handler);
+          }
+        }
+        for (int n = 1; n <= maxN; n++) {
+          if (counter.isApproximate()) {
+            a.addFeature(n + "-GramSketch", counter.sketch(n).toMap());
+          }
+          else if (packed) {
+            a.addFeature(n + "-GramIds", counter.packed(n));
+            a.addFeature(n + "-GramCounts", counter.counts(n));
+          }
+          else {
+            a.addFeature(n + "-Gram", counter.toMap(n));
+          }
         }
         a.addFeature("Group", temp.getId());
+        a.addFeature("Type", temp.getFeature("Type"));
+        if (temp.getFeature("Question") != null) {
+          a.addFeature("Question", temp.getFeature("Question"));
+        }
       }
-      
-     
-          
-       
-      
 
       // Step #6: Update the view's metadata. Each view contains metadata about the
       // annotations it contains, in particular the name of the tool that produced the
       // annotations.
       view.addContains(Uri.SENTENCE, this.getClass().getName(), "ngramannotation");
+      if (packed) {
+        view.getMetadata().put(TermDictionary.METADATA, counter.getTerms().toList());
+      }
 
-      // Step #7: Create a DataContainer with the result.
-      data = new DataContainer(container);
+      return container;
+  }
 
-      // Step #8: Serialize the data object and return the JSON.
-      return data.asPrettyJson();
+  /**
+   * Find the token view produced by TokenAnnotation
+   * @param container the document
+   * @return the last view of word tokens, or null if there is none
+   */
+  private static View tokenView(Container container) {
+      List<View> views = container.getViews();
+      for (int v = views.size() - 1; v > 0; v--) {
+        List<Annotation> tokens = views.get(v).getAnnotations();
+        if (tokens.isEmpty()) {
+          continue;
+        }
+        Annotation first = tokens.get(0);
+        if (Uri.TOKEN.equals(first.getAtType()) && first.getFeature(Features.Token.WORD) != null) {
+          return views.get(v);
+        }
+      }
+      return null;
+  }
+
+  /**
+   * Collect a feature of every token, grouped by the sentence the tokens belong to
+   * @param tokenView the token view
+   * @param feature Features.Token.WORD or "TermId"
+   * @return sentence id to feature values in token order
+   */
+  private static Map<String, List<Object>> tokenFeatures(View tokenView, String feature) {
+      Map<String, List<Object>> values = new HashMap<>();
+      for (Annotation token : tokenView.getAnnotations()) {
+        String group = token.getFeature("Group");
+        List<Object> list = values.get(group);
+        if (list == null) {
+          list = new ArrayList<>();
+          values.put(group, list);
+        }
+        list.add(token.getFeatures().get(feature));
+      }
+      return values;
   }
 }
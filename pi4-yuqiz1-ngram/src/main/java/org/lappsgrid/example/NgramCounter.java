@@ -0,0 +1,368 @@
+package org.lappsgrid.example;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * NgramCounter: count every n-gram of order 1..maxN in a single pass over a
+ * sentence. Words are interned as int ids in a TermDictionary, each new token
+ * extends a rolling hash over the previous maxN ids, and counts live in
+ * primitive open-addressing tables. Strings are only built by toMap();
+ * packed() returns the n-grams as packed id tuples instead.
+ *
+ * One counter is reused for all sentences of a document: reset() clears the
+ * counts but keeps the vocabulary.
+ *
+ * With a maxExact budget the counter is approximate: once a sentence has more
+ * than maxExact distinct n-grams of some order, every order moves to a
+ * CountMinSketch and the rest of the sentence is counted there, so memory
+ * stays bounded however long the sentence is. isApproximate() tells which
+ * form the current sentence is in.
+ *
+ */
+public class NgramCounter {
+  private static final long PRIME = 0x9E3779B97F4A7C15L;
+
+  private final int maxN;
+
+  private final TermDictionary terms;
+
+  // Term ids of the current sentence.
+  private int[] ids = new int[64];
+  private int length = 0;
+
+  private final Table[] tables;
+
+  // Approximate mode; sketches is null while the sentence is counted exactly.
+  private final int maxExact;
+  private final double epsilon;
+  private final double delta;
+  private boolean approximate = false;
+  private CountMinSketch[] sketches;
+  private long[] wordHashes = new long[64];
+  // Word hashes of the last maxN tokens, oldest first.
+  private final long[] window;
+  private int windowSize = 0;
+
+  public NgramCounter(int maxN) {
+      this(maxN, new TermDictionary());
+  }
+
+  /**
+   * @param maxN the highest order counted
+   * @param terms the vocabulary, e.g. the one of the token view
+   */
+  public NgramCounter(int maxN, TermDictionary terms) {
+      this(maxN, terms, 0, 0, 0);
+  }
+
+  /**
+   * @param maxN the highest order counted
+   * @param terms the vocabulary, e.g. the one of the token view
+   * @param maxExact the most distinct n-grams of one order counted exactly, or 0 to always count exactly
+   * @param epsilon the error bound of the sketches, relative to the n-grams in the sentence
+   * @param delta the probability of exceeding it
+   */
+  public NgramCounter(int maxN, TermDictionary terms, int maxExact, double epsilon, double delta) {
+      if (maxN < 1) {
+        throw new IllegalArgumentException("maxN must be at least 1: " + maxN);
+      }
+      if (maxExact < 0) {
+        throw new IllegalArgumentException("maxExact must not be negative: " + maxExact);
+      }
+      if (maxExact > 0) {
+        // Validate the bounds now rather than at the first long sentence.
+        CountMinSketch.bytes(epsilon, delta);
+      }
+      this.maxN = maxN;
+      this.terms = terms;
+      this.maxExact = maxExact;
+      this.epsilon = epsilon;
+      this.delta = delta;
+      tables = new Table[maxN];
+      for (int n = 0; n < maxN; n++) {
+        tables[n] = new Table();
+      }
+      window = new long[maxN];
+  }
+
+  /**
+   * @return the highest order counted
+   */
+  public int getMaxN() {
+      return maxN;
+  }
+
+  /**
+   * @return the vocabulary the term ids refer to
+   */
+  public TermDictionary getTerms() {
+      return terms;
+  }
+
+  /**
+   * Start a new sentence
+   */
+  public void reset() {
+      reset(true);
+  }
+
+  /**
+   * Start a new sentence
+   * @param approximate false to count it exactly whatever its length, e.g. for a question
+   */
+  public void reset(boolean approximate) {
+      this.approximate = approximate && maxExact > 0;
+      length = 0;
+      sketches = null;
+      windowSize = 0;
+      for (Table table : tables) {
+        table.clear();
+      }
+  }
+
+  /**
+   * Append a token to the current sentence and count the n-grams ending at it.
+   * Empty words are ignored.
+   * @param word the normalized word
+   * @param wordLength number of characters of word in use
+   */
+  public void add(char[] word, int wordLength) {
+      if (wordLength == 0) {
+        return;
+      }
+      addId(terms.id(word, 0, wordLength));
+  }
+
+  /**
+   * Append a token to the current sentence
+   * @param word the normalized word
+   */
+  public void add(String word) {
+      if (!word.isEmpty()) {
+        addId(terms.id(word));
+      }
+  }
+
+  /**
+   * Append a token that is already interned
+   * @param id its id in getTerms()
+   */
+  public void addId(int id) {
+      if (sketches != null) {
+        addSketched(id);
+        return;
+      }
+      if (length == ids.length) {
+        ids = Arrays.copyOf(ids, length * 2);
+      }
+      ids[length++] = id;
+      long hash = 0;
+      int end = length - 1;
+      for (int n = 1; n <= maxN && n <= length; n++) {
+        hash = (hash + ids[end - n + 1] + 1) * PRIME;
+        tables[n - 1].increment(hash, end - n + 1, n, ids);
+      }
+      if (approximate) {
+        for (Table table : tables) {
+          if (table.size > maxExact) {
+            spill();
+            break;
+          }
+        }
+      }
+  }
+
+  /**
+   * @return true if the current sentence is counted in sketches rather than exactly
+   */
+  public boolean isApproximate() {
+      return sketches != null;
+  }
+
+  /**
+   * @param n the order, 1..maxN
+   * @return the counts of the current sentence if isApproximate()
+   */
+  public CountMinSketch sketch(int n) {
+      return sketches[n - 1];
+  }
+
+  /**
+   * Move the exact counts of the sentence to sketches and count the rest there
+   */
+  private void spill() {
+      sketches = new CountMinSketch[maxN];
+      for (int n = 1; n <= maxN; n++) {
+        CountMinSketch sketch = new CountMinSketch(epsilon, delta);
+        Table table = tables[n - 1];
+        for (int e = 0; e < table.size; e++) {
+          long hash = 0;
+          for (int k = 0; k < n; k++) {
+            hash = CountMinSketch.combine(hash, wordHash(ids[table.first[e] + k]));
+          }
+          sketch.add(hash, table.count[e]);
+        }
+        table.clear();
+        sketches[n - 1] = sketch;
+      }
+      windowSize = 0;
+      for (int i = Math.max(0, length - maxN); i < length; i++) {
+        window[windowSize++] = wordHash(ids[i]);
+      }
+      length = 0;
+  }
+
+  private void addSketched(int id) {
+      if (windowSize == maxN) {
+        System.arraycopy(window, 1, window, 0, maxN - 1);
+        windowSize--;
+      }
+      window[windowSize++] = wordHash(id);
+      for (int n = 1; n <= windowSize; n++) {
+        long hash = 0;
+        for (int k = windowSize - n; k < windowSize; k++) {
+          hash = CountMinSketch.combine(hash, window[k]);
+        }
+        sketches[n - 1].add(hash, 1);
+      }
+  }
+
+  /**
+   * @return the CountMinSketch.wordHash() of a term, computed once per term
+   */
+  private long wordHash(int id) {
+      if (id >= wordHashes.length) {
+        wordHashes = Arrays.copyOf(wordHashes, Math.max(id + 1, wordHashes.length * 2));
+      }
+      if (wordHashes[id] == 0) {
+        String term = terms.term(id);
+        wordHashes[id] = CountMinSketch.wordHash(term.toCharArray(), 0, term.length());
+      }
+      return wordHashes[id];
+  }
+
+  /**
+   * @param n the order, 1..maxN
+   * @return n-gram to count, in order of first occurrence, with words joined by a space
+   */
+  public Map<String, Integer> toMap(int n) {
+      Table table = tables[n - 1];
+      Map<String, Integer> map = new LinkedHashMap<>(table.size * 2);
+      StringBuilder buffer = new StringBuilder();
+      for (int e = 0; e < table.size; e++) {
+        buffer.setLength(0);
+        int first = table.first[e];
+        for (int k = 0; k < n; k++) {
+          if (k > 0) {
+            buffer.append(' ');
+          }
+          terms.append(buffer, ids[first + k]);
+        }
+        map.put(buffer.toString(), table.count[e]);
+      }
+      return map;
+  }
+
+  /**
+   * @param n the order, 1..min(maxN, TermDictionary.MAX_ORDER)
+   * @return the n-grams as TermDictionary.pack() tuples, in order of first occurrence
+   */
+  public long[] packed(int n) {
+      Table table = tables[n - 1];
+      long[] packed = new long[table.size];
+      for (int e = 0; e < table.size; e++) {
+        packed[e] = TermDictionary.pack(ids, table.first[e], n);
+      }
+      return packed;
+  }
+
+  /**
+   * @param n the order, 1..maxN
+   * @return the counts of the n-grams, in the order of toMap() and packed()
+   */
+  public int[] counts(int n) {
+      Table table = tables[n - 1];
+      return Arrays.copyOf(table.count, table.size);
+  }
+
+  private static int mix(long h) {
+      h ^= (h >>> 33);
+      h *= 0xFF51AFD7ED558CCDL;
+      h ^= (h >>> 33);
+      return (int) h;
+  }
+
+  /**
+   * Counts for one order. Entries are appended in order of first occurrence;
+   * slots hold entry index + 1, 0 meaning empty.
+   */
+  private static class Table {
+    private int[] slots = new int[64];
+    private long[] hash = new long[32];
+    private int[] first = new int[32];
+    private int[] count = new int[32];
+    private int size = 0;
+
+    void clear() {
+        // Zero only the slots in use so a long sentence does not make every
+        // following short one pay for a large table.
+        int mask = slots.length - 1;
+        for (int e = 0; e < size; e++) {
+          int slot = mix(hash[e]) & mask;
+          while (slots[slot] != e + 1) {
+            slot = (slot + 1) & mask;
+          }
+          slots[slot] = 0;
+        }
+        size = 0;
+    }
+
+    void increment(long h, int start, int n, int[] ids) {
+        int mask = slots.length - 1;
+        int slot = mix(h) & mask;
+        while (slots[slot] != 0) {
+          int e = slots[slot] - 1;
+          if (hash[e] == h && sameTuple(ids, first[e], start, n)) {
+            count[e]++;
+            return;
+          }
+          slot = (slot + 1) & mask;
+        }
+        if (size == hash.length) {
+          hash = Arrays.copyOf(hash, size * 2);
+          first = Arrays.copyOf(first, size * 2);
+          count = Arrays.copyOf(count, size * 2);
+        }
+        hash[size] = h;
+        first[size] = start;
+        count[size] = 1;
+        slots[slot] = ++size;
+        if (size * 2 > slots.length) {
+          rehash();
+        }
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int e = 0; e < size; e++) {
+          int slot = mix(hash[e]) & mask;
+          while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+          }
+          slots[slot] = e + 1;
+        }
+    }
+
+    private static boolean sameTuple(int[] ids, int a, int b, int n) {
+        for (int k = 0; k < n; k++) {
+          if (ids[a + k] != ids[b + k]) {
+            return false;
+          }
+        }
+        return true;
+    }
+  }
+}
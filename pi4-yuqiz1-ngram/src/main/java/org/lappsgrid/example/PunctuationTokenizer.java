@@ -0,0 +1,14 @@
+package org.lappsgrid.example;
+
+/**
+ * PunctuationTokenizer: split on whitespace and drop the characters ,.?!;:
+ * from each token, the normalization NgramAnnotation has always applied
+ *
+ */
+public class PunctuationTokenizer extends WhitespaceTokenizer {
+
+  @Override
+  protected boolean keep(char c) {
+      return c != ',' && c != '.' && c != '?' && c != '!' && c != ';' && c != ':';
+  }
+}
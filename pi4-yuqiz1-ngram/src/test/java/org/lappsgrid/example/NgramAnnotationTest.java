@@ -0,0 +1,125 @@
+package org.lappsgrid.example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.lappsgrid.discriminator.Discriminators.Uri;
+import org.lappsgrid.serialization.lif.Annotation;
+import org.lappsgrid.serialization.lif.Container;
+import org.lappsgrid.serialization.lif.View;
+import org.lappsgrid.vocabulary.Features;
+
+public class NgramAnnotationTest {
+  static final String[] SENTENCES = { "Who shot Lincoln?", "Booth shot Lincoln, then Booth ran.",
+      "Lincoln shot nobody.", "  ?  " };
+
+  /**
+   * A document as ElementAnnotation leaves it
+   */
+  static Container elements() {
+      Container container = new Container();
+      container.setText("");
+      View view = container.newView();
+      for (int i = 0; i < SENTENCES.length; i++) {
+        Annotation a = view.newAnnotation(i == 0 ? "Question" : "A" + i, Uri.SENTENCE, 0, 0);
+        a.addFeature("Type", i == 0 ? "Question" : "Answer");
+        a.addFeature(Uri.SENTENCE, SENTENCES[i]);
+      }
+      return container;
+  }
+
+  /**
+   * Add a token view as TokenAnnotation writes it with the same tokenizer
+   * @param terms add "TermId" features from this dictionary, or null for words only
+   */
+  static Container tokens(final Container container, final TermDictionary terms) throws ProcessingException {
+      final View view = container.newView();
+      for (final Annotation sentence : container.getView(0).getAnnotations()) {
+        new PunctuationTokenizer().tokenize(sentence.getFeature(Uri.SENTENCE), 0, new Tokenizer.Handler() {
+          @Override
+          public void token(int start, int end, char[] word, int length) {
+              Annotation a = view.newAnnotation(sentence.getId() + "-tok" + start, Uri.TOKEN, start, end);
+              a.addFeature(Features.Token.WORD, new String(word, 0, length));
+              a.addFeature("Group", sentence.getId());
+              if (terms != null && length > 0) {
+                a.addFeature("TermId", terms.id(word, 0, length));
+              }
+          }
+        });
+      }
+      if (terms != null) {
+        view.getMetadata().put(TermDictionary.METADATA, terms.toList());
+      }
+      return container;
+  }
+
+  /**
+   * @return the n-gram maps of the last view, keyed by group and order
+   */
+  static Map<String, Object> grams(Container container, int maxN) throws Exception {
+      List<View> views = container.getViews();
+      View view = views.get(views.size() - 1);
+      Map<String, Object> grams = new HashMap<>();
+      for (Annotation a : view.getAnnotations()) {
+        for (int n = 1; n <= maxN; n++) {
+          grams.put(a.getFeature("Group") + "/" + n, a.getFeatures().get(n + "-Gram"));
+        }
+      }
+      return grams;
+  }
+
+  /**
+   * @return the packed n-grams of the last view spelled out, keyed by group and order
+   */
+  static Map<String, Object> unpacked(Container container, int maxN) throws Exception {
+      List<View> views = container.getViews();
+      View view = views.get(views.size() - 1);
+      TermDictionary terms = TermDictionary.fromList((List<?>) view.getMetadata().get(TermDictionary.METADATA));
+      Map<String, Object> grams = new HashMap<>();
+      for (Annotation a : view.getAnnotations()) {
+        for (int n = 1; n <= maxN; n++) {
+          long[] ids = (long[]) a.getFeatures().get(n + "-GramIds");
+          int[] counts = (int[]) a.getFeatures().get(n + "-GramCounts");
+          Map<String, Integer> map = new HashMap<>();
+          for (int i = 0; i < ids.length; i++) {
+            map.put(terms.gram(ids[i], n), counts[i]);
+          }
+          grams.put(a.getFeature("Group") + "/" + n, map);
+        }
+      }
+      return grams;
+  }
+
+  @Test
+  public void tokenViewGivesTheSameNgramsAsTheText() throws Exception {
+      Map<String, Object> text = grams(new NgramAnnotation(3).process(elements()), 3);
+
+      assertEquals(text, grams(new NgramAnnotation(3).process(tokens(elements(), null)), 3));
+      assertEquals(text, grams(new NgramAnnotation(3).process(tokens(elements(), new TermDictionary())), 3));
+  }
+
+  @Test
+  public void termIdsGiveTheSamePackedNgramsAsTheText() throws Exception {
+      Map<String, Object> text = unpacked(new NgramAnnotation(3, true).process(elements()), 3);
+
+      assertEquals(text, unpacked(new NgramAnnotation(3, true).process(tokens(elements(), null)), 3));
+      assertEquals(text, unpacked(new NgramAnnotation(3, true).process(tokens(elements(), new TermDictionary())), 3));
+  }
+
+  @Test
+  public void ngramsSpanTheTokensOfOneGroupOnly() throws Exception {
+      Container container = new NgramAnnotation(2).process(tokens(elements(), null));
+
+      List<Annotation> ngrams = container.getView(2).getAnnotations();
+      Map<?, ?> question = (Map<?, ?>) ngrams.get(0).getFeatures().get("2-Gram");
+      assertEquals(2, question.size());
+      assertNull(question.get("Lincoln Booth"));
+      assertEquals(2, ((Map<?, ?>) ngrams.get(1).getFeatures().get("1-Gram")).get("Booth"));
+      assertEquals(0, ((Map<?, ?>) ngrams.get(3).getFeatures().get("1-Gram")).size());
+  }
+}
@@ -0,0 +1,172 @@
+package org.lappsgrid.example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class NgramCounterTest {
+
+  /**
+   * Count a sentence the way NgramAnnotation does
+   */
+  static NgramCounter count(int maxN, String sentence) throws ProcessingException {
+      final NgramCounter counter = new NgramCounter(maxN);
+      counter.reset();
+      new PunctuationTokenizer().tokenize(sentence, 0, new Tokenizer.Handler() {
+        @Override
+        public void token(int start, int end, char[] word, int length) {
+            counter.add(word, length);
+        }
+      });
+      return counter;
+  }
+
+  /**
+   * The n-grams of a sentence counted naively: words without ,.?!;: joined by a space
+   */
+  static Map<String, Integer> naive(String sentence, int n) {
+      List<String> words = new ArrayList<>();
+      for (String word : sentence.trim().split("\\s+")) {
+        word = word.replaceAll("[,.?!;:]", "");
+        if (!word.isEmpty()) {
+          words.add(word);
+        }
+      }
+      Map<String, Integer> counts = new LinkedHashMap<>();
+      for (int i = 0; i + n <= words.size(); i++) {
+        StringBuilder gram = new StringBuilder(words.get(i));
+        for (int k = 1; k < n; k++) {
+          gram.append(' ').append(words.get(i + k));
+        }
+        Integer count = counts.get(gram.toString());
+        counts.put(gram.toString(), count == null ? 1 : count + 1);
+      }
+      return counts;
+  }
+
+  /**
+   * The n-gram counting NgramAnnotation did before NgramCounter, for one order
+   */
+  static Map<String, Integer> regex(String ques, int n) {
+      String[] words = ques.trim().split("\\s+");
+      HashMap<String, Integer> count = new HashMap<>();
+      int t = n - 1;
+      int start = 0;
+      for (int z = 0; z < words.length - t; z++) {
+        start = ques.indexOf(words[z], start);
+        int end = ques.indexOf(words[z + t], start) + words[z + t].length();
+        String content = ques.substring(start, end).replaceAll("[,.?!;:]", "");
+        count.put(content, count.containsKey(content) ? count.get(content) + 1 : 1);
+      }
+      return count;
+  }
+
+  @Test
+  public void countsEveryOrderInOnePass() throws Exception {
+      NgramCounter counter = count(3, "the cat saw the cat.");
+
+      Map<String, Integer> unigrams = new LinkedHashMap<>();
+      unigrams.put("the", 2);
+      unigrams.put("cat", 2);
+      unigrams.put("saw", 1);
+      assertEquals(unigrams, counter.toMap(1));
+      assertEquals(Integer.valueOf(2), counter.toMap(2).get("the cat"));
+      assertEquals(3, counter.toMap(3).size());
+      assertEquals(Arrays.asList("the", "cat", "saw"), new ArrayList<>(counter.toMap(1).keySet()));
+  }
+
+  @Test
+  public void resetStartsANewSentence() throws Exception {
+      NgramCounter counter = count(2, "one two");
+      counter.reset();
+      counter.add("three");
+
+      assertEquals(1, counter.toMap(1).size());
+      assertTrue(counter.toMap(2).isEmpty());
+  }
+
+  @Test
+  public void matchesNaiveCountingOnRandomSentences() throws Exception {
+      Random random = new Random(5);
+      for (int trial = 0; trial < 500; trial++) {
+        StringBuilder sentence = new StringBuilder();
+        int words = 1 + random.nextInt(30);
+        for (int i = 0; i < words; i++) {
+          sentence.append(i == 0 ? "" : random.nextInt(5) == 0 ? "  " : " ").append("w").append(random.nextInt(6));
+          if (random.nextInt(6) == 0) {
+            sentence.append(",.?!;:".charAt(random.nextInt(6)));
+          }
+          if (random.nextInt(20) == 0) {
+            sentence.append(" ?");
+          }
+        }
+        String text = sentence.toString();
+        NgramCounter counter = count(4, text);
+        for (int n = 1; n <= 4; n++) {
+          assertEquals(text, naive(text, n), counter.toMap(n));
+          int[] counts = counter.counts(n);
+          long[] packed = counter.packed(n);
+          assertEquals(counter.toMap(n).size(), counts.length);
+          assertEquals(counts.length, packed.length);
+        }
+      }
+  }
+
+  @Test
+  public void matchesTheRegexCountingOnPlainSentences() throws Exception {
+      // The old code found words with indexOf, so it is only exact for single spaces
+      // and words that do not occur inside earlier ones.
+      String[] sentences = { "What is the capital of France?", "Rome has the Colosseum, of course.",
+          "John Wilkes Booth shot Lincoln at Ford's Theatre." };
+      for (String sentence : sentences) {
+        NgramCounter counter = count(3, sentence);
+        for (int n = 1; n <= 3; n++) {
+          assertEquals(sentence, regex(sentence, n), new HashMap<>(counter.toMap(n)));
+        }
+      }
+  }
+
+  @Test
+  public void longSentencesMoveToSketches() throws Exception {
+      StringBuilder text = new StringBuilder();
+      for (int i = 0; i < 200; i++) {
+        text.append("w").append(i % 50).append(' ');
+      }
+      NgramCounter exact = count(2, text.toString());
+      NgramCounter counter = new NgramCounter(2, new TermDictionary(), 20, 0.01, 0.01);
+      counter.reset(true);
+      for (String word : text.toString().split(" ")) {
+        counter.add(word);
+      }
+
+      assertTrue(counter.isApproximate());
+      for (int n = 1; n <= 2; n++) {
+        CountMinSketch sketch = counter.sketch(n);
+        assertEquals(200 - n + 1, sketch.total());
+        for (Map.Entry<String, Integer> gram : exact.toMap(n).entrySet()) {
+          assertTrue(sketch.estimate(CountMinSketch.hash(gram.getKey())) >= gram.getValue());
+        }
+      }
+
+      // Questions are reset without approximation and stay exact.
+      counter.reset(false);
+      for (String word : text.toString().split(" ")) {
+        counter.add(word);
+      }
+      assertEquals(exact.toMap(2), counter.toMap(2));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsOrderZero() {
+      new NgramCounter(0);
+  }
+}
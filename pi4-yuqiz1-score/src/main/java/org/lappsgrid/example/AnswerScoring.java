@@ -1,38 +1,149 @@
 package org.lappsgrid.example;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
-import org.lappsgrid.api.ProcessingService;
 import org.lappsgrid.discriminator.Discriminators.Uri;
 import org.lappsgrid.metadata.IOSpecification;
 import org.lappsgrid.metadata.ServiceMetadata;
 import org.lappsgrid.serialization.Data;
-import org.lappsgrid.serialization.DataContainer;
 import org.lappsgrid.serialization.LappsIOException;
-import org.lappsgrid.serialization.Serializer;
 import org.lappsgrid.serialization.lif.Annotation;
 import org.lappsgrid.serialization.lif.Container;
 import org.lappsgrid.serialization.lif.View;
 import org.lappsgrid.vocabulary.Features;
 
 /**
- * AnswerScoring: score each answer based on its overlap with the question
+ * AnswerScoring: score each answer based on its similarity to the question.
+ * The n-gram maps of the question and answers are turned into SparseVectors
+ * once per order and handed to a Scorer; the scores of the orders are
+ * combined by a weighted mean. With CorpusStatistics from CorpusIndexer the
+ * counts are weighted by IDF before scoring. Packed n-grams from NgramAnnotation
+ * are vectorized by their id tuples without building Strings, and answers
+ * NgramAnnotation counted approximately by looking up the question's n-grams
+ * in their CountMinSketch.
+ *
+ * In top-K mode only the K best answers of each question are annotated, and
+ * most answers are never scored. An answer that shares no word with the
+ * question scores 0 under every order, so the candidates are the answers in
+ * the postings of the question's words, found by looking those few words up
+ * in each answer; only the candidates are vectorized. With a BoundedScorer the orders are then scored one
+ * at a time, MaxScore style: before each order, candidates whose score so far
+ * plus the bound of the remaining orders falls short of the K-th best score so
+ * far are dropped. The K answers and their scores are those of full scoring.
+ * Evaluation ranks the same answers as long as K is at least its depth and
+ * the number of correct answers.
+ *
+ * With a MinHashDeduplicator only one answer of each cluster of near
+ * duplicates is scored; the others take its score and name it in their
+ * "Representative" feature. Scorers that collect statistics over the
+ * candidates, such as BM25, then see the representatives only.
  * @author yuqizhang
  *
  */
-public class AnswerScoring implements ProcessingService{
+public class AnswerScoring extends AbstractProcessingService {
+  /**
+   * Rounding slack when comparing a bound with exact scores
+   */
+  private static final double SLACK = 1e-9;
+
   private String metadata;
-  private int n;
+  private Scorer scorer;
+  private CorpusStatistics statistics;
+  /**
+   * weights[n - 1] is the weight of the n-gram order n
+   */
+  private double[] weights;
+  /**
+   * the number of answers to annotate per question, or 0 for all
+   */
+  private int topK;
+  /**
+   * clusters near-duplicate answers, or null to score every answer
+   */
+  private MinHashDeduplicator deduplicator;
 
   public AnswerScoring() {
-      metadata = generateMetadata();
-      this.n = 1;
+      this(1);
   }
+
+  /**
+   * Score by the overlap of the n-grams of a single order, as before
+   * @param n the order
+   */
   public AnswerScoring(int n){
+      this(new OverlapScorer(), orderWeights(n));
+  }
+
+  /**
+   * @param scorer the similarity
+   * @param weights weights[n - 1] is the weight of order n; orders with weight 0 are skipped
+   */
+  public AnswerScoring(Scorer scorer, double... weights) {
+      this(scorer, null, weights);
+  }
+
+  /**
+   * @param scorer the similarity
+   * @param statistics document frequencies for IDF weighting, or null for raw counts
+   * @param weights weights[n - 1] is the weight of order n; orders with weight 0 are skipped
+   */
+  public AnswerScoring(Scorer scorer, CorpusStatistics statistics, double... weights) {
+      this(scorer, statistics, weights, 0);
+  }
+
+  /**
+   * @param scorer the similarity; answers are pruned only if it is a BoundedScorer
+   * @param statistics document frequencies for IDF weighting, or null for raw counts
+   * @param weights weights[n - 1] is the weight of order n; orders with weight 0 are skipped
+   * @param topK the number of best answers to annotate per question, or 0 for all
+   */
+  public AnswerScoring(Scorer scorer, CorpusStatistics statistics, double[] weights, int topK) {
+      this(scorer, statistics, weights, topK, null);
+  }
+
+  /**
+   * @param scorer the similarity; answers are pruned only if it is a BoundedScorer
+   * @param statistics document frequencies for IDF weighting, or null for raw counts
+   * @param weights weights[n - 1] is the weight of order n; orders with weight 0 are skipped
+   * @param topK the number of best answers to annotate per question, or 0 for all
+   * @param deduplicator scores one answer per cluster of near duplicates, or null to score all
+   */
+  public AnswerScoring(Scorer scorer, CorpusStatistics statistics, double[] weights, int topK,
+          MinHashDeduplicator deduplicator) {
+      if (topK < 0) {
+        throw new IllegalArgumentException("topK must not be negative: " + topK);
+      }
+      double sum = 0;
+      for (double w : weights) {
+        if (w < 0) {
+          throw new IllegalArgumentException("Negative order weight: " + w);
+        }
+        sum += w;
+      }
+      if (sum == 0) {
+        throw new IllegalArgumentException("At least one order needs a positive weight");
+      }
       metadata = generateMetadata();
-      this.n = n;
+      this.scorer = scorer;
+      this.statistics = statistics;
+      this.weights = weights.clone();
+      this.topK = topK;
+      this.deduplicator = deduplicator;
+  }
+
+  private static double[] orderWeights(int n) {
+      if (n < 1) {
+        throw new IllegalArgumentException("n must be at least 1: " + n);
+      }
+      double[] weights = new double[n];
+      weights[n - 1] = 1;
+      return weights;
   }
 
   /**
@@ -84,102 +195,616 @@ public class AnswerScoring implements ProcessingService{
       return metadata;
   }
 
+  @Override
+  public String getConfiguration() {
+      return super.getConfiguration() + "?scorer=" + scorer + "&weights=" + Arrays.toString(weights)
+              + (statistics == null ? "" : "&statistics=" + statistics) + (topK == 0 ? "" : "&topK=" + topK)
+              + (deduplicator == null ? "" : "&dedup=" + deduplicator);
+  }
+
   @Override
   /**
    * Give score for each answer based on the overlap between the answer and the question
    */
-  public String execute(String input) {
-      // Step #1: Parse the input.
-      Data data = Serializer.parse(input, Data.class);
+  public Container process(Container container) throws ProcessingException {
+      // Step #4: Create a new View
+      List<View> views = container.getViews();
+      int lastview = views.size()-1;
+      View oldview = container.getView(lastview);
+
+      View view = container.newView();
+      score(oldview, view, null);
+      return container;
+  }
+
+  /**
+   * Score the answers of an n-gram view into another view
+   * @param ngrams the view written by NgramAnnotation
+   * @param view receives the selected answers
+   * @param shared the work of other configurations on the same document, or null
+   * @throws ProcessingException if an n-gram feature is not a map or id array
+   */
+  void score(View ngrams, View view, Shared shared) throws ProcessingException {
+      // Packed n-grams only need their words to look up IDF or sketched counts.
+      Object termList = ngrams.getMetadata().get(TermDictionary.METADATA);
+      TermDictionary terms = termList instanceof List ? TermDictionary.fromList((List<?>) termList) : null;
 
-      // Step #2: Check the discriminator
-      final String discriminator = data.getDiscriminator();
-      if (discriminator.equals(Uri.ERROR)) {
-          // Return the input unchanged.
-          return input;
+      // Step #5: Score the answers of every question group against their own question.
+      Map<String, List<Annotation>> groups = QuestionGroups.group(ngrams.getAnnotations());
+      for (Map.Entry<String, List<Annotation>> entry : groups.entrySet()) {
+        scoreGroup(view, entry.getKey(), entry.getValue(), terms, shared);
       }
 
-      // Step #3: Extract the text.
-      Container container = null;
-      if (discriminator.equals(Uri.TEXT)) {
-          container = new Container();
-          container.setText(data.getPayload().toString());
+      // Step #6: Update the view's metadata. Each view contains metadata about the
+      // annotations it contains, in particular the name of the tool that produced the
+      // annotations.
+      view.addContains(Uri.TOKEN, this.getClass().getName(), "answerscoring");
+  }
+
+  /**
+   * The work that configurations scoring the same document have in common:
+   * question vectorizers, answer vectors, the scores of each order, the
+   * top-K candidates and the clusters of near duplicates. Entries are keyed by the identity of the
+   * question, scorer, statistics and deduplicator they were computed with, so
+   * configurations differing only in their order weights or topK share all
+   * of them. Used by one thread at a time.
+   */
+  static class Shared {
+    private final Map<Key, NgramVectorizer> vectorizers = new HashMap<>();
+    private final Map<NgramVectorizer, Map<Annotation, SparseVector>> vectors = new IdentityHashMap<>();
+    private final Map<Key, double[]> scores = new HashMap<>();
+    private final Map<Key, int[]> representatives = new HashMap<>();
+    private final Map<Key, int[]> candidates = new HashMap<>();
+  }
+
+  /**
+   * An n-gram order and objects compared by identity
+   */
+  private static final class Key {
+    private final int n;
+    private final Object[] parts;
+
+    Key(int n, Object... parts) {
+        this.n = n;
+        this.parts = parts;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof Key) || ((Key) o).n != n || ((Key) o).parts.length != parts.length) {
+          return false;
+        }
+        for (int i = 0; i < parts.length; i++) {
+          if (((Key) o).parts[i] != parts[i]) {
+            return false;
+          }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = n;
+        for (Object part : parts) {
+          h = h * 31 + System.identityHashCode(part);
+        }
+        return h;
+    }
+  }
+
+  /**
+   * Score the answers of one question
+   * @param view the output view
+   * @param questionId the question id, or "" for a single-question document
+   * @param annotations the n-gram annotations of the question and its answers
+   * @param terms the terms of packed n-grams, or null
+   * @param shared the work of other configurations on the same document, or null
+   * @throws ProcessingException if an n-gram feature is not a map or id array
+   */
+  private void scoreGroup(View view, String questionId, List<Annotation> annotations, TermDictionary terms,
+          Shared shared) throws ProcessingException {
+      Annotation question = QuestionGroups.question(annotations);
+      List<Annotation> answers = new ArrayList<>(annotations.size());
+      for (Annotation ans : annotations) {
+        if (ans != question) {
+          answers.add(ans);
+        }
       }
-      else if (discriminator.equals(Uri.LAPPS)) {
-          container = new Container((Map) data.getPayload());
+
+      // Only representatives are scored; position[k] is the representative of answer k among them.
+      int count = answers.size();
+      int[] representative = deduplicator == null ? null : representatives(question, answers, shared);
+      int[] position = new int[count];
+      List<Annotation> scored = answers;
+      if (representative != null) {
+        scored = new ArrayList<>();
+        for (int k = 0; k < count; k++) {
+          position[k] = representative[k] == k ? scored.size() : position[representative[k]];
+          if (representative[k] == k) {
+            scored.add(answers.get(k));
+          }
+        }
       }
       else {
-          // This is a format we don't accept.
-          String message = String.format("Unsupported discriminator type: %s", discriminator);
-          return new Data<String>(Uri.ERROR, message).asJson();
+        for (int k = 0; k < count; k++) {
+          position[k] = k;
+        }
       }
 
-      // Step #4: Create a new View
-      List<View> views = container.getViews();
-      int lastview = views.size()-1;
-      View oldview = container.getView(lastview);
-      List<Annotation> annotations = oldview.getAnnotations();
-      
-      
-      View view = container.newView();
+      int size = scored.size();
+      double[] scores = new double[size];
+      boolean[] chosen;
+      if (topK > 0 && topK < size && scorer instanceof BoundedScorer) {
+        chosen = scoreTop(question, scored, terms, scores, shared);
+      }
+      else {
+        scoreAll(question, scored, terms, scores, shared);
+        chosen = select(scores, topK > 0 ? topK : size);
+      }
 
-      Annotation question = annotations.get(0);
-      List<Map<String, Integer>> quesngram = new ArrayList<>();
-      int totalques = 0;
-      try {
-        //for(int i = 1; i<4; i++){
-          String key = this.n +"-Gram";
-          Map<String, Integer> quesMap = question.getFeatureMap(key);
-          quesngram.add(quesMap);
-          for(String word: quesMap.keySet()){
-            int tempcount = quesMap.get(word);
-            totalques+=tempcount;
-          //}
-          
-        }
-        
- 
-      } catch (LappsIOException e) {
-        // TODO Auto-generated catch block
-        e.printStackTrace();
+      // A representative ranks ahead of its members, so the best members belong to chosen representatives.
+      double[] total = new double[count];
+      double[] ranked = new double[count];
+      for (int k = 0; k < count; k++) {
+        total[k] = scores[position[k]];
+        ranked[k] = chosen[position[k]] ? total[k] : -1;
       }
-      int id = -1;
-      for(int i = 1; i<annotations.size();i++){
-        Annotation ans = annotations.get(i);
+      boolean[] selected = select(ranked, topK > 0 ? topK : count);
+      double weightSum = 0;
+      for (double w : weights) {
+        weightSum += w;
+      }
+
+      for (int k = 0; k < count; k++) {
+        if (!selected[k]) {
+          continue;
+        }
+        Annotation ans = answers.get(k);
         Annotation a = view.newAnnotation(ans.getId(), Uri.TOKEN, ans.getStart(),
                 ans.getEnd());
-        double score = 0;
-        //for(int j = 1; j<4;j++){
-          String key = this.n +"-Gram";
-          try {
-            Map<String, Integer> ansmap = ans.getFeatureMap(key);
-            for(String quesword:quesngram.get(0).keySet()){
-              if(ansmap.containsKey(quesword))
-                score += Math.min(ansmap.get(quesword), quesngram.get(0).get(quesword));
+        a.addFeature("Score", Double.toString(total[k] / weightSum));
+        String group = ans.getFeature("Group");
+        a.addFeature("Group", group != null ? group : ans.getId().split("-")[0]);
+        if (representative != null && representative[k] != k) {
+          a.addFeature("Representative", answers.get(representative[k]).getId());
+        }
+        if (!questionId.equals(QuestionGroups.DEFAULT_GROUP)) {
+          a.addFeature(QuestionGroups.FEATURE, questionId);
+        }
+      }
+  }
+
+  /**
+   * @return the clusters of the deduplicator, computed once per question when shared
+   */
+  private int[] representatives(Annotation question, List<Annotation> answers, Shared shared)
+          throws ProcessingException {
+      if (shared == null) {
+        return deduplicator.representatives(answers);
+      }
+      Key key = new Key(0, question, deduplicator);
+      int[] representative = shared.representatives.get(key);
+      if (representative == null) {
+        representative = deduplicator.representatives(answers);
+        shared.representatives.put(key, representative);
+      }
+      return representative;
+  }
+
+  /**
+   * Vectorize and score every answer for every order with a positive weight in turn
+   * @param total receives the weighted sum of the scores of each answer
+   */
+  private void scoreAll(Annotation question, List<Annotation> answers, TermDictionary terms, double[] total,
+          Shared shared) throws ProcessingException {
+      int count = answers.size();
+      for (int n = 1; n <= weights.length; n++) {
+        double weight = weights[n - 1];
+        if (weight == 0) {
+          continue;
+        }
+        String key = n + "-Gram";
+        NgramVectorizer vectorizer = vectorizer(question, key, statistics, terms, n, shared);
+        // The answers scored depend on the question and the deduplicator only.
+        Key scoresKey = new Key(n, vectorizer, scorer, deduplicator);
+        double[] scores = shared == null ? null : shared.scores.get(scoresKey);
+        if (scores == null) {
+          SparseVector[] vectors = new SparseVector[count];
+          for (int k = 0; k < count; k++) {
+            vectors[k] = vectorize(vectorizer, answers.get(k), key, shared);
+          }
+          scores = new double[count];
+          scorer.score(vectorizer.question(), vectors, scores);
+          if (shared != null) {
+            shared.scores.put(scoresKey, scores);
+          }
+        }
+        for (int k = 0; k < count; k++) {
+          total[k] += weight * scores[k];
+        }
+      }
+  }
+
+  /**
+   * Score only the answers that can be among the topK best
+   * @param total receives the weighted sum of the scores of each selected answer
+   * @return which answers are among the topK best
+   */
+  private boolean[] scoreTop(Annotation question, List<Annotation> answers, TermDictionary terms, double[] total,
+          Shared shared) throws ProcessingException {
+      BoundedScorer bounded = (BoundedScorer) scorer;
+      int count = answers.size();
+
+      // Candidates share a word with the question; the rest score 0 and are
+      // never vectorized.
+      int[] found = candidates(question, answers, shared);
+      int size = found.length;
+      int[] candidates = Arrays.copyOf(found, count);
+      NgramVectorizer words = vectorizer(question, "1-Gram", null, terms, 1, shared);
+      double[] length = new double[count];
+      double[] common = new double[count];
+      for (int c = 0; c < size; c++) {
+        int k = candidates[c];
+        Annotation answer = answers.get(k);
+        CountMinSketch sketch = sketch(answer, "1-GramSketch");
+        if (sketch != null) {
+          length[k] = sketch.total();
+          common[k] = Double.POSITIVE_INFINITY;
+          continue;
+        }
+        SparseVector vector = vectorize(words, answer, "1-Gram", shared);
+        length[k] = vector.mass();
+        for (int i = 0; i < vector.size(); i++) {
+          common[k] += vector.value(i);
+        }
+      }
+
+      int orders = 0;
+      NgramVectorizer[] vectorizers = new NgramVectorizer[weights.length];
+      int[] order = new int[weights.length];
+      for (int n = 1; n <= weights.length; n++) {
+        if (weights[n - 1] > 0) {
+          order[orders] = n;
+          vectorizers[orders++] = vectorizer(question, n + "-Gram", statistics, terms, n, shared);
+        }
+      }
+
+      boolean[] pruned = new boolean[count];
+      SparseVector[] vectors = new SparseVector[count];
+      double[] scores = new double[count];
+      for (int o = 0; o < orders; o++) {
+        // Bounds hold for raw counts only; with IDF weights every candidate is scored.
+        if (o > 0 && statistics == null && size > topK) {
+          double threshold = kth(total, candidates, size, topK);
+          int kept = 0;
+          for (int c = 0; c < size; c++) {
+            int k = candidates[c];
+            double remaining = 0;
+            for (int r = o; r < orders; r++) {
+              int n = order[r];
+              remaining += weights[n - 1] * bounded.bound(vectorizers[r].question(),
+                      Math.max(0, length[k] - n + 1), common[k]);
+            }
+            if (total[k] + remaining + SLACK < threshold) {
+              pruned[k] = true;
+            }
+            else {
+              candidates[kept++] = k;
             }
-          } catch (LappsIOException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
           }
-        //}
-        score = score/totalques;
-        a.addFeature("Score", Double.toString(score));
-        a.addFeature("Group", ans.getId().split("-")[0]);
-        
+          size = kept;
+        }
+        int n = order[o];
+        String key = n + "-Gram";
+        for (int c = 0; c < size; c++) {
+          vectors[c] = vectorize(vectorizers[o], answers.get(candidates[c]), key, shared);
+        }
+        bounded.score(vectorizers[o].question(), Arrays.copyOf(vectors, size), scores);
+        for (int c = 0; c < size; c++) {
+          total[candidates[c]] += weights[n - 1] * scores[c];
+        }
       }
-      
-      
-      
 
-      // Step #6: Update the view's metadata. Each view contains metadata about the
-      // annotations it contains, in particular the name of the tool that produced the
-      // annotations.
-      view.addContains(Uri.TOKEN, this.getClass().getName(), "answerscoring");
+      // A pruned answer scores below K others, so it can stand in at -1.
+      double[] ranked = total.clone();
+      for (int k = 0; k < count; k++) {
+        if (pruned[k]) {
+          ranked[k] = -1;
+        }
+      }
+      return select(ranked, topK);
+  }
 
-      // Step #7: Create a DataContainer with the result.
-      data = new DataContainer(container);
+  /**
+   * @return the candidates of candidates(question, answers), found once per question and deduplicator when shared
+   */
+  private int[] candidates(Annotation question, List<Annotation> answers, Shared shared)
+          throws ProcessingException {
+      if (shared == null) {
+        return candidates(question, answers);
+      }
+      Key key = new Key(1, question, deduplicator);
+      int[] candidates = shared.candidates.get(key);
+      if (candidates == null) {
+        candidates = candidates(question, answers);
+        shared.candidates.put(key, candidates);
+      }
+      return candidates;
+  }
 
-      // Step #8: Serialize the data object and return the JSON.
-      return data.asPrettyJson();
+  /**
+   * The answers sharing a word with the question: the union of the postings
+   * of the question's words. Sketches can match any n-gram by collision, so
+   * sketched answers always qualify.
+   * @return the indices of the candidates, in increasing order
+   */
+  private static int[] candidates(Annotation question, List<Annotation> answers) throws ProcessingException {
+      int count = answers.size();
+      boolean[] candidate = new boolean[count];
+      for (List<Integer> posting : postings(question, answers)) {
+        for (int k : posting) {
+          candidate[k] = true;
+        }
+      }
+      int size = 0;
+      int[] candidates = new int[count];
+      for (int k = 0; k < count; k++) {
+        if (candidate[k] || answers.get(k).getFeatures().get("1-GramSketch") != null) {
+          candidates[size++] = k;
+        }
+      }
+      return Arrays.copyOf(candidates, size);
+  }
+
+  /**
+   * Index the answers by the question's words. Each answer is probed for
+   * the few words of the question, or its packed unigrams looked up among
+   * them, without building a vector; sketched answers have no postings.
+   * @return for each unigram of the question, the answers containing it in increasing order
+   */
+  private static List<List<Integer>> postings(Annotation question, List<Annotation> answers)
+          throws ProcessingException {
+      List<List<Integer>> postings = new ArrayList<>();
+      if (question.getFeatures().get("1-GramIds") != null) {
+        long[] words = longs(question, "1-GramIds").clone();
+        Arrays.sort(words);
+        for (int i = 0; i < words.length; i++) {
+          postings.add(new ArrayList<Integer>());
+        }
+        for (int k = 0; k < answers.size(); k++) {
+          for (long id : longs(answers.get(k), "1-GramIds")) {
+            int i = Arrays.binarySearch(words, id);
+            if (i >= 0) {
+              postings.get(i).add(k);
+            }
+          }
+        }
+        return postings;
+      }
+      Map<String, Integer> questionWords = featureMap(question, "1-Gram");
+      if (questionWords == null) {
+        return postings;
+      }
+      List<String> words = new ArrayList<>(questionWords.keySet());
+      for (int i = 0; i < words.size(); i++) {
+        postings.add(new ArrayList<Integer>());
+      }
+      for (int k = 0; k < answers.size(); k++) {
+        Map<String, Integer> answerWords = featureMap(answers.get(k), "1-Gram");
+        if (answerWords == null) {
+          continue;
+        }
+        for (int i = 0; i < words.size(); i++) {
+          if (answerWords.containsKey(words.get(i))) {
+            postings.get(i).add(k);
+          }
+        }
+      }
+      return postings;
+  }
+
+  /**
+   * @return the k-th largest total among the candidates, a lower bound of the K-th best score
+   */
+  private static double kth(double[] total, int[] candidates, int size, int k) {
+      double[] values = new double[size];
+      for (int c = 0; c < size; c++) {
+        values[c] = total[candidates[c]];
+      }
+      Arrays.sort(values);
+      return values[size - k];
+  }
+
+  /**
+   * Pick the k best answers; ties go to the earlier answer
+   * @param scores the score of each answer
+   * @param k the number of answers to pick
+   * @return which answers are picked
+   */
+  private static boolean[] select(double[] scores, int k) {
+      boolean[] selected = new boolean[scores.length];
+      if (k >= scores.length) {
+        Arrays.fill(selected, true);
+        return selected;
+      }
+      Integer[] order = new Integer[scores.length];
+      for (int i = 0; i < order.length; i++) {
+        order[i] = i;
+      }
+      final double[] values = scores;
+      // A stable sort keeps earlier answers first among equal scores.
+      Arrays.sort(order, new Comparator<Integer>() {
+        @Override
+        public int compare(Integer a, Integer b) {
+          return Double.compare(values[b], values[a]);
+        }
+      });
+      for (int i = 0; i < k; i++) {
+        selected[order[i]] = true;
+      }
+      return selected;
+  }
+
+  /**
+   * @param question the question annotation
+   * @param key the feature, e.g. "2-Gram"
+   * @param statistics the document frequencies to weight by, or null for raw counts
+   * @param terms the terms of packed n-grams, or null
+   * @param n the order
+   * @return a vectorizer over the question's n-grams, packed or not
+   */
+  private static NgramVectorizer vectorizer(Annotation question, String key, CorpusStatistics statistics,
+          TermDictionary terms, int n) throws ProcessingException {
+      if (question.getFeatures().get(key + "Ids") != null) {
+        if (statistics != null && terms == null) {
+          throw new ProcessingException("Packed n-grams without terms metadata cannot be weighted by IDF");
+        }
+        return NgramVectorizer.packed(longs(question, key + "Ids"), ints(question, key + "Counts"),
+                statistics, terms, n);
+      }
+      return new NgramVectorizer(featureMap(question, key), statistics, n);
+  }
+
+  /**
+   * @param shared the vectorizers of other configurations on the same document, or null
+   * @return the vectorizer of vectorizer(question, key, statistics, terms, n), built once per document when shared
+   */
+  private static NgramVectorizer vectorizer(Annotation question, String key, CorpusStatistics statistics,
+          TermDictionary terms, int n, Shared shared) throws ProcessingException {
+      if (shared == null) {
+        return vectorizer(question, key, statistics, terms, n);
+      }
+      Key vectorizerKey = new Key(n, question, statistics);
+      NgramVectorizer vectorizer = shared.vectorizers.get(vectorizerKey);
+      if (vectorizer == null) {
+        vectorizer = vectorizer(question, key, statistics, terms, n);
+        shared.vectorizers.put(vectorizerKey, vectorizer);
+      }
+      return vectorizer;
+  }
+
+  /**
+   * @param shared the answer vectors of other configurations on the same document, or null
+   * @return the vector of vectorize(vectorizer, answer, key), built once per document when shared
+   */
+  private SparseVector vectorize(NgramVectorizer vectorizer, Annotation answer, String key, Shared shared)
+          throws ProcessingException {
+      if (shared == null) {
+        return vectorize(vectorizer, answer, key);
+      }
+      Map<Annotation, SparseVector> answers = shared.vectors.get(vectorizer);
+      if (answers == null) {
+        answers = new IdentityHashMap<>();
+        shared.vectors.put(vectorizer, answers);
+      }
+      SparseVector vector = answers.get(answer);
+      if (vector == null) {
+        vector = vectorize(vectorizer, answer, key);
+        answers.put(answer, vector);
+      }
+      return vector;
+  }
+
+  /**
+   * @param vectorizer the vectorizer of the question
+   * @param answer an answer annotation, sketched, packed or not
+   * @param key the feature, e.g. "2-Gram"
+   * @return the answer vector
+   */
+  private SparseVector vectorize(NgramVectorizer vectorizer, Annotation answer, String key)
+          throws ProcessingException {
+      CountMinSketch sketch = sketch(answer, key + "Sketch");
+      if (sketch != null) {
+        if (statistics != null) {
+          throw new ProcessingException("IDF weighting needs exact n-gram counts; " + answer.getId() + " is sketched");
+        }
+        return vectorizer.vectorize(sketch);
+      }
+      else if (answer.getFeatures().get(key + "Ids") != null) {
+        return vectorizer.vectorize(longs(answer, key + "Ids"), ints(answer, key + "Counts"));
+      }
+      return vectorizer.vectorize(featureMap(answer, key));
+  }
+
+  /**
+   * @param a an n-gram annotation
+   * @param key the feature, e.g. "2-Gram"
+   * @return the n-gram counts, or null if the annotation has none for that order
+   * @throws ProcessingException if the feature is not a map
+   */
+  private static Map<String, Integer> featureMap(Annotation a, String key) throws ProcessingException {
+      try {
+        return a.getFeatureMap(key);
+      } catch (LappsIOException e) {
+        throw new ProcessingException("Invalid " + key + " feature on " + a.getId(), e);
+      }
+  }
+
+  /**
+   * @param a an n-gram annotation
+   * @param key the feature, e.g. "2-GramSketch"
+   * @return the sketch, or null if the annotation was counted exactly
+   * @throws ProcessingException if the feature is not a sketch
+   */
+  private static CountMinSketch sketch(Annotation a, String key) throws ProcessingException {
+      Object value = a.getFeatures().get(key);
+      if (value == null) {
+        return null;
+      }
+      try {
+        return CountMinSketch.fromMap((Map<?, ?>) value);
+      } catch (ClassCastException | IllegalArgumentException e) {
+        throw new ProcessingException("Invalid " + key + " feature on " + a.getId(), e);
+      }
+  }
+
+  /**
+   * @param a an n-gram annotation
+   * @param key the feature, e.g. "2-GramIds"
+   * @return the array in process, or converted from the list a JSON round trip leaves; empty if missing
+   * @throws ProcessingException if the feature is not a list of numbers
+   */
+  static long[] longs(Annotation a, String key) throws ProcessingException {
+      Object value = a.getFeatures().get(key);
+      if (value == null) {
+        return new long[0];
+      }
+      if (value instanceof long[]) {
+        return (long[]) value;
+      }
+      List<?> list = list(a, key, value);
+      long[] longs = new long[list.size()];
+      for (int i = 0; i < longs.length; i++) {
+        longs[i] = ((Number) list.get(i)).longValue();
+      }
+      return longs;
+  }
+
+  private static int[] ints(Annotation a, String key) throws ProcessingException {
+      Object value = a.getFeatures().get(key);
+      if (value == null) {
+        return new int[0];
+      }
+      if (value instanceof int[]) {
+        return (int[]) value;
+      }
+      List<?> list = list(a, key, value);
+      int[] ints = new int[list.size()];
+      for (int i = 0; i < ints.length; i++) {
+        ints[i] = ((Number) list.get(i)).intValue();
+      }
+      return ints;
+  }
+
+  private static List<?> list(Annotation a, String key, Object value) throws ProcessingException {
+      if (!(value instanceof List)) {
+        throw new ProcessingException("Invalid " + key + " feature on " + a.getId());
+      }
+      for (Object element : (List<?>) value) {
+        if (!(element instanceof Number)) {
+          throw new ProcessingException("Invalid " + key + " feature on " + a.getId());
+        }
+      }
+      return (List<?>) value;
   }
 }
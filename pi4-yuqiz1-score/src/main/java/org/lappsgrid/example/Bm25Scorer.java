@@ -0,0 +1,66 @@
+package org.lappsgrid.example;
+
+/**
+ * Bm25Scorer: Okapi BM25 with the question as the query and its candidate
+ * answers as the collection. Document frequencies and the average answer
+ * length are taken from the answers of the question being scored, so it is
+ * normally used without CorpusStatistics.
+ *
+ */
+public class Bm25Scorer implements Scorer {
+  private final double k1;
+  private final double b;
+
+  /**
+   * BM25 with k1 = 1.2 and b = 0.75
+   */
+  public Bm25Scorer() {
+      this(1.2, 0.75);
+  }
+
+  public Bm25Scorer(double k1, double b) {
+      if (k1 < 0 || b < 0 || b > 1) {
+        throw new IllegalArgumentException("Invalid BM25 parameters: k1=" + k1 + ", b=" + b);
+      }
+      this.k1 = k1;
+      this.b = b;
+  }
+
+  @Override
+  public void score(SparseVector question, SparseVector[] answers, double[] scores) {
+      int n = answers.length;
+      if (n == 0) {
+        return;
+      }
+      // Question ids are dense, so document frequencies fit in a plain array.
+      int[] df = new int[question.size()];
+      double totalLength = 0;
+      for (SparseVector answer : answers) {
+        for (int i = 0; i < answer.size(); i++) {
+          df[answer.id(i)]++;
+        }
+        totalLength += answer.mass();
+      }
+      double[] idf = new double[df.length];
+      for (int t = 0; t < df.length; t++) {
+        idf[t] = Math.log(1 + (n - df[t] + 0.5) / (df[t] + 0.5));
+      }
+      double averageLength = totalLength / n;
+      for (int k = 0; k < n; k++) {
+        SparseVector answer = answers[k];
+        double norm = averageLength > 0 ? k1 * (1 - b + b * answer.mass() / averageLength) : k1;
+        double score = 0;
+        for (int i = 0; i < answer.size(); i++) {
+          double tf = answer.value(i);
+          int t = answer.id(i);
+          score += question.value(t) * idf[t] * tf * (k1 + 1) / (tf + norm);
+        }
+        scores[k] = score;
+      }
+  }
+
+  @Override
+  public String toString() {
+      return getClass().getName() + "(k1=" + k1 + ",b=" + b + ")";
+  }
+}
@@ -0,0 +1,23 @@
+package org.lappsgrid.example;
+
+/**
+ * BoundedScorer: a Scorer whose score of an answer depends on the question
+ * and that answer alone, and that can bound it before the answer is
+ * vectorized. AnswerScoring relies on both in top-K mode: answers are scored
+ * in subsets, and an answer whose bound cannot reach the K-th best score is
+ * never vectorized for the remaining orders.
+ *
+ */
+public interface BoundedScorer extends Scorer {
+
+  /**
+   * An upper bound of the score of an answer of which only sizes are known.
+   * Counts are raw, not IDF weighted.
+   * @param question the question vector
+   * @param answerMass the number of n-grams of the answer
+   * @param sharedMass an upper bound of the number of n-grams of the answer
+   *        that occur in the question; may be infinite
+   * @return a value no score() of such an answer exceeds
+   */
+  double bound(SparseVector question, double answerMass, double sharedMass);
+}
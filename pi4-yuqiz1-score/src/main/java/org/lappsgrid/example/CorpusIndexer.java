@@ -0,0 +1,244 @@
+package org.lappsgrid.example;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.lappsgrid.serialization.Data;
+import org.lappsgrid.serialization.LappsIOException;
+import org.lappsgrid.serialization.lif.Annotation;
+import org.lappsgrid.serialization.lif.Container;
+import org.lappsgrid.serialization.lif.View;
+
+/**
+ * CorpusIndexer: count the document frequency of every n-gram in the n-gram
+ * views of a set of LIF documents and write them in the format read by
+ * CorpusStatistics. Every question and answer counts as one document.
+ *
+ * Answers whose n-grams NgramAnnotation spilled to a CountMinSketch have no
+ * exact n-grams to count. They are left out of the index, both their
+ * n-grams and the document count, so the IDF of the remaining documents is
+ * consistent; sketched() reports how many were left out. Index a corpus
+ * processed without approximate mode to cover every answer.
+ *
+ * <pre>
+ * java org.lappsgrid.example.CorpusIndexer corpus.idf doc1.json doc2.json ...
+ * </pre>
+ *
+ */
+public class CorpusIndexer {
+  private long documents = 0;
+  private long sketched = 0;
+
+  // Open-addressing table of n-gram hash to df; a hash of 0 marks an empty slot.
+  private long[] hashes = new long[1024];
+  private int[] counts = new int[1024];
+  private int size = 0;
+
+  /**
+   * Count the n-grams of the last n-gram view of a document; sketched
+   * answers are skipped and counted in sketched()
+   * @param container a document processed by NgramAnnotation
+   * @return false if the document has no n-gram view
+   * @throws ProcessingException if an n-gram feature is not a map
+   */
+  public boolean add(Container container) throws ProcessingException {
+      List<View> views = container.getViews();
+      for (int v = views.size() - 1; v >= 0; v--) {
+        List<Annotation> annotations = views.get(v).getAnnotations();
+        if (!hasNgrams(annotations)) {
+          continue;
+        }
+        Object terms = views.get(v).getMetadata().get(TermDictionary.METADATA);
+        TermDictionary dictionary = terms instanceof List ? TermDictionary.fromList((List<?>) terms) : null;
+        for (Annotation a : annotations) {
+          Map<String, Object> features = a.getFeatures();
+          if (features.get("1-GramSketch") != null) {
+            sketched++;
+          }
+          else if (dictionary != null && features.get("1-GramIds") != null) {
+            add(a, dictionary);
+          }
+          else {
+            add(a);
+          }
+        }
+        return true;
+      }
+      return false;
+  }
+
+  /**
+   * @return whether some annotation carries unigrams in any of the NgramAnnotation formats
+   */
+  private static boolean hasNgrams(List<Annotation> annotations) {
+      for (Annotation a : annotations) {
+        Map<String, Object> features = a.getFeatures();
+        if (features.get("1-Gram") != null || features.get("1-GramIds") != null
+                || features.get("1-GramSketch") != null) {
+          return true;
+        }
+      }
+      return false;
+  }
+
+  private void add(Annotation a) throws ProcessingException {
+      documents++;
+      for (int n = 1; ; n++) {
+        Map<String, Integer> grams;
+        try {
+          grams = a.getFeatureMap(n + "-Gram");
+        } catch (LappsIOException e) {
+          throw new ProcessingException("Invalid " + n + "-Gram feature on " + a.getId(), e);
+        }
+        if (grams == null) {
+          return;
+        }
+        // The keys of a map are distinct, so each n-gram counts once per sentence.
+        for (String gram : grams.keySet()) {
+          increment(CorpusStatistics.hash(n, gram));
+        }
+      }
+  }
+
+  /**
+   * Count packed n-grams, built back into words to hash them as CorpusStatistics does
+   */
+  private void add(Annotation a, TermDictionary terms) throws ProcessingException {
+      documents++;
+      for (int n = 1; a.getFeatures().get(n + "-GramIds") != null; n++) {
+        for (long gram : AnswerScoring.longs(a, n + "-GramIds")) {
+          increment(CorpusStatistics.hash(n, terms.gram(gram, n)));
+        }
+      }
+  }
+
+  /**
+   * @return the number of sentences added so far
+   */
+  public long documents() {
+      return documents;
+  }
+
+  /**
+   * @return the number of sketched answers left out of the index so far
+   */
+  public long sketched() {
+      return sketched;
+  }
+
+  /**
+   * @return the number of distinct n-grams added so far
+   */
+  public int size() {
+      return size;
+  }
+
+  /**
+   * Write the index with a load factor of at most one half
+   * @param file the destination
+   * @throws IOException if the file cannot be written
+   */
+  public void write(File file) throws IOException {
+      int slots = Integer.highestOneBit(Math.max(size, 1)) * 4;
+      if ((long) CorpusStatistics.HEADER_SIZE + (long) slots * CorpusStatistics.SLOT_SIZE > Integer.MAX_VALUE) {
+        throw new IOException("Too many n-grams for one index file: " + size);
+      }
+      long[] tableHashes = new long[slots];
+      int[] tableCounts = new int[slots];
+      int mask = slots - 1;
+      for (int i = 0; i < hashes.length; i++) {
+        if (hashes[i] == 0) {
+          continue;
+        }
+        int slot = CorpusStatistics.mix(hashes[i]) & mask;
+        while (tableHashes[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        tableHashes[slot] = hashes[i];
+        tableCounts[slot] = counts[i];
+      }
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+        out.writeInt(CorpusStatistics.MAGIC);
+        out.writeInt(CorpusStatistics.VERSION);
+        out.writeLong(documents);
+        out.writeInt(slots);
+        out.writeInt(0);
+        for (int slot = 0; slot < slots; slot++) {
+          out.writeLong(tableHashes[slot]);
+          out.writeInt(tableCounts[slot]);
+        }
+      }
+  }
+
+  private void increment(long hash) {
+      int mask = hashes.length - 1;
+      int slot = CorpusStatistics.mix(hash) & mask;
+      while (hashes[slot] != 0) {
+        if (hashes[slot] == hash) {
+          counts[slot]++;
+          return;
+        }
+        slot = (slot + 1) & mask;
+      }
+      hashes[slot] = hash;
+      counts[slot] = 1;
+      if (++size * 2 > hashes.length) {
+        rehash();
+      }
+  }
+
+  private void rehash() {
+      long[] oldHashes = hashes;
+      int[] oldCounts = counts;
+      hashes = new long[oldHashes.length * 2];
+      counts = new int[oldHashes.length * 2];
+      int mask = hashes.length - 1;
+      for (int i = 0; i < oldHashes.length; i++) {
+        if (oldHashes[i] == 0) {
+          continue;
+        }
+        int slot = CorpusStatistics.mix(oldHashes[i]) & mask;
+        while (hashes[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        hashes[slot] = oldHashes[i];
+        counts[slot] = oldCounts[i];
+      }
+  }
+
+  /**
+   * Index LIF files produced by the pipeline up to NgramAnnotation
+   * @param args the index file followed by the input files
+   */
+  public static void main(String[] args) throws Exception {
+      if (args.length < 2) {
+        System.err.println("Usage: CorpusIndexer <index file> <LIF file>...");
+        System.exit(1);
+      }
+      CorpusIndexer indexer = new CorpusIndexer();
+      for (String path : Arrays.asList(args).subList(1, args.length)) {
+        Data data;
+        try (InputStream in = new FileInputStream(path)) {
+          data = LifWriter.read(in);
+        }
+        Container container = AbstractProcessingService.toContainer(data);
+        if (container == null || !indexer.add(container)) {
+          System.err.println("Skipping " + path + ": no n-gram view");
+        }
+      }
+      indexer.write(new File(args[0]));
+      System.out.println("Indexed " + indexer.size() + " n-grams in " + indexer.documents() + " sentences");
+      if (indexer.sketched() > 0) {
+        System.err.println("Left out " + indexer.sketched() + " sketched answers; index a corpus processed"
+                + " without approximate n-grams to include them");
+      }
+  }
+}
@@ -0,0 +1,133 @@
+package org.lappsgrid.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * CorpusStatistics: read-only document frequencies of n-grams, memory-mapped
+ * from a file written by CorpusIndexer. The file is an open-addressing table
+ * of (64-bit n-gram hash, df) slots, so a lookup touches one or two pages and
+ * several services opening the same file share it through the page cache.
+ *
+ * N-grams are identified by their hash only; two n-grams with the same
+ * 64-bit hash share a frequency.
+ *
+ */
+public class CorpusStatistics {
+  static final int MAGIC = 0x4C494446;
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 24;
+  static final int SLOT_SIZE = 12;
+
+  private static final long FNV_OFFSET = 0xCBF29CE484222325L;
+  private static final long FNV_PRIME = 0x100000001B3L;
+
+  private final String source;
+  private final ByteBuffer buffer;
+  private final long documents;
+  private final int mask;
+
+  private CorpusStatistics(String source, ByteBuffer buffer) throws IOException {
+      if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+        throw new IOException("Not a corpus statistics file");
+      }
+      if (buffer.getInt(4) != VERSION) {
+        throw new IOException("Unsupported corpus statistics version " + buffer.getInt(4));
+      }
+      this.source = source;
+      this.buffer = buffer;
+      documents = buffer.getLong(8);
+      int slots = buffer.getInt(16);
+      if (Integer.bitCount(slots) != 1 || HEADER_SIZE + (long) slots * SLOT_SIZE > buffer.capacity()) {
+        throw new IOException("Corrupt corpus statistics table of " + slots + " slots");
+      }
+      mask = slots - 1;
+  }
+
+  /**
+   * Map an index file
+   * @param path the file written by CorpusIndexer
+   * @return the statistics
+   * @throws IOException if the file cannot be mapped or is not an index
+   */
+  public static CorpusStatistics open(String path) throws IOException {
+      return open(new File(path));
+  }
+
+  public static CorpusStatistics open(File file) throws IOException {
+      try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+              FileChannel channel = raf.getChannel()) {
+        // The mapping stays valid after the channel is closed.
+        return new CorpusStatistics(file.getAbsolutePath(), channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+      }
+  }
+
+  /**
+   * @return the number of sentences indexed
+   */
+  public long documents() {
+      return documents;
+  }
+
+  /**
+   * @param n the order of the n-gram
+   * @param gram the words of the n-gram joined by a space
+   * @return the number of indexed sentences containing the n-gram
+   */
+  public int df(int n, CharSequence gram) {
+      long hash = hash(n, gram);
+      int slot = mix(hash) & mask;
+      // CorpusIndexer leaves half the slots empty; a full table is corrupt, so stop after one round.
+      for (int probes = 0; probes <= mask; probes++) {
+        int offset = HEADER_SIZE + slot * SLOT_SIZE;
+        long stored = buffer.getLong(offset);
+        if (stored == hash) {
+          return buffer.getInt(offset + 8);
+        }
+        if (stored == 0) {
+          return 0;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return 0;
+  }
+
+  /**
+   * The BM25 inverse document frequency, which stays positive for n-grams
+   * found in more than half of the sentences
+   * @param n the order of the n-gram
+   * @param gram the words of the n-gram joined by a space
+   * @return log(1 + (N - df + 0.5) / (df + 0.5))
+   */
+  public double idf(int n, CharSequence gram) {
+      int df = df(n, gram);
+      return Math.log(1 + (documents - df + 0.5) / (df + 0.5));
+  }
+
+  @Override
+  public String toString() {
+      return source + "#" + documents;
+  }
+
+  /**
+   * FNV-1a over the order and the characters of the n-gram. 0 marks an empty
+   * slot and is never returned.
+   */
+  static long hash(int n, CharSequence gram) {
+      long h = (FNV_OFFSET ^ n) * FNV_PRIME;
+      for (int i = 0; i < gram.length(); i++) {
+        h = (h ^ gram.charAt(i)) * FNV_PRIME;
+      }
+      return h == 0 ? 1 : h;
+  }
+
+  static int mix(long h) {
+      h ^= (h >>> 33);
+      h *= 0xFF51AFD7ED558CCDL;
+      h ^= (h >>> 33);
+      return (int) h;
+  }
+}
@@ -0,0 +1,39 @@
+package org.lappsgrid.example;
+
+/**
+ * CosineScorer: the cosine of the angle between the count vectors of the
+ * question and the answer. With raw counts every answer count is at least
+ * 1, so the answer's norm is at least the square root of its mass and the dot
+ * product at most the largest question count times the shared mass.
+ *
+ */
+public class CosineScorer implements BoundedScorer {
+
+  @Override
+  public void score(SparseVector question, SparseVector[] answers, double[] scores) {
+      double norm = question.norm();
+      for (int k = 0; k < answers.length; k++) {
+        SparseVector answer = answers[k];
+        double denominator = norm * answer.norm();
+        scores[k] = denominator > 0 ? question.dot(answer) / denominator : 0;
+      }
+  }
+
+  @Override
+  public double bound(SparseVector question, double answerMass, double sharedMass) {
+      double norm = question.norm();
+      if (norm == 0 || answerMass == 0 || sharedMass == 0) {
+        return 0;
+      }
+      double max = 0;
+      for (int i = 0; i < question.size(); i++) {
+        max = Math.max(max, question.value(i));
+      }
+      return Math.min(1, max * Math.min(answerMass, sharedMass) / (norm * Math.sqrt(answerMass)));
+  }
+
+  @Override
+  public String toString() {
+      return getClass().getName();
+  }
+}
@@ -0,0 +1,202 @@
+package org.lappsgrid.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.lappsgrid.serialization.LappsIOException;
+import org.lappsgrid.serialization.lif.Annotation;
+
+/**
+ * MinHashDeduplicator: find the near-duplicate answers of a question so that
+ * only one of each cluster needs to be scored. An answer's shingles are its
+ * n-grams of orders 1..order; its MinHash signature holds bands * rows
+ * minimum hashes, and the fraction of equal entries of two signatures
+ * estimates the Jaccard similarity of their shingle sets.
+ *
+ * Answers are visited in document order. An answer whose signature agrees
+ * with an earlier representative on all rows of some band (the LSH index) and
+ * whose estimated similarity to it reaches the threshold joins that
+ * representative; otherwise it becomes a representative itself. Members are
+ * compared with representatives only, so clusters do not drift by chaining.
+ *
+ * Shingles are hashed as they are stored: n-gram maps by their words, packed
+ * n-grams by their id tuple. Sketched answers have no n-gram set and are
+ * never merged.
+ *
+ */
+public class MinHashDeduplicator {
+  private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+  private final int order;
+  private final int bands;
+  private final int rows;
+  private final double threshold;
+  private final long[] seeds;
+  private final long[] multipliers;
+
+  /**
+   * Unigram and bigram shingles, 8 bands of 4 rows, similarity 0.8
+   */
+  public MinHashDeduplicator() {
+      this(2, 8, 4, 0.8);
+  }
+
+  /**
+   * @param order the highest n-gram order of the shingles
+   * @param bands the number of LSH bands
+   * @param rows the number of hashes per band
+   * @param threshold the estimated Jaccard similarity at which an answer joins a representative
+   */
+  public MinHashDeduplicator(int order, int bands, int rows, double threshold) {
+      if (order < 1 || bands < 1 || rows < 1) {
+        throw new IllegalArgumentException("order, bands and rows must be at least 1: "
+                + order + ", " + bands + ", " + rows);
+      }
+      if (!(threshold > 0 && threshold <= 1)) {
+        throw new IllegalArgumentException("threshold must be in (0, 1]: " + threshold);
+      }
+      this.order = order;
+      this.bands = bands;
+      this.rows = rows;
+      this.threshold = threshold;
+      int k = bands * rows;
+      seeds = new long[k];
+      multipliers = new long[k];
+      long state = GOLDEN;
+      for (int i = 0; i < k; i++) {
+        seeds[i] = mix(state += GOLDEN);
+        // Multiplying by an odd number permutes the 64-bit hashes.
+        multipliers[i] = mix(state += GOLDEN) | 1;
+      }
+  }
+
+  /**
+   * Cluster the answers of one question
+   * @param answers the n-gram annotations of the answers
+   * @return for each answer, the index of the answer whose score it takes; its own index for a representative
+   * @throws ProcessingException if an n-gram feature is not a map or id array
+   */
+  public int[] representatives(List<Annotation> answers) throws ProcessingException {
+      int count = answers.size();
+      int[] representative = new int[count];
+      long[][] signatures = new long[count][];
+      Map<Long, List<Integer>> buckets = new HashMap<>();
+      long[] keys = new long[bands];
+      for (int k = 0; k < count; k++) {
+        representative[k] = k;
+        long[] signature = signature(answers.get(k));
+        if (signature == null) {
+          continue;
+        }
+        signatures[k] = signature;
+        for (int b = 0; b < bands; b++) {
+          keys[b] = band(signature, b);
+        }
+        search:
+        for (int b = 0; b < bands; b++) {
+          List<Integer> bucket = buckets.get(keys[b]);
+          if (bucket == null) {
+            continue;
+          }
+          for (int r : bucket) {
+            if (similarity(signatures[r], signature) >= threshold) {
+              representative[k] = r;
+              break search;
+            }
+          }
+        }
+        if (representative[k] == k) {
+          for (int b = 0; b < bands; b++) {
+            List<Integer> bucket = buckets.get(keys[b]);
+            if (bucket == null) {
+              bucket = new ArrayList<>(1);
+              buckets.put(keys[b], bucket);
+            }
+            bucket.add(k);
+          }
+        }
+      }
+      return representative;
+  }
+
+  /**
+   * @return the MinHash signature of an answer, or null if it is sketched
+   */
+  private long[] signature(Annotation answer) throws ProcessingException {
+      long[] signature = new long[seeds.length];
+      Arrays.fill(signature, Long.MAX_VALUE);
+      for (int n = 1; n <= order; n++) {
+        String key = n + "-Gram";
+        Map<String, Object> features = answer.getFeatures();
+        if (features.get(key + "Sketch") != null) {
+          return null;
+        }
+        if (features.get(key + "Ids") != null) {
+          for (long gram : AnswerScoring.longs(answer, key + "Ids")) {
+            add(signature, mix(gram * GOLDEN + n));
+          }
+        }
+        else {
+          Map<String, ?> map;
+          try {
+            map = answer.getFeatureMap(key);
+          } catch (LappsIOException e) {
+            throw new ProcessingException("Invalid " + key + " feature on " + answer.getId(), e);
+          }
+          if (map != null) {
+            for (String gram : map.keySet()) {
+              add(signature, mix(CountMinSketch.hash(gram) * GOLDEN + n));
+            }
+          }
+        }
+      }
+      return signature;
+  }
+
+  private void add(long[] signature, long shingle) {
+      for (int i = 0; i < signature.length; i++) {
+        long h = (shingle ^ seeds[i]) * multipliers[i];
+        if (h < signature[i]) {
+          signature[i] = h;
+        }
+      }
+  }
+
+  private long band(long[] signature, int b) {
+      long h = b;
+      for (int i = b * rows, end = i + rows; i < end; i++) {
+        h = (h + signature[i]) * GOLDEN + 1;
+      }
+      return h;
+  }
+
+  /**
+   * @return the fraction of equal entries, an estimate of the Jaccard similarity
+   */
+  private static double similarity(long[] a, long[] b) {
+      int equal = 0;
+      for (int i = 0; i < a.length; i++) {
+        if (a[i] == b[i]) {
+          equal++;
+        }
+      }
+      return (double) equal / a.length;
+  }
+
+  private static long mix(long h) {
+      h ^= (h >>> 33);
+      h *= 0xFF51AFD7ED558CCDL;
+      h ^= (h >>> 33);
+      h *= 0xC4CEB9FE1A85EC53L;
+      h ^= (h >>> 33);
+      return h;
+  }
+
+  @Override
+  public String toString() {
+      return getClass().getName() + "(" + order + "," + bands + "x" + rows + "," + threshold + ")";
+  }
+}
@@ -0,0 +1,274 @@
+package org.lappsgrid.example;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * NgramVectorizer: turn the n-gram feature maps of one question and its
+ * answers into SparseVectors. The question's n-grams are numbered 0..k-1 in
+ * the order they occur; an answer keeps only the n-grams it shares with the
+ * question, but its mass and norm are computed over all of them.
+ *
+ * Given CorpusStatistics, every count is multiplied by the IDF of its n-gram,
+ * so the vectors hold tf-idf weights and common n-grams count for less.
+ *
+ * packed() builds a vectorizer over the packed id tuples NgramAnnotation
+ * writes in packed mode; n-grams are then matched by comparing longs in a
+ * primitive table and Strings are only built to look up IDF.
+ *
+ * An answer counted in a CountMinSketch is vectorized by estimating the count
+ * of each question n-gram; its mass is exact and its norm an upper bound.
+ *
+ */
+public class NgramVectorizer {
+  private final Map<String, Integer> dictionary;
+  private final SparseVector question;
+  private final CorpusStatistics statistics;
+  private final int n;
+
+  // Packed mode: question n-gram ids by packed tuple, and the terms of the tuples.
+  private final long[] keys;
+  private final int[] slots;
+  private final TermDictionary terms;
+
+  // CountMinSketch.hash() of each question n-gram, computed on first use.
+  private long[] hashes;
+
+  // Scratch space for building answer vectors, reused between answers.
+  private int[] ids;
+  private double[] values;
+
+  /**
+   * @param questionMap n-gram to count for the question, or null if it has none
+   */
+  public NgramVectorizer(Map<String, ?> questionMap) {
+      this(questionMap, null, 0);
+  }
+
+  /**
+   * @param questionMap n-gram to count for the question, or null if it has none
+   * @param statistics the document frequencies to weight by, or null for raw counts
+   * @param n the order of the n-grams in the maps
+   */
+  public NgramVectorizer(Map<String, ?> questionMap, CorpusStatistics statistics, int n) {
+      this.statistics = statistics;
+      this.n = n;
+      keys = null;
+      slots = null;
+      terms = null;
+      int size = questionMap == null ? 0 : questionMap.size();
+      dictionary = new HashMap<>(size * 2);
+      double[] counts = new double[size];
+      double mass = 0;
+      double squares = 0;
+      if (questionMap != null) {
+        for (Map.Entry<String, ?> entry : questionMap.entrySet()) {
+          double count = weight(entry.getKey(), entry.getValue());
+          counts[dictionary.size()] = count;
+          dictionary.put(entry.getKey(), dictionary.size());
+          mass += count;
+          squares += count * count;
+        }
+      }
+      int[] questionIds = new int[size];
+      for (int i = 0; i < size; i++) {
+        questionIds[i] = i;
+      }
+      question = new SparseVector(questionIds, counts, size, mass, Math.sqrt(squares));
+      ids = new int[Math.max(size, 1)];
+      values = new double[Math.max(size, 1)];
+  }
+
+  private NgramVectorizer(long[] questionKeys, int[] questionCounts, CorpusStatistics statistics,
+          TermDictionary terms, int n) {
+      this.statistics = statistics;
+      this.n = n;
+      this.terms = terms;
+      dictionary = null;
+      int size = questionKeys.length;
+      keys = questionKeys;
+      slots = new int[Integer.highestOneBit(Math.max(size, 1) * 2) * 2];
+      double[] counts = new double[size];
+      int[] questionIds = new int[size];
+      double mass = 0;
+      double squares = 0;
+      for (int i = 0; i < size; i++) {
+        double count = weight(questionKeys[i], questionCounts[i]);
+        counts[i] = count;
+        questionIds[i] = i;
+        mass += count;
+        squares += count * count;
+        int slot = slot(questionKeys[i]);
+        while (slots[slot] != 0) {
+          slot = (slot + 1) & (slots.length - 1);
+        }
+        slots[slot] = i + 1;
+      }
+      question = new SparseVector(questionIds, counts, size, mass, Math.sqrt(squares));
+      ids = new int[Math.max(size, 1)];
+      values = new double[Math.max(size, 1)];
+  }
+
+  /**
+   * A vectorizer over packed n-grams
+   * @param questionKeys the TermDictionary.pack() tuples of the question, distinct
+   * @param questionCounts their counts
+   * @param statistics the document frequencies to weight by, or null for raw counts
+   * @param terms the terms the tuples refer to; only needed with statistics or sketched answers
+   * @param n the order of the n-grams
+   * @return the vectorizer
+   */
+  public static NgramVectorizer packed(long[] questionKeys, int[] questionCounts, CorpusStatistics statistics,
+          TermDictionary terms, int n) {
+      return new NgramVectorizer(questionKeys, questionCounts, statistics, terms, n);
+  }
+
+  /**
+   * @return the question vector
+   */
+  public SparseVector question() {
+      return question;
+  }
+
+  /**
+   * @param answerMap n-gram to count for an answer, or null if it has none
+   * @return the answer vector over the question's ids
+   */
+  public SparseVector vectorize(Map<String, ?> answerMap) {
+      if (answerMap == null) {
+        return new SparseVector(new int[0], new double[0], 0, 0, 0);
+      }
+      int size = 0;
+      double mass = 0;
+      double squares = 0;
+      for (Map.Entry<String, ?> entry : answerMap.entrySet()) {
+        double count = weight(entry.getKey(), entry.getValue());
+        mass += count;
+        squares += count * count;
+        Integer id = dictionary.get(entry.getKey());
+        if (id != null) {
+          ids[size] = id;
+          values[size] = count;
+          size++;
+        }
+      }
+      int[] answerIds = Arrays.copyOf(ids, size);
+      double[] answerValues = Arrays.copyOf(values, size);
+      sort(answerIds, answerValues, size);
+      return new SparseVector(answerIds, answerValues, size, mass, Math.sqrt(squares));
+  }
+
+  /**
+   * @param answerKeys the packed n-grams of an answer, from the same document as the question
+   * @param answerCounts their counts
+   * @return the answer vector over the question's ids
+   */
+  public SparseVector vectorize(long[] answerKeys, int[] answerCounts) {
+      int size = 0;
+      double mass = 0;
+      double squares = 0;
+      int mask = slots.length - 1;
+      for (int i = 0; i < answerKeys.length; i++) {
+        double count = weight(answerKeys[i], answerCounts[i]);
+        mass += count;
+        squares += count * count;
+        int slot = slot(answerKeys[i]);
+        while (slots[slot] != 0) {
+          int id = slots[slot] - 1;
+          if (keys[id] == answerKeys[i]) {
+            ids[size] = id;
+            values[size] = count;
+            size++;
+            break;
+          }
+          slot = (slot + 1) & mask;
+        }
+      }
+      int[] answerIds = Arrays.copyOf(ids, size);
+      double[] answerValues = Arrays.copyOf(values, size);
+      sort(answerIds, answerValues, size);
+      return new SparseVector(answerIds, answerValues, size, mass, Math.sqrt(squares));
+  }
+
+  /**
+   * @param sketch the approximate n-gram counts of an answer
+   * @return the answer vector over the question's ids, with estimated counts
+   * @throws IllegalStateException if the counts are to be weighted by IDF, which needs exact n-grams
+   */
+  public SparseVector vectorize(CountMinSketch sketch) {
+      if (statistics != null) {
+        throw new IllegalStateException("IDF weighting needs exact n-gram counts");
+      }
+      long[] questionHashes = hashes();
+      int size = 0;
+      for (int i = 0; i < questionHashes.length; i++) {
+        int count = sketch.estimate(questionHashes[i]);
+        if (count > 0) {
+          ids[size] = i;
+          values[size] = count;
+          size++;
+        }
+      }
+      // Ids were visited in increasing order, so there is nothing to sort.
+      return new SparseVector(Arrays.copyOf(ids, size), Arrays.copyOf(values, size), size, sketch.total(),
+              Math.sqrt(sketch.sumOfSquares()));
+  }
+
+  private long[] hashes() {
+      if (hashes == null) {
+        hashes = new long[question.size()];
+        if (dictionary != null) {
+          for (Map.Entry<String, Integer> entry : dictionary.entrySet()) {
+            hashes[entry.getValue()] = CountMinSketch.hash(entry.getKey());
+          }
+        }
+        else {
+          for (int i = 0; i < keys.length; i++) {
+            hashes[i] = CountMinSketch.hash(terms.gram(keys[i], n));
+          }
+        }
+      }
+      return hashes;
+  }
+
+  private int slot(long key) {
+      key *= 0x9E3779B97F4A7C15L;
+      return (int) (key ^ (key >>> 32)) & (slots.length - 1);
+  }
+
+  /**
+   * Insertion sort by id; answers share few n-grams with the question
+   */
+  private static void sort(int[] ids, double[] values, int size) {
+      for (int i = 1; i < size; i++) {
+        int id = ids[i];
+        double value = values[i];
+        int j = i - 1;
+        while (j >= 0 && ids[j] > id) {
+          ids[j + 1] = ids[j];
+          values[j + 1] = values[j];
+          j--;
+        }
+        ids[j + 1] = id;
+        values[j + 1] = value;
+      }
+  }
+
+  private double weight(long key, int count) {
+      return statistics == null ? count : count * statistics.idf(n, terms.gram(key, n));
+  }
+
+  private double weight(String gram, Object value) {
+      double count = count(value);
+      return statistics == null ? count : count * statistics.idf(n, gram);
+  }
+
+  /**
+   * Counts are Integers when the map comes from NgramAnnotation in process and
+   * may be any Number after a JSON round trip
+   */
+  private static double count(Object value) {
+      return value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(value.toString());
+  }
+}
@@ -0,0 +1,34 @@
+package org.lappsgrid.example;
+
+/**
+ * OverlapScorer: the clipped count of question n-grams found in the answer,
+ * divided by the number of n-grams in the question. An answer cannot overlap
+ * by more than the n-grams it shares with the question, which bounds it.
+ *
+ */
+public class OverlapScorer implements BoundedScorer {
+
+  @Override
+  public void score(SparseVector question, SparseVector[] answers, double[] scores) {
+      double total = question.mass();
+      for (int k = 0; k < answers.length; k++) {
+        SparseVector answer = answers[k];
+        double overlap = 0;
+        for (int i = 0; i < answer.size(); i++) {
+          overlap += Math.min(answer.value(i), question.value(answer.id(i)));
+        }
+        scores[k] = total > 0 ? overlap / total : 0;
+      }
+  }
+
+  @Override
+  public double bound(SparseVector question, double answerMass, double sharedMass) {
+      double total = question.mass();
+      return total > 0 ? Math.min(Math.min(answerMass, sharedMass), total) / total : 0;
+  }
+
+  @Override
+  public String toString() {
+      return getClass().getName();
+  }
+}
@@ -0,0 +1,22 @@
+package org.lappsgrid.example;
+
+/**
+ * Scorer: a similarity between a question and its candidate answers. All the
+ * answers of a question are scored in one call so that scorers needing
+ * statistics over the candidates, such as BM25, can collect them in the same
+ * pass.
+ *
+ * toString() should name the scorer and its parameters; it is part of the
+ * configuration AnswerScoring reports for result caching.
+ *
+ */
+public interface Scorer {
+
+  /**
+   * Score every answer of one question for a single n-gram order
+   * @param question the question vector; its ids are 0..size()-1
+   * @param answers the answer vectors over the question's ids
+   * @param scores receives the score of answers[i] at index i
+   */
+  void score(SparseVector question, SparseVector[] answers, double[] scores);
+}
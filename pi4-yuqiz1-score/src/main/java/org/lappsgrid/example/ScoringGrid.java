@@ -0,0 +1,54 @@
+package org.lappsgrid.example;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.lappsgrid.serialization.lif.Container;
+import org.lappsgrid.serialization.lif.View;
+
+/**
+ * ScoringGrid: score one n-gram document with many AnswerScoring
+ * configurations at once. Each question is vectorized once per n-gram order
+ * and statistics, each answer once per question vectorizer, and each order
+ * scored once per scorer and deduplicator; the configurations then only
+ * combine those scores with their own weights and select their top K. The
+ * views appended are those of running each configuration on its own.
+ *
+ */
+public class ScoringGrid implements GridProcessor {
+  private final List<AnswerScoring> configurations;
+  private final List<String> names;
+
+  /**
+   * @param configurations the points of the grid; configurations sharing a
+   *        Scorer, CorpusStatistics or MinHashDeduplicator instance share its work
+   */
+  public ScoringGrid(List<AnswerScoring> configurations) {
+      if (configurations.isEmpty()) {
+        throw new IllegalArgumentException("No configurations to score");
+      }
+      this.configurations = new ArrayList<>(configurations);
+      List<String> names = new ArrayList<>(configurations.size());
+      for (AnswerScoring configuration : configurations) {
+        names.add(configuration.getConfiguration());
+      }
+      this.names = Collections.unmodifiableList(names);
+  }
+
+  @Override
+  public List<String> getConfigurations() {
+      return names;
+  }
+
+  @Override
+  public Container process(Container container) throws ProcessingException {
+      List<View> views = container.getViews();
+      View ngrams = views.get(views.size() - 1);
+      AnswerScoring.Shared shared = new AnswerScoring.Shared();
+      for (AnswerScoring configuration : configurations) {
+        configuration.score(ngrams, container.newView(), shared);
+      }
+      return container;
+  }
+}
@@ -0,0 +1,92 @@
+package org.lappsgrid.example;
+
+/**
+ * SparseVector: the n-gram counts of one sentence for one order, as parallel
+ * arrays of term ids in increasing order and their weights. Only the terms
+ * that have an id are stored; mass and norm still cover every term of the
+ * sentence so scorers can normalize without the full map.
+ *
+ */
+public class SparseVector {
+  private final int[] ids;
+  private final double[] values;
+  private final int size;
+  private final double mass;
+  private final double norm;
+
+  /**
+   * @param ids term ids in increasing order
+   * @param values the weight of each id
+   * @param size number of entries in use
+   * @param mass sum of the weights of every term of the sentence
+   * @param norm Euclidean norm over every term of the sentence
+   */
+  public SparseVector(int[] ids, double[] values, int size, double mass, double norm) {
+      this.ids = ids;
+      this.values = values;
+      this.size = size;
+      this.mass = mass;
+      this.norm = norm;
+  }
+
+  /**
+   * @return number of stored terms
+   */
+  public int size() {
+      return size;
+  }
+
+  /**
+   * @param i an entry, 0..size()-1
+   * @return the term id of the entry
+   */
+  public int id(int i) {
+      return ids[i];
+  }
+
+  /**
+   * @param i an entry, 0..size()-1
+   * @return the weight of the entry
+   */
+  public double value(int i) {
+      return values[i];
+  }
+
+  /**
+   * @return sum of the weights of every term, stored or not
+   */
+  public double mass() {
+      return mass;
+  }
+
+  /**
+   * @return Euclidean norm over every term, stored or not
+   */
+  public double norm() {
+      return norm;
+  }
+
+  /**
+   * @param other another vector over the same ids
+   * @return the dot product over the shared ids
+   */
+  public double dot(SparseVector other) {
+      double sum = 0;
+      int i = 0;
+      int j = 0;
+      while (i < size && j < other.size) {
+        int a = ids[i];
+        int b = other.ids[j];
+        if (a == b) {
+          sum += values[i++] * other.values[j++];
+        }
+        else if (a < b) {
+          i++;
+        }
+        else {
+          j++;
+        }
+      }
+      return sum;
+  }
+}
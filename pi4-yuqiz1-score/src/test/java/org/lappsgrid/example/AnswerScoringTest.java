@@ -0,0 +1,141 @@
+package org.lappsgrid.example;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.lappsgrid.discriminator.Discriminators.Uri;
+import org.lappsgrid.serialization.lif.Annotation;
+import org.lappsgrid.serialization.lif.Container;
+import org.lappsgrid.serialization.lif.View;
+
+public class AnswerScoringTest {
+  static final Scorer[] SCORERS = { new OverlapScorer(), new CosineScorer(), new Bm25Scorer() };
+  static final double[][] WEIGHTS = { { 1 }, { 0, 1 }, { 1, 1, 1 }, { 0.2, 0.3, 0.5 }, { 0, 0, 1 } };
+
+  /**
+   * Annotate a sentence the way NgramAnnotation does
+   * @param sketch the maxExact of an approximate answer, or 0 to count exactly
+   */
+  static void annotate(View view, String id, String type, List<String> words, boolean packed, TermDictionary terms,
+          int sketch) {
+      Annotation a = view.newAnnotation(id, Uri.SENTENCE, 0, 1);
+      a.addFeature("Type", type);
+      NgramCounter counter = sketch > 0 ? new NgramCounter(3, terms, sketch, 0.05, 0.1) : new NgramCounter(3, terms);
+      counter.reset(sketch > 0);
+      for (String word : words) {
+        counter.add(word);
+      }
+      for (int n = 1; n <= 3; n++) {
+        if (counter.isApproximate()) {
+          a.addFeature(n + "-GramSketch", counter.sketch(n).toMap());
+        }
+        else if (packed) {
+          a.addFeature(n + "-GramIds", counter.packed(n));
+          a.addFeature(n + "-GramCounts", counter.counts(n));
+        }
+        else {
+          a.addFeature(n + "-Gram", counter.toMap(n));
+        }
+      }
+  }
+
+  /**
+   * A random n-gram view of one question; some answers share words with it, a
+   * few are sketched
+   */
+  static View document(Random random, boolean packed) {
+      int vocabulary = 5 + random.nextInt(200);
+      TermDictionary terms = new TermDictionary();
+      View view = new Container().newView();
+      List<String> question = new ArrayList<>();
+      for (int i = random.nextInt(8); i >= 0; i--) {
+        question.add("w" + random.nextInt(vocabulary));
+      }
+      annotate(view, "Question", "Question", question, packed, terms, 0);
+      for (int k = random.nextInt(60); k >= 0; k--) {
+        List<String> words = new ArrayList<>();
+        for (int i = random.nextInt(12); i > 0; i--) {
+          words.add(random.nextInt(4) == 0 ? question.get(random.nextInt(question.size()))
+                  : "w" + random.nextInt(vocabulary));
+        }
+        annotate(view, "A" + k, "Answer", words, packed, terms, random.nextInt(10) == 0 ? 2 : 0);
+      }
+      if (packed) {
+        view.getMetadata().put(TermDictionary.METADATA, terms.toList());
+      }
+      return view;
+  }
+
+  static List<Annotation> score(AnswerScoring scoring, View ngrams) throws ProcessingException {
+      Container container = new Container();
+      container.getViews().add(ngrams);
+      return scoring.process(container).getView(1).getAnnotations();
+  }
+
+  static double scoreOf(Annotation a) {
+      return Double.parseDouble(a.getFeature("Score"));
+  }
+
+  @Test
+  public void topKMatchesFullScoring() throws Exception {
+      Random random = new Random(7);
+      for (int trial = 0; trial < 100; trial++) {
+        View ngrams = document(random, random.nextBoolean());
+        for (Scorer scorer : SCORERS) {
+          for (double[] weights : WEIGHTS) {
+            List<Annotation> full = score(new AnswerScoring(scorer, null, weights, 0), ngrams);
+            Map<String, Double> scores = new HashMap<>();
+            double[] sorted = new double[full.size()];
+            for (int i = 0; i < sorted.length; i++) {
+              scores.put(full.get(i).getId(), scoreOf(full.get(i)));
+              sorted[i] = scoreOf(full.get(i));
+            }
+            Arrays.sort(sorted);
+            for (int k : new int[] { 1, 3, 10 }) {
+              List<Annotation> top = score(new AnswerScoring(scorer, null, weights, k), ngrams);
+              assertEquals(Math.min(k, full.size()), top.size());
+              // The same scores as full scoring, and the K best of them; answers keep document order.
+              double[] best = new double[top.size()];
+              for (int i = 0; i < best.length; i++) {
+                assertEquals(scores.get(top.get(i).getId()), scoreOf(top.get(i)), 0);
+                best[i] = scoreOf(top.get(i));
+              }
+              Arrays.sort(best);
+              assertArrayEquals(Arrays.copyOfRange(sorted, sorted.length - best.length, sorted.length), best, 0);
+            }
+          }
+        }
+      }
+  }
+
+  @Test
+  public void answersWithoutSharedWordsAreNotSelected() throws Exception {
+      View view = new Container().newView();
+      TermDictionary terms = new TermDictionary();
+      annotate(view, "Question", "Question", Arrays.asList("who", "shot", "Lincoln"), false, terms, 0);
+      annotate(view, "A1", "Answer", Arrays.asList("nobody", "knows"), false, terms, 0);
+      annotate(view, "A2", "Answer", Arrays.asList("Booth", "shot", "Lincoln"), false, terms, 0);
+      annotate(view, "A3", "Answer", Arrays.asList("who", "was", "Booth"), false, terms, 0);
+
+      List<Annotation> top = score(new AnswerScoring(new OverlapScorer(), null, new double[] { 1, 1 }, 2), view);
+
+      assertEquals(2, top.size());
+      assertEquals("A2", top.get(0).getId());
+      assertEquals("A3", top.get(1).getId());
+      assertTrue(scoreOf(top.get(0)) > scoreOf(top.get(1)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsAllZeroWeights() {
+      new AnswerScoring(new OverlapScorer(), null, new double[] { 0, 0 }, 0);
+  }
+}
@@ -0,0 +1,163 @@
+package org.lappsgrid.example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lappsgrid.discriminator.Discriminators.Uri;
+import org.lappsgrid.serialization.lif.Annotation;
+import org.lappsgrid.serialization.lif.Container;
+import org.lappsgrid.serialization.lif.View;
+
+public class CorpusIndexerTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  static Map<String, Integer> grams(String... grams) {
+      Map<String, Integer> counts = new HashMap<>();
+      for (String gram : grams) {
+        counts.put(gram, 1);
+      }
+      return counts;
+  }
+
+  /**
+   * A document with an n-gram view of three sentences, one of them sketched
+   */
+  static Container document() {
+      Container container = new Container();
+      container.setText("");
+      container.newView();
+      View view = container.newView();
+      Annotation q = view.newAnnotation("Question-ngram0", Uri.SENTENCE, 0, 0);
+      q.addFeature("1-Gram", grams("who", "shot", "Lincoln"));
+      q.addFeature("2-Gram", grams("who shot", "shot Lincoln"));
+      Annotation a = view.newAnnotation("A1-ngram1", Uri.SENTENCE, 0, 0);
+      a.addFeature("1-Gram", grams("Booth", "shot", "Lincoln"));
+      a.addFeature("2-Gram", grams("Booth shot", "shot Lincoln"));
+      Annotation s = view.newAnnotation("A2-ngram2", Uri.SENTENCE, 0, 0);
+      s.addFeature("1-GramSketch", new HashMap<String, Object>());
+      return container;
+  }
+
+  /**
+   * The same sentences in packed form
+   */
+  static Container packed() {
+      TermDictionary terms = new TermDictionary();
+      Container container = new Container();
+      container.setText("");
+      View view = container.newView();
+      String[][] sentences = { { "who", "shot", "Lincoln" }, { "Booth", "shot", "Lincoln" } };
+      for (int i = 0; i < sentences.length; i++) {
+        int[] ids = new int[sentences[i].length];
+        for (int k = 0; k < ids.length; k++) {
+          ids[k] = terms.id(sentences[i][k]);
+        }
+        Annotation a = view.newAnnotation("S" + i, Uri.SENTENCE, 0, 0);
+        for (int n = 1; n <= 2; n++) {
+          long[] packed = new long[ids.length - n + 1];
+          int[] counts = new int[packed.length];
+          for (int k = 0; k < packed.length; k++) {
+            packed[k] = TermDictionary.pack(ids, k, n);
+            counts[k] = 1;
+          }
+          a.addFeature(n + "-GramIds", packed);
+          a.addFeature(n + "-GramCounts", counts);
+        }
+      }
+      view.getMetadata().put(TermDictionary.METADATA, terms.toList());
+      return container;
+  }
+
+  @Test
+  public void writtenIndexReadsBack() throws Exception {
+      CorpusIndexer indexer = new CorpusIndexer();
+      assertTrue(indexer.add(document()));
+      assertEquals(2, indexer.documents());
+      assertEquals(1, indexer.sketched());
+      assertEquals(7, indexer.size());
+
+      File file = folder.newFile("corpus.idf");
+      indexer.write(file);
+      CorpusStatistics statistics = CorpusStatistics.open(file);
+      assertEquals(2, statistics.documents());
+      assertEquals(2, statistics.df(1, "shot"));
+      assertEquals(1, statistics.df(1, "who"));
+      assertEquals(2, statistics.df(2, "shot Lincoln"));
+      assertEquals(0, statistics.df(2, "shot"));
+      assertEquals(0, statistics.df(1, "nobody"));
+      assertEquals(Math.log(1 + 2.5 / 0.5), statistics.idf(1, "nobody"), 1e-12);
+  }
+
+  @Test
+  public void packedAndMapDocumentsIndexAlike() throws Exception {
+      CorpusIndexer maps = new CorpusIndexer();
+      maps.add(document());
+      CorpusIndexer packed = new CorpusIndexer();
+      packed.add(packed());
+      File mapFile = folder.newFile("maps.idf");
+      File packedFile = folder.newFile("packed.idf");
+      maps.write(mapFile);
+      packed.write(packedFile);
+
+      CorpusStatistics a = CorpusStatistics.open(mapFile);
+      CorpusStatistics b = CorpusStatistics.open(packedFile);
+      for (String gram : Arrays.asList("who", "shot", "Lincoln", "Booth")) {
+        assertEquals(a.df(1, gram), b.df(1, gram));
+      }
+      for (String gram : Arrays.asList("who shot", "shot Lincoln", "Booth shot")) {
+        assertEquals(a.df(2, gram), b.df(2, gram));
+      }
+  }
+
+  @Test
+  public void documentsWithoutNgramsAreNotAdded() throws Exception {
+      Container container = new Container();
+      container.newView().newAnnotation("A1", Uri.SENTENCE, 0, 0);
+
+      CorpusIndexer indexer = new CorpusIndexer();
+      assertFalse(indexer.add(container));
+      assertEquals(0, indexer.documents());
+  }
+
+  @Test
+  public void lookupsEndOnAFullTable() throws Exception {
+      // No slot is empty, so a missing n-gram can only stop after one round.
+      File file = folder.newFile("full.idf");
+      try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+        out.writeInt(CorpusStatistics.MAGIC);
+        out.writeInt(CorpusStatistics.VERSION);
+        out.writeLong(4);
+        out.writeInt(4);
+        out.writeInt(0);
+        for (int slot = 0; slot < 4; slot++) {
+          out.writeLong(slot + 1);
+          out.writeInt(1);
+        }
+      }
+      assertEquals(0, CorpusStatistics.open(file).df(1, "missing"));
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsOtherFiles() throws Exception {
+      File file = folder.newFile("other.idf");
+      try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+        out.writeLong(0);
+        out.writeLong(0);
+        out.writeLong(0);
+      }
+      CorpusStatistics.open(file);
+  }
+}
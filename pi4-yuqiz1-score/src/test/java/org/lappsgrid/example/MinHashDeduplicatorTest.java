@@ -0,0 +1,94 @@
+package org.lappsgrid.example;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.lappsgrid.serialization.lif.Annotation;
+import org.lappsgrid.serialization.lif.Container;
+import org.lappsgrid.serialization.lif.View;
+
+public class MinHashDeduplicatorTest {
+  static final String LONG = "John Wilkes Booth shot President Abraham Lincoln at Ford's Theatre in Washington";
+
+  static List<String> words(String sentence) {
+      return Arrays.asList(sentence.split(" "));
+  }
+
+  /**
+   * An n-gram view of a question and the given answers
+   * @param sketched the index of an answer to sketch, or -1
+   */
+  static View view(boolean packed, int sketched, String... answers) {
+      TermDictionary terms = new TermDictionary();
+      View view = new Container().newView();
+      AnswerScoringTest.annotate(view, "Question", "Question", words("who shot Lincoln"), packed, terms, 0);
+      for (int k = 0; k < answers.length; k++) {
+        AnswerScoringTest.annotate(view, "A" + (k + 1), "Answer", words(answers[k]), packed, terms,
+                k == sketched ? 1 : 0);
+      }
+      if (packed) {
+        view.getMetadata().put(TermDictionary.METADATA, terms.toList());
+      }
+      return view;
+  }
+
+  static List<Annotation> answers(View view) {
+      List<Annotation> annotations = view.getAnnotations();
+      return new ArrayList<>(annotations.subList(1, annotations.size()));
+  }
+
+  @Test
+  public void duplicatesJoinTheFirstOfTheirCluster() throws Exception {
+      MinHashDeduplicator deduplicator = new MinHashDeduplicator();
+      for (boolean packed : new boolean[] { false, true }) {
+        View view = view(packed, -1, LONG, "Nobody knows who did it", LONG, LONG + " today",
+                "Nobody knows who did it");
+
+        int[] representatives = deduplicator.representatives(answers(view));
+
+        // The near duplicate shares 25 of its 27 shingles with LONG, above the 0.8 threshold.
+        assertArrayEquals(new int[] { 0, 1, 0, 0, 1 }, representatives);
+      }
+  }
+
+  @Test
+  public void distinctAnswersStayApart() throws Exception {
+      View view = view(false, -1, "red green blue", "one two three", "alpha beta gamma");
+
+      assertArrayEquals(new int[] { 0, 1, 2 }, new MinHashDeduplicator().representatives(answers(view)));
+  }
+
+  @Test
+  public void sketchedAnswersAreNeverMerged() throws Exception {
+      View view = view(false, 1, LONG, LONG);
+
+      assertArrayEquals(new int[] { 0, 1 }, new MinHashDeduplicator().representatives(answers(view)));
+  }
+
+  @Test
+  public void duplicatesTakeTheScoreOfTheirRepresentative() throws Exception {
+      View view = view(false, -1, LONG, "Nobody knows who did it", LONG);
+      Container container = new Container();
+      container.getViews().add(view);
+
+      new AnswerScoring(new OverlapScorer(), null, new double[] { 1, 1 }, 0, new MinHashDeduplicator())
+              .process(container);
+
+      List<Annotation> scored = container.getView(1).getAnnotations();
+      assertEquals(3, scored.size());
+      assertNull(scored.get(0).getFeature("Representative"));
+      assertEquals("A1", scored.get(2).getFeature("Representative"));
+      assertEquals(scored.get(0).getFeature("Score"), scored.get(2).getFeature("Score"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsAZeroThreshold() {
+      new MinHashDeduplicator(2, 8, 4, 0);
+  }
+}
@@ -0,0 +1,151 @@
+package org.lappsgrid.example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ScorerTest {
+  static final double DELTA = 1e-9;
+
+  static Map<String, Integer> counts(String... grams) {
+      Map<String, Integer> counts = new LinkedHashMap<>();
+      for (String gram : grams) {
+        Integer count = counts.get(gram);
+        counts.put(gram, count == null ? 1 : count + 1);
+      }
+      return counts;
+  }
+
+  static Map<String, Integer> random(Random random) {
+      Map<String, Integer> counts = new HashMap<>();
+      int size = random.nextInt(8);
+      for (int i = 0; i < size; i++) {
+        counts.put("g" + random.nextInt(10), 1 + random.nextInt(3));
+      }
+      return counts;
+  }
+
+  static double overlap(Map<String, Integer> question, Map<String, Integer> answer) {
+      double total = 0;
+      double shared = 0;
+      for (Map.Entry<String, Integer> entry : question.entrySet()) {
+        total += entry.getValue();
+        Integer count = answer.get(entry.getKey());
+        if (count != null) {
+          shared += Math.min(count, entry.getValue());
+        }
+      }
+      return total > 0 ? shared / total : 0;
+  }
+
+  static double cosine(Map<String, Integer> question, Map<String, Integer> answer) {
+      double dot = 0;
+      for (Map.Entry<String, Integer> entry : question.entrySet()) {
+        Integer count = answer.get(entry.getKey());
+        if (count != null) {
+          dot += count * entry.getValue();
+        }
+      }
+      double norms = norm(question) * norm(answer);
+      return norms > 0 ? dot / norms : 0;
+  }
+
+  static double norm(Map<String, Integer> counts) {
+      double squares = 0;
+      for (int count : counts.values()) {
+        squares += count * count;
+      }
+      return Math.sqrt(squares);
+  }
+
+  static double[] score(Scorer scorer, Map<String, Integer> question, Map<String, Integer>[] answers) {
+      NgramVectorizer vectorizer = new NgramVectorizer(question);
+      SparseVector[] vectors = new SparseVector[answers.length];
+      for (int i = 0; i < answers.length; i++) {
+        vectors[i] = vectorizer.vectorize(answers[i]);
+      }
+      double[] scores = new double[answers.length];
+      scorer.score(vectorizer.question(), vectors, scores);
+      return scores;
+  }
+
+  @Test
+  public void vectorsKeepSharedTermsAndFullMass() {
+      NgramVectorizer vectorizer = new NgramVectorizer(counts("a", "b", "b", "c"));
+      SparseVector answer = vectorizer.vectorize(counts("c", "x", "a", "a"));
+
+      assertEquals(2, answer.size());
+      assertEquals(0, answer.id(0));
+      assertEquals(2, answer.value(0), DELTA);
+      assertEquals(2, answer.id(1));
+      assertEquals(4, answer.mass(), DELTA);
+      assertEquals(Math.sqrt(6), answer.norm(), DELTA);
+      assertEquals(3, answer.dot(vectorizer.question()), DELTA);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void overlapAndCosineMatchTheMapDefinitions() {
+      Random random = new Random(7);
+      for (int trial = 0; trial < 1000; trial++) {
+        Map<String, Integer> question = random(random);
+        Map<String, Integer>[] answers = new Map[1 + random.nextInt(5)];
+        for (int i = 0; i < answers.length; i++) {
+          answers[i] = random(random);
+        }
+        double[] overlaps = score(new OverlapScorer(), question, answers);
+        double[] cosines = score(new CosineScorer(), question, answers);
+        for (int i = 0; i < answers.length; i++) {
+          assertEquals(overlap(question, answers[i]), overlaps[i], DELTA);
+          assertEquals(cosine(question, answers[i]), cosines[i], DELTA);
+        }
+      }
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void boundsAreNeverExceeded() {
+      Random random = new Random(11);
+      BoundedScorer[] scorers = { new OverlapScorer(), new CosineScorer() };
+      for (int trial = 0; trial < 1000; trial++) {
+        Map<String, Integer> question = random(random);
+        Map<String, Integer>[] answers = new Map[] { random(random) };
+        NgramVectorizer vectorizer = new NgramVectorizer(question);
+        SparseVector answer = vectorizer.vectorize(answers[0]);
+        double shared = 0;
+        for (int i = 0; i < answer.size(); i++) {
+          shared += answer.value(i);
+        }
+        for (BoundedScorer scorer : scorers) {
+          double score = score(scorer, question, answers)[0];
+          assertTrue(score <= scorer.bound(vectorizer.question(), answer.mass(), shared) + DELTA);
+          assertTrue(score <= scorer.bound(vectorizer.question(), answer.mass(), Double.POSITIVE_INFINITY) + DELTA);
+        }
+      }
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void bm25WeighsRareTermsHigher() {
+      Map<String, Integer>[] answers = new Map[] { counts("a", "x"), counts("b", "x"), counts("a", "y"),
+          counts("z", "w") };
+      double[] scores = score(new Bm25Scorer(), counts("a", "b"), answers);
+
+      assertTrue(scores[1] > scores[0]);
+      assertEquals(scores[0], scores[2], DELTA);
+      assertEquals(0, scores[3], DELTA);
+      double idf = Math.log(1 + (4 - 1 + 0.5) / (1 + 0.5));
+      assertEquals(idf * 2.2 / (1 + 1.2), scores[1], DELTA);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void bm25RejectsInvalidParameters() {
+      new Bm25Scorer(1.2, 2);
+  }
+}
@@ -0,0 +1,81 @@
+package org.lappsgrid.example;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.lappsgrid.serialization.lif.Annotation;
+import org.lappsgrid.serialization.lif.Container;
+
+public class ScoringGridTest {
+
+  /**
+   * The id, score and representative of every annotation of a view
+   */
+  static List<String> summary(List<Annotation> annotations) {
+      List<String> summary = new ArrayList<>();
+      for (Annotation a : annotations) {
+        summary.add(a.getId() + "=" + a.getFeature("Score") + "/" + a.getFeature("Representative"));
+      }
+      return summary;
+  }
+
+  /**
+   * Configurations sharing scorer and deduplicator instances, as ScoringSweep builds them
+   */
+  static List<AnswerScoring> grid() {
+      Scorer[] scorers = { new OverlapScorer(), new CosineScorer(), new Bm25Scorer() };
+      MinHashDeduplicator deduplicator = new MinHashDeduplicator();
+      double[][] weights = { { 1 }, { 0, 1 }, { 0.2, 0.3, 0.5 } };
+      List<AnswerScoring> grid = new ArrayList<>();
+      for (Scorer scorer : scorers) {
+        for (double[] w : weights) {
+          for (int k : new int[] { 0, 3 }) {
+            grid.add(new AnswerScoring(scorer, null, w, k));
+            grid.add(new AnswerScoring(scorer, null, w, k, deduplicator));
+          }
+        }
+      }
+      return grid;
+  }
+
+  @Test
+  public void gridViewsMatchSeparateRuns() throws Exception {
+      Random random = new Random(24);
+      List<AnswerScoring> configurations = grid();
+      ScoringGrid grid = new ScoringGrid(configurations);
+      for (int trial = 0; trial < 30; trial++) {
+        Container container = new Container();
+        container.getViews().add(AnswerScoringTest.document(random, random.nextBoolean()));
+
+        grid.process(container);
+
+        assertEquals(1 + configurations.size(), container.getViews().size());
+        for (int i = 0; i < configurations.size(); i++) {
+          Container alone = new Container();
+          alone.getViews().add(container.getView(0));
+          configurations.get(i).process(alone);
+          assertEquals(configurations.get(i).getConfiguration(),
+                  summary(alone.getView(1).getAnnotations()), summary(container.getView(1 + i).getAnnotations()));
+        }
+      }
+  }
+
+  @Test
+  public void configurationsAreNamedInOrder() {
+      List<AnswerScoring> configurations = grid();
+
+      List<String> names = new ScoringGrid(configurations).getConfigurations();
+
+      assertEquals(configurations.size(), names.size());
+      assertEquals(configurations.get(5).getConfiguration(), names.get(5));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsAnEmptyGrid() {
+      new ScoringGrid(new ArrayList<AnswerScoring>());
+  }
+}
@@ -1,31 +1,46 @@
 package org.lappsgrid.example;
 
 import java.util.List;
-import java.util.Map;
 
-import org.lappsgrid.api.ProcessingService;
 import org.lappsgrid.discriminator.Discriminators.Uri;
 import org.lappsgrid.metadata.IOSpecification;
 import org.lappsgrid.metadata.ServiceMetadata;
 import org.lappsgrid.serialization.Data;
-import org.lappsgrid.serialization.DataContainer;
-import org.lappsgrid.serialization.Serializer;
 import org.lappsgrid.serialization.lif.Annotation;
 import org.lappsgrid.serialization.lif.Container;
 import org.lappsgrid.serialization.lif.View;
 import org.lappsgrid.vocabulary.Features;
 
 /**
- * TokenAnnotation: tokenize question and answers
+ * TokenAnnotation: tokenize question and answers. The rules are supplied by a
+ * Tokenizer; the default WordTokenizer splits on whitespace and keeps word characters.
+ * With term ids enabled every token also carries the "TermId" of its word in a
+ * per-document TermDictionary, stored in the "terms" metadata of the view, so
+ * later stages can work on ints instead of Strings.
  * @author yuqizhang
  *
  */
-public class TokenAnnotation implements ProcessingService{
+public class TokenAnnotation extends AbstractProcessingService {
   private String metadata;
-
+  private Tokenizer tokenizer;
+  private boolean termIds;
 
   public TokenAnnotation() {
+      this(new WordTokenizer());
+  }
+
+  public TokenAnnotation(Tokenizer tokenizer) {
+      this(tokenizer, false);
+  }
+
+  /**
+   * @param tokenizer the tokenization rules
+   * @param termIds add a "TermId" feature to every token
+   */
+  public TokenAnnotation(Tokenizer tokenizer, boolean termIds) {
       metadata = generateMetadata();
+      this.tokenizer = tokenizer;
+      this.termIds = termIds;
   }
 
   /**
@@ -77,84 +92,70 @@ public class TokenAnnotation implements ProcessingService{
       return metadata;
   }
 
+  @Override
+  public String getConfiguration() {
+      return super.getConfiguration() + "?tokenizer=" + tokenizer.getClass().getName()
+              + (termIds ? "&termIds=true" : "");
+  }
+
   @Override
   /**
-   * Tokenize the question and answers by whitespace
+   * Tokenize the question and answers with the configured tokenizer
    */
-  public String execute(String input) {
-      // Step #1: Parse the input.
-      Data data = Serializer.parse(input, Data.class);
-
-      // Step #2: Check the discriminator
-      final String discriminator = data.getDiscriminator();
-      if (discriminator.equals(Uri.ERROR)) {
-          // Return the input unchanged.
-          return input;
-      }
-
-      // Step #3: Extract the text.
-      Container container = null;
-      if (discriminator.equals(Uri.TEXT)) {
-          container = new Container();
-          container.setText(data.getPayload().toString());
-      }
-      else if (discriminator.equals(Uri.LAPPS)) {
-          container = new Container((Map) data.getPayload());
-      }
-      else {
-          // This is a format we don't accept.
-          String message = String.format("Unsupported discriminator type: %s", discriminator);
-          return new Data<String>(Uri.ERROR, message).asJson();
-      }
+  public Container process(Container container) throws ProcessingException {
       // Step #4: Create a new View
-      
-      //List<View> views = container.getViews();
       View view = container.getView(0);
       List<Annotation> annotations = view.getAnnotations();
-      
+
       View newview = container.newView();
-      
-      int id = -1;
+
+      // Step #5: Tokenize every sentence; token offsets are relative to the document.
+      TokenWriter writer = new TokenWriter(newview, termIds ? new TermDictionary() : null);
       for(int i = 0; i < annotations.size(); i++){
         Annotation temp = annotations.get(i);
-        String type = temp.getFeature("Type");
-        
-        
-          String ques = temp.getFeature(Uri.SENTENCE);
-          String[] words = ques.trim().split("\\s+");
-          
-          int start = 0;
-          for (String word : words) {
-              start = ques.indexOf(word, start);  
-            
-              
-              if (start < 0) {
-                  return new Data<String>(Uri.ERROR, "Unable to match word: " + word).asJson();
-              }
-              
-              int end = start + word.length();
-              word = word.replaceAll("\\W", "");
-
-              Annotation a = newview.newAnnotation(temp.getId()+"-tok" + (++id), Uri.TOKEN, start, end);
-              a.addFeature(Features.Token.WORD, word);
-              a.addFeature("Group", temp.getId());
-             
-              
-          }
+        String ques = temp.getFeature(Uri.SENTENCE);
+        if (ques == null) {
+          continue;
         }
-              
-     
-      
+        writer.group = temp.getId();
+        int offset = temp.getStart() == null ? 0 : temp.getStart().intValue();
+        tokenizer.tokenize(ques, offset, writer);
+      }
 
       // Step #6: Update the view's metadata. Each view contains metadata about the
       // annotations it contains, in particular the name of the tool that produced the
       // annotations.
       newview.addContains(Uri.TOKEN, this.getClass().getName(), "tokenannotation");
+      if (writer.terms != null) {
+        newview.getMetadata().put(TermDictionary.METADATA, writer.terms.toList());
+      }
 
-      // Step #7: Create a DataContainer with the result.
-      data = new DataContainer(container);
+      return container;
+  }
 
-      // Step #8: Serialize the data object and return the JSON.
-      return data.asPrettyJson();
+  /**
+   * Add one Uri.TOKEN annotation per token of the current group
+   */
+  private static class TokenWriter implements Tokenizer.Handler {
+    private final View view;
+    private final TermDictionary terms;
+    private String group;
+    private int id = -1;
+
+    TokenWriter(View view, TermDictionary terms) {
+        this.view = view;
+        this.terms = terms;
+    }
+
+    @Override
+    public void token(int start, int end, char[] word, int length) {
+        Annotation a = view.newAnnotation(group + "-tok" + (++id), Uri.TOKEN, start, end);
+        a.addFeature(Features.Token.WORD, new String(word, 0, length));
+        a.addFeature("Group", group);
+        // NgramCounter skips empty words, so they get no id to count either.
+        if (terms != null && length > 0) {
+          a.addFeature("TermId", terms.id(word, 0, length));
+        }
+    }
   }
 }
@@ -0,0 +1,77 @@
+package org.lappsgrid.example;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.lappsgrid.discriminator.Discriminators.Uri;
+import org.lappsgrid.serialization.lif.Annotation;
+import org.lappsgrid.serialization.lif.Container;
+import org.lappsgrid.serialization.lif.View;
+import org.lappsgrid.vocabulary.Features;
+
+public class TokenAnnotationTest {
+
+  /**
+   * A document as ElementAnnotation leaves it: sentences at their offsets in the text
+   */
+  static Container elements(String text) {
+      Container container = new Container();
+      container.setText(text);
+      View view = container.newView();
+      int start = 0;
+      int n = 0;
+      for (String line : text.split("\n")) {
+        int sentence = line.indexOf(' ', line.startsWith("Q") ? 0 : 2) + 1;
+        Annotation a = view.newAnnotation(n == 0 ? "Question" : "A" + n, Uri.SENTENCE, start + sentence,
+                start + line.length());
+        a.addFeature(Uri.SENTENCE, line.substring(sentence));
+        start += line.length() + 1;
+        n++;
+      }
+      return container;
+  }
+
+  @Test
+  public void tokenOffsetsPointIntoTheDocument() throws Exception {
+      String text = "Q Where is it?\nA 1 It's here, near you.";
+      Container container = new TokenAnnotation().process(elements(text));
+
+      List<Annotation> tokens = container.getView(1).getAnnotations();
+      assertEquals(7, tokens.size());
+      for (Annotation token : tokens) {
+        String raw = text.substring(token.getStart().intValue(), token.getEnd().intValue());
+        assertEquals(raw.replaceAll("\\W", ""), token.getFeature(Features.Token.WORD));
+      }
+      assertEquals("A1", tokens.get(3).getFeature("Group"));
+      assertEquals("Its", tokens.get(3).getFeature(Features.Token.WORD));
+  }
+
+  @Test
+  public void usesTheGivenTokenizer() throws Exception {
+      Container container = new TokenAnnotation(new WhitespaceTokenizer()).process(elements("Q Is it?\nA 0 No."));
+
+      List<Annotation> tokens = container.getView(1).getAnnotations();
+      assertEquals("it?", tokens.get(1).getFeature(Features.Token.WORD));
+      assertEquals("No.", tokens.get(2).getFeature(Features.Token.WORD));
+  }
+
+  @Test
+  public void termIdsCoverEveryNonEmptyWord() throws Exception {
+      Container container = new TokenAnnotation(new WordTokenizer(), true).process(elements("Q Is it -- it?"));
+
+      View view = container.getView(1);
+      List<Annotation> tokens = view.getAnnotations();
+      assertEquals(Arrays.asList("Is", "it"), view.getMetadata().get(TermDictionary.METADATA));
+      assertEquals(4, tokens.size());
+      assertEquals(0, tokens.get(0).getFeatures().get("TermId"));
+      assertEquals(1, tokens.get(1).getFeatures().get("TermId"));
+      // "--" normalizes to nothing and has no id.
+      assertEquals("", tokens.get(2).getFeature(Features.Token.WORD));
+      assertNull(tokens.get(2).getFeatures().get("TermId"));
+      assertEquals(1, tokens.get(3).getFeatures().get("TermId"));
+  }
+}